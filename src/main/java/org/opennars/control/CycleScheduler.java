@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.control;
+
+import org.opennars.main.Parameters;
+
+/**
+ * Decides how many tasks and premises a cycle fires.
+ * <p>
+ * Without a CYCLE_TIME_BUDGET these are the fixed TASKS_MAX_FIRED and PREMISES_MAX_FIRED.
+ * With a budget, the amounts are derived from the remaining time of the cycle and
+ * the measured cost of a fired task and premise, smoothed over the last cycles,
+ * with TASKS_MAX_FIRED and PREMISES_MAX_FIRED as upper bounds.
+ * The tasks get at most half of the budget, as they only create the premises.
+ * <p>
+ * The amount of fired premises is kept as metric, and emitted as PremisesFired event
+ * at the end of each cycle.
+ * The measured costs belong to the machine they were measured on, so the scheduler
+ * isn't serialized with the memory.
+ *
+ * @author Patrick Hammer
+ */
+public class CycleScheduler {
+    /* weight of the latest measurement in the smoothed values */
+    private static final double SMOOTHING = 0.1;
+
+    private double nanosPerTask = 0.0;
+    private double nanosPerPremise = 0.0;
+
+    private volatile int lastPremisesFired = 0;
+    private volatile double premisesPerCycle = 0.0;
+
+    /**
+     * @param narParameters The parameters
+     * @return The time at which the cycle should end, in System.nanoTime, or 0 if the cycle isn't budgeted
+     */
+    public long deadline(final Parameters narParameters) {
+        final float budget = narParameters.CYCLE_TIME_BUDGET;
+        if(budget <= 0.0f) {
+            return 0;
+        }
+        return System.nanoTime() + (long) (budget * 1000000.0);
+    }
+
+    /**
+     * @param narParameters The parameters
+     * @param deadline The end of the cycle, 0 if the cycle isn't budgeted
+     * @return The amount of tasks to fire
+     */
+    public synchronized int tasksToFire(final Parameters narParameters, final long deadline) {
+        if(deadline == 0 || nanosPerTask == 0.0) {
+            return narParameters.TASKS_MAX_FIRED;
+        }
+        final double share = 0.5 * (deadline - System.nanoTime());
+        return (int) Math.max(1, Math.min(narParameters.TASKS_MAX_FIRED, share / nanosPerTask));
+    }
+
+    /**
+     * @param narParameters The parameters
+     * @param deadline The end of the cycle, 0 if the cycle isn't budgeted
+     * @return The amount of premises to fire
+     */
+    public synchronized int premisesToFire(final Parameters narParameters, final long deadline) {
+        if(deadline == 0 || nanosPerPremise == 0.0) {
+            return narParameters.PREMISES_MAX_FIRED;
+        }
+        final double remaining = deadline - System.nanoTime();
+        return (int) Math.max(1, Math.min(narParameters.PREMISES_MAX_FIRED, remaining / nanosPerPremise));
+    }
+
+    /**
+     * Record the cost of the tasks fired in a cycle
+     *
+     * @param amount The amount of fired tasks
+     * @param nanos The time it took to fire them
+     */
+    public synchronized void tasksFired(final int amount, final long nanos) {
+        if(amount > 0) {
+            nanosPerTask = smooth(nanosPerTask, (double) nanos / amount);
+        }
+    }
+
+    /**
+     * Record the cost of the premises fired in a cycle
+     *
+     * @param amount The amount of fired premises
+     * @param nanos The time it took to fire them
+     */
+    public synchronized void premisesFired(final int amount, final long nanos) {
+        if(amount > 0) {
+            nanosPerPremise = smooth(nanosPerPremise, (double) nanos / amount);
+        }
+        lastPremisesFired = amount;
+        premisesPerCycle = smooth(premisesPerCycle, amount);
+    }
+
+    private static double smooth(final double average, final double value) {
+        return average == 0.0 ? value : average + SMOOTHING * (value - average);
+    }
+
+    /**
+     * @return The amount of premises fired in the last cycle
+     */
+    public int getLastPremisesFired() {
+        return lastPremisesFired;
+    }
+
+    /**
+     * @return The amount of premises fired per cycle, smoothed over the last cycles
+     */
+    public double getPremisesPerCycle() {
+        return premisesPerCycle;
+    }
+
+    public synchronized void reset() {
+        nanosPerTask = 0.0;
+        nanosPerPremise = 0.0;
+        lastPremisesFired = 0;
+        premisesPerCycle = 0.0;
+    }
+}
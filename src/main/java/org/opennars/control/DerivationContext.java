@@ -34,7 +34,7 @@ import org.opennars.storage.Memory;
 
 import java.util.ArrayList;
 import java.util.List;
-import org.opennars.entity.Stamp.BaseEntry;
+import java.util.Random;
 
 /**
  * NAL Reasoner Process.  Includes all reasoning process state.
@@ -56,6 +56,18 @@ public class DerivationContext {
     public Parameters narParameters;
 
     public Timable time;
+
+    /* the tasks derived while the premise is executed in parallel to others, with their reasons */
+    private boolean buffering = false;
+    private final List<Task<?>> bufferedTasks = new ArrayList<>();
+    private final List<String> bufferedReasons = new ArrayList<>();
+
+    /* the substitution frames reused by the unifications of the premise */
+    private Substitution substitution = null;
+
+    /* the random numbers of the rules, the ones of the memory unless the premise is executed in parallel to others */
+    private Random random = Memory.randomNumber;
+    private Random ownRandom = null;
     
     public DerivationContext(final Memory mem, final Parameters narParameters, final Timable time) {
         super();
@@ -102,7 +114,7 @@ public class DerivationContext {
                 return false;
             }
         }
-        if(task.sentence.term.cloneDeep() == null) {
+        if(!Term.valid(task.sentence.term)) {
             //sorted subterm version leaded to a invalid term that remained undetected while the term was constructed optimistically
             //example: (&,a,b) --> (&,b,a) which gets normalized to (&,a,b) --> (&,a,b) which is invalid.
             memory.removeTask(task, "Wrong Format");
@@ -113,17 +125,10 @@ public class DerivationContext {
         
         //its revision, of course its cyclic, apply evidental base policy
         if(!overlapAllowed) { //todo reconsider
-            final int stampLength = stamp.baseLength;
-            for (int i = 0; i < stampLength; i++) {
-                final BaseEntry baseI = stamp.evidentialBase[i];
-                for (int j = 0; j < stampLength; j++) {
-                    //!single since the derivation shouldn't depend on whether there is a current belief or not!!
-                    if ((!single && this.evidentalOverlap) || ((i != j) && (baseI.equals(stamp.evidentialBase[j])))) {
-                        memory.removeTask(task, "Overlapping Evidenctal Base");
-                        //"(i=" + i + ",j=" + j +')' /* + " in " + stamp.toString()*/
-                        return false;
-                    }
-                }
+            //!single since the derivation shouldn't depend on whether there is a current belief or not!!
+            if ((!single && this.evidentalOverlap && stamp.baseLength > 0) || stamp.evidenceIsCyclic()) {
+                memory.removeTask(task, "Overlapping Evidenctal Base");
+                return false;
             }
         }
         
@@ -415,13 +420,84 @@ public class DerivationContext {
     public Memory mem() {
         return memory;
     }
+
+    /**
+     * @return The substitution for unifying terms in this context, cleared by each unification
+     */
+    public Substitution getSubstitution() {
+        if(substitution == null) {
+            substitution = new Substitution();
+        }
+        substitution.random = random;
+        return substitution;
+    }
     
     /** tasks added with this method will be remembered by this NAL instance; useful for feedback */
     public void addTask(final Task t, final String reason) {
         if(t.sentence.term==null) {
             return;
         }
-        memory.addNewTask(t, reason);
+        if(buffering) {
+            bufferedTasks.add(t);
+            bufferedReasons.add(reason);
+            return;
+        }
+        memory.addNewTask(t, reason, this);
+    }
+
+    /**
+     * @return The random numbers for the rules of the premise
+     */
+    public Random random() {
+        return random;
+    }
+
+    /**
+     * Keep the added tasks back until flushTasks is called, and draw the random numbers from an own generator,
+     * used when premises are executed in parallel
+     *
+     * @param seed The seed of the random numbers of the premise
+     */
+    public void bufferTasks(final long seed) {
+        buffering = true;
+        if(ownRandom == null) {
+            ownRandom = new Random();
+        }
+        ownRandom.setSeed(seed);
+        random = ownRandom;
+    }
+
+    /** add the tasks which were kept back to the memory */
+    public void flushTasks() {
+        if(!buffering) {
+            return;
+        }
+        buffering = false;
+        for(int i=0; i<bufferedTasks.size(); i++) {
+            memory.addNewTask(bufferedTasks.get(i), bufferedReasons.get(i), this);
+        }
+        bufferedTasks.clear();
+        bufferedReasons.clear();
+    }
+
+    /**
+     * Forget the state of the premise which was executed, so that the context can be reused for another one
+     */
+    public void reset() {
+        evidentalOverlap = false;
+        currentTerm = null;
+        currentConcept = null;
+        currentTask = null;
+        currentBeliefLink = null;
+        currentTaskLink = null;
+        currentBelief = null;
+        newStamp = null;
+        newStampBuilder = null;
+        original_time = 0;
+        buffering = false;
+        bufferedTasks.clear();
+        bufferedReasons.clear();
+        random = Memory.randomNumber;
     }
     
     /**
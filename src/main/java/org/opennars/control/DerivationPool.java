@@ -0,0 +1,125 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.control;
+
+import org.opennars.control.GeneralInferenceControl.Premises;
+import org.opennars.entity.Concept;
+import org.opennars.entity.Sentence;
+import org.opennars.entity.Task;
+import org.opennars.interfaces.Timable;
+import org.opennars.language.Term;
+import org.opennars.storage.Memory;
+
+/**
+ * Premises and derivation contexts of one thread which were used already, to be reused
+ * instead of allocating new ones for each premise.
+ * <p>
+ * A premise is given back once it is in no bag anymore, because it was merged into an
+ * equal premise, displaced, or executed, and a context once its premise was executed
+ * and its tasks were flushed.
+ * Each thread has its own pool, see Memory.derivationPool, so the pool isn't synchronized.
+ * The pool keeps at most CAPACITY of each, the others are left to the garbage collector.
+ *
+ * @author Patrick Hammer
+ */
+public class DerivationPool {
+    public static final int CAPACITY = 256;
+
+    private final Memory memory;
+
+    private final Premises[] premises = new Premises[CAPACITY];
+    private int premiseCount = 0;
+    private final DerivationContext[] contexts = new DerivationContext[CAPACITY];
+    private int contextCount = 0;
+
+    /* the context of the premise the thread is executing, null if it isn't executing one */
+    DerivationContext current = null;
+
+    public DerivationPool(final Memory memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * @return A premise initialized with the arguments, as by the constructor of Premises
+     */
+    public Premises premise(final Timable time, final Task<?> task, final Term taskConceptTerm, final Term subterm, final Concept beliefConcept, final Sentence<?> belief, final boolean temporalInference) {
+        if(premiseCount == 0) {
+            return new Premises(memory, time, task, taskConceptTerm, subterm, beliefConcept, belief, temporalInference);
+        }
+        final Premises premise = premises[--premiseCount];
+        premises[premiseCount] = null;
+        premise.set(memory, time, task, taskConceptTerm, subterm, beliefConcept, belief, temporalInference);
+        return premise;
+    }
+
+    /**
+     * @param premise The premise which is no longer used, or null
+     */
+    public void release(final Premises premise) {
+        if(premise == null || premiseCount == CAPACITY) {
+            return;
+        }
+        premise.clear();
+        premises[premiseCount++] = premise;
+    }
+
+    /**
+     * @return A derivation context without the state of a premise
+     */
+    public DerivationContext context(final Timable time) {
+        if(contextCount == 0) {
+            return new DerivationContext(memory, memory.narParameters, time);
+        }
+        final DerivationContext nal = contexts[--contextCount];
+        contexts[contextCount] = null;
+        nal.time = time;
+        return nal;
+    }
+
+    /**
+     * @param nal The context whose premise was executed and whose tasks were flushed
+     */
+    public void release(final DerivationContext nal) {
+        if(contextCount == CAPACITY) {
+            return;
+        }
+        nal.reset();
+        contexts[contextCount++] = nal;
+    }
+
+    /**
+     * @return The context of the premise the thread is executing, null if it isn't executing one
+     */
+    public DerivationContext current() {
+        return current;
+    }
+
+    public int premises() {
+        return premiseCount;
+    }
+
+    public int contexts() {
+        return contextCount;
+    }
+}
@@ -23,18 +23,25 @@
  */
 package org.opennars.control;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
 import org.opennars.entity.BudgetValue;
 import org.opennars.entity.Concept;
 import org.opennars.entity.Item;
 import org.opennars.entity.Sentence;
 import org.opennars.entity.Stamp;
 import org.opennars.entity.Task;
+import org.opennars.inference.BudgetFunctions;
 import org.opennars.inference.LocalRules;
 import org.opennars.inference.RuleTables;
 import org.opennars.interfaces.Timable;
 import org.opennars.io.Symbols;
+import org.opennars.io.events.Events;
 import org.opennars.language.CompoundTerm;
 import org.opennars.language.Term;
 import org.opennars.language.Variables;
@@ -47,34 +54,124 @@ import org.opennars.storage.Memory;
  */
 public class GeneralInferenceControl {
     
-    static DerivationContext lastNAL = null;
-    public static void addTask(Memory mem, Task t, boolean derived) {
+    public static void addTask(Memory mem, Task<?> t, boolean derived) {
+        addTask(mem, t, derived, null);
+    }
+    
+    /**
+     * @param nal The derivation context of the premise the task was derived from, null if there is none,
+     *            then the decision is made in the context of the premise the thread is executing,
+     *            or in a context of its own if it isn't executing one
+     */
+    public static void addTask(Memory mem, Task<?> t, boolean derived, DerivationContext nal) {
         //results go into into cyclingTasks, inputs to inputTasks
         if(derived) {
             Concept c = mem.conceptualize(t);
-            mem.cyclingTasks.putIn(t);
-            Concept.executeDecision(lastNAL, t);
+            mem.cyclingTasks.putIn(cyclingTask(t));
+            final DerivationPool pool = mem.derivationPool();
+            if(nal == null) {
+                nal = pool.current();
+            }
+            if(nal != null) {
+                Concept.executeDecision(nal, t);
+            } else {
+                final DerivationContext own = pool.context(mem::time);
+                Concept.executeDecision(own, t);
+                pool.release(own);
+            }
         } else {
             mem.inputTasks.add(t);
         }
     }
+
+    /** the cycling tasks are typed by the erased term type, which holds the tasks of any term type */
+    @SuppressWarnings("unchecked")
+    private static Task<Term> cyclingTask(final Task<?> task) {
+        return (Task<Term>) task;
+    }
     
     public static void matchQuestion(Task t, Sentence belief, DerivationContext nal) {
-        if(Variables.unify(Symbols.VAR_QUERY, new Term[] {t.getTerm(), belief.getTerm()})) {
+        if(Variables.unify(Symbols.VAR_QUERY, new Term[] {t.getTerm(), belief.getTerm()}, nal.getSubstitution())) {
             LocalRules.trySolution(belief, t, nal, t.isInput());
         }
     }
     
-    public static class Premises extends Item<String> {
+    /**
+     * Identifies a premise by its task sentence, belief sentence (or subterm for virtual premises),
+     * the concept of the belief and whether it is for temporal inference,
+     * so that equal premises can be merged.
+     * The subterm is needed as virtual premises have no belief sentence, and the concept as a belief
+     * is stored in all its component concepts and what is derived depends on the concept it's fired from.
+     * A key is immutable, as it may still be in the map of the premise queue when its premise was taken
+     * and reused, so a reused premise gets a new one.
+     */
+    public static final class PremiseKey implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final Sentence<?> task; final Sentence<?> belief; final Term subterm; final Term beliefConcept; final boolean temporalInference;
+        final int hash;
+        PremiseKey(Sentence<?> task, Sentence<?> belief, Term subterm, Term beliefConcept, boolean temporalInference) {
+            this.task = task; this.belief = belief; this.subterm = subterm; this.beliefConcept = beliefConcept; this.temporalInference = temporalInference;
+            //same value as Objects.hash of the fields, without the array and the boxing
+            int h = 31 + (task == null ? 0 : task.hashCode());
+            h = 31 * h + (belief == null ? 0 : belief.hashCode());
+            h = 31 * h + (subterm == null ? 0 : subterm.hashCode());
+            h = 31 * h + (beliefConcept == null ? 0 : beliefConcept.hashCode());
+            this.hash = 31 * h + Boolean.hashCode(temporalInference);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) return true;
+            if (!(obj instanceof PremiseKey)) return false;
+            final PremiseKey k = (PremiseKey) obj;
+            return hash == k.hash && temporalInference == k.temporalInference && task.equals(k.task) &&
+                   Objects.equals(belief, k.belief) && subterm.equals(k.subterm) && beliefConcept.equals(k.beliefConcept);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+    
+    public static class Premises extends Item<PremiseKey> {
         Memory mem; Timable time; Task task; Term taskConceptTerm; Term subterm; Concept beliefConcept; Sentence belief; boolean temporalInference;
+        PremiseKey key;
         public Premises(Memory mem, Timable time, Task task, Term taskConceptTerm, Term subterm, Concept beliefConcept, Sentence belief, boolean temporalInference) {
-            super(new BudgetValue(beliefConcept.getPriority() * (belief == null ? 0.5f : belief.getTruth().getExpectation()), mem.narParameters.TASKLINK_FORGET_DURATIONS, 0.0f, mem.narParameters));
+            super(new BudgetValue(0.0f, 0.0f, 0.0f, mem.narParameters));
+            set(mem, time, task, taskConceptTerm, subterm, beliefConcept, belief, temporalInference);
+        }
+        /** initializes the premise as by the constructor, used when it is reused by the DerivationPool */
+        void set(Memory mem, Timable time, Task<?> task, Term taskConceptTerm, Term subterm, Concept beliefConcept, Sentence<?> belief, boolean temporalInference) {
             this.mem = mem; this.time = time; this.task = task; this.taskConceptTerm = taskConceptTerm; this.subterm = subterm; this.beliefConcept = beliefConcept; this.belief = belief; this.temporalInference = temporalInference;
+            budget.set(beliefConcept.getPriority() * (belief == null ? 0.5f : belief.getTruth().getExpectation()), mem.narParameters.TASKLINK_FORGET_DURATIONS, 0.0f);
+            key = new PremiseKey(task.sentence, belief, subterm, beliefConcept.getTerm(), temporalInference);
+        }
+        /** drops the references of the premise, so that a pooled premise doesn't keep its task and concepts from being collected */
+        void clear() {
+            task = null; taskConceptTerm = null; subterm = null; beliefConcept = null; belief = null; key = null;
+            slot = -1;
         }
         public void execute() {
             //Create a derivation context that works with OpenNARS "deriver":
-            DerivationContext nal = new DerivationContext(mem, mem.narParameters, time);
-            lastNAL = nal;
+            final DerivationPool pool = mem.derivationPool();
+            final DerivationContext nal = pool.context(time);
+            execute(nal);
+            pool.release(nal);
+        }
+        public void execute(DerivationContext nal) {
+            //tasks added without a context while the premise is executed, like by plugins, belong to it
+            final DerivationPool pool = mem.derivationPool();
+            final DerivationContext outer = pool.current;
+            pool.current = nal;
+            try {
+                derive(nal);
+            } finally {
+                pool.current = outer;
+            }
+        }
+        private void derive(DerivationContext nal) {
             nal.setCurrentTask(task);
             nal.setCurrentTerm(taskConceptTerm);
             nal.setCurrentConcept(beliefConcept);
@@ -93,8 +190,8 @@ public class GeneralInferenceControl {
         }
 
         @Override
-        public String name() {
-            return "FireBelief";
+        public PremiseKey name() {
+            return key;
         }
         
         @Override
@@ -106,9 +203,24 @@ public class GeneralInferenceControl {
     
     
     public static void fireBelief(Memory mem, Timable time, Task task, Term taskConceptTerm, Term subterm, Concept beliefConcept, Sentence belief, boolean temporalInference) {
-        Premises premises = new Premises(mem,time,task,taskConceptTerm,subterm,beliefConcept,belief,temporalInference);
-        //add the potential derivation that can be done
-        mem.premiseQueue.putIn(premises);
+        final DerivationPool pool = mem.derivationPool();
+        Premises premises = pool.premise(time, task, taskConceptTerm, subterm, beliefConcept, belief, temporalInference);
+        //add the potential derivation that can be done, unless it is already waiting to be done and premises are merged
+        //(then it is derived once with the merged budget, not once for each time it was added)
+        Premises unused;
+        synchronized(mem.premiseQueue.lockFor(premises.name())) {
+            Premises existing = mem.narParameters.PREMISE_MERGING ? mem.premiseQueue.get(premises.name()) : null;
+            if(existing != null) {
+                BudgetFunctions.merge(existing.budget, premises.budget);
+                mem.premiseQueue.update(existing);
+                mem.duplicatePremises.incrementAndGet();
+                unused = premises;
+            } else {
+                unused = mem.premiseQueue.putIn(premises);
+            }
+        }
+        //the merged or displaced premise is in no bag anymore
+        pool.release(unused);
     }
     
     public static void fireTask(Task task, Memory mem, Timable time, List<Concept> highestPriorityConcepts) {
@@ -150,53 +262,178 @@ public class GeneralInferenceControl {
 
     public static void forgetConcept(Memory mem, Term taskConceptTerm) {
         //apply forgetting:
-        Concept ret = mem.concepts.take(taskConceptTerm);
-        mem.concepts.putBack(ret, mem.narParameters.CONCEPT_FORGET_DURATIONS, mem);
+        mem.concepts.forget(taskConceptTerm, mem.narParameters.CONCEPT_FORGET_DURATIONS, mem);
     }
     
     public static void ALANNCircle(Memory mem, Timable time) {
         //1. get the 10 highest priority concepts for temporal inference:
+        //(of concepts with equal priority, not necessarily those taking them out one by one would give)
         List<Concept> highestPriorityConcepts = new ArrayList<>();
-        for(int i=0; i<mem.narParameters.SEQUENCE_BAG_ATTEMPTS; i++) {
-            Concept highest = mem.concepts.takeHighestPriorityItem();
-            if(highest != null) {
-                highestPriorityConcepts.add(highest);
-            }
-        }
+        mem.concepts.topK(mem.narParameters.SEQUENCE_BAG_ATTEMPTS, highestPriorityConcepts);
         //and forget them a bit
-        for(Concept c : highestPriorityConcepts) {
-            mem.concepts.putBack(c, mem.narParameters.CONCEPT_FORGET_DURATIONS, mem);
-        }
+        mem.concepts.forgetAll(highestPriorityConcepts, mem.narParameters.CONCEPT_FORGET_DURATIONS, mem);
         
+        //the end of the cycle if it has a time budget
+        final long deadline = mem.scheduler.deadline(mem.narParameters);
+        final long taskStart = System.nanoTime();
         //Select tasks
-        List<Task> selected = new ArrayList<>();
-        for(int i=0; i<mem.narParameters.TASKS_MAX_FIRED; i++) {
+        List<Task<?>> selected = new ArrayList<>();
+        final int tasksToFire = mem.scheduler.tasksToFire(mem.narParameters, deadline);
+        for(int i=0; i<tasksToFire; i++) {
             //check for input buffer element first
-            if(mem.inputTasks != null && !mem.inputTasks.isEmpty()) {
-                selected.add(mem.inputTasks.removeFirst());
+            final Task<?> input = mem.inputTasks.pollFirst();
+            if(input != null) {
+                selected.add(input);
             } 
             //if none such exists, use one of the cycling tasks
-            else if(!mem.cyclingTasks.isEmpty()){
-                selected.add((Task) mem.cyclingTasks.takeHighestPriorityItem());
+            else {
+                final Task<Term> cycling = mem.cyclingTasks.takeNext();
+                if(cycling != null) {
+                    selected.add(cycling);
+                }
             }
         }        
         //fire the task and put it back into cycling tasks
-        for(Task task: selected) {
+        for(Task<?> task: selected) {
             //at first activate concept and replace with the input event task if it is one:
             mem.conceptualize(task);
         }
-        for(Task task : selected) {
+        for(Task<?> task : selected) {
             fireTask(task, mem, time, highestPriorityConcepts);
-            mem.cyclingTasks.putBack(task, mem.narParameters.TASKLINK_FORGET_DURATIONS, mem);
+            mem.cyclingTasks.putBack(cyclingTask(task), mem.narParameters.TASKLINK_FORGET_DURATIONS, mem);
         }
-        //derive a batch of premises from the premises queue:
-        for(int i=0; i<mem.narParameters.PREMISES_MAX_FIRED; i++) {
-            Premises bel = (Premises) mem.premiseQueue.takeHighestPriorityItem();
-            if(bel != null) {
-                bel.execute();
-            } else {
-                break;
+        final long premiseStart = System.nanoTime();
+        mem.scheduler.tasksFired(selected.size(), premiseStart - taskStart);
+        int fired = 0;
+        final int premisesToFire = mem.scheduler.premisesToFire(mem.narParameters, deadline);
+        if(mem.premiseWorkers == null) {
+            //fire the premises in priority order, each one taken after the one before was executed,
+            //until the time of the cycle is spent if it has a budget
+            final DerivationPool pool = mem.derivationPool();
+            while(fired < premisesToFire && (deadline == 0 || fired == 0 || System.nanoTime() < deadline)) {
+                Premises bel = takePremise(mem);
+                if(bel == null) {
+                    break;
+                }
+                try {
+                    bel.execute();
+                } finally {
+                    pool.release(bel);
+                }
+                fired++;
+            }
+        } else {
+            //derive a batch of premises from the premises queue, to be executed by the premise workers:
+            List<Premises> batch = new ArrayList<>();
+            for(int i=0; i<premisesToFire; i++) {
+                Premises bel = takePremise(mem);
+                if(bel != null) {
+                    batch.add(bel);
+                } else {
+                    break;
+                }
+            }
+            executePremises(mem, time, batch);
+            fired = batch.size();
+        }
+        mem.scheduler.premisesFired(fired, System.nanoTime() - premiseStart);
+        if(mem.emitting(Events.PremisesFired.class)) {
+            mem.emit(Events.PremisesFired.class, fired, mem.scheduler.getPremisesPerCycle());
+        }
+    }
+    
+    private static Premises takePremise(Memory mem) {
+        Premises bel = mem.premiseQueue.takeNext();
+        if(bel != null) {
+            //no longer waiting, so an equal premise can be added again
+            //(without merging, the key can belong to an equal premise which is still waiting)
+            synchronized(mem.premiseQueue.lockFor(bel.name())) {
+                if(mem.premiseQueue.get(bel.name()) == bel) {
+                    mem.premiseQueue.take(bel.name());
+                }
+            }
+        }
+        return bel;
+    }
+    
+    /**
+     * Executes the premises, in parallel by the premise workers of the memory if there are some.
+     * Each premise then gets its own derivation context which keeps the derived tasks back
+     * and draws its random numbers from a generator seeded in the order of the premises.
+     * The premises of a task are executed one after the other by the same worker, as answering
+     * a question changes the task, and once all are executed the tasks are added in the order
+     * of the premises, so that the derivations don't depend on the scheduling of the workers.
+     * Only the order of the events emitted while deriving, like answers, does.
+     * The premises and the contexts are given back to the DerivationPool of the thread afterwards.
+     */
+    public static void executePremises(Memory mem, Timable time, List<Premises> batch) {
+        final DerivationPool pool = mem.derivationPool();
+        if(mem.premiseWorkers == null || batch.size() < 2) {
+            int i = 0;
+            try {
+                for(; i<batch.size(); i++) {
+                    final Premises bel = batch.get(i);
+                    try {
+                        bel.execute();
+                    } finally {
+                        pool.release(bel);
+                    }
+                }
+            } finally {
+                //if a premise failed, the ones after it go back into the queue
+                for(int j=i+1; j<batch.size(); j++) {
+                    pool.release(mem.premiseQueue.putIn(batch.get(j)));
+                }
+            }
+            return;
+        }
+        final DerivationContext[] contexts = new DerivationContext[batch.size()];
+        final Map<Task<?>,List<Integer>> premisesOfTask = new IdentityHashMap<>();
+        final List<List<Integer>> groups = new ArrayList<>();
+        for(int i=0; i<contexts.length; i++) {
+            contexts[i] = pool.context(time);
+            contexts[i].bufferTasks(Memory.randomNumber.nextLong());
+            final Task<?> task = batch.get(i).task;
+            List<Integer> group = premisesOfTask.get(task);
+            if(group == null) {
+                group = new ArrayList<>();
+                premisesOfTask.put(task, group);
+                groups.add(group);
             }
+            group.add(i);
+        }
+        final List<ForkJoinTask<?>> jobs = new ArrayList<>(groups.size());
+        for(final List<Integer> group : groups) {
+            jobs.add(mem.premiseWorkers.submit(() -> {
+                for(final int i : group) {
+                    batch.get(i).execute(contexts[i]);
+                }
+            }));
+        }
+        //wait for all jobs, without being interruptible, so that no context is written to anymore when the tasks are added
+        Throwable failure = null;
+        for(final ForkJoinTask<?> job : jobs) {
+            job.quietlyJoin();
+            if(failure == null && job.isCompletedAbnormally()) {
+                failure = job.getException();
+            }
+        }
+        //barrier passed, add the derived tasks, also the ones derived before a premise failed as if executed one by one
+        for(final DerivationContext nal : contexts) {
+            nal.flushTasks();
+            pool.release(nal);
+        }
+        for(final Premises bel : batch) {
+            pool.release(bel);
+        }
+        if(failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if(failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if(failure != null) {
+            throw new IllegalStateException("Premise execution failed", failure);
         }
     }
 }
@@ -90,6 +90,19 @@ public class BudgetValue implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Reinitialization as by the constructor, for items which are reused
+     * @param p Initial priority
+     * @param d Initial durability
+     * @param q Initial quality
+     */
+    public void set(final float p, final float d, final float q) {
+        priority = Math.min(p, 1.0f);
+        durability = d >= 1.0f ? (float) (1.0-narParameters.TRUTH_EPSILON) : d;
+        quality = q;
+        lastForgetTime = -1;
+    }
+
     /**
      * Cloning constructor
      * @param v Budget value to be cloned
@@ -30,6 +30,7 @@ import org.opennars.io.Symbols.NativeOperator;
 import org.opennars.language.CompoundTerm;
 import org.opennars.language.Term;
 import org.opennars.main.Shell;
+import org.opennars.storage.BeliefTable;
 import org.opennars.storage.Memory;
 
 import java.io.Serializable;
@@ -38,7 +39,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import static org.opennars.inference.BudgetFunctions.rankBelief;
+import static org.opennars.inference.TruthFunctions.temporalProjection;
+import static org.opennars.inference.UtilityFunctions.w2c;
 import org.opennars.io.events.Events;
 import org.opennars.language.Product;
 import org.opennars.main.Parameters;
@@ -69,10 +71,9 @@ public class Concept extends Item<Term> implements Serializable {
     public final Map<Term,TermLink> termLinkTemplates;
 
     /**
-     * Judgments directly made about the term Use List because of access
-     * and insertion in the middle
+     * Judgments directly made about the term, ordered by rank
      */
-    public final List<Task> beliefs;
+    public final BeliefTable beliefs;
     /**
      * Desire values on the term, similar to the above one
      */
@@ -103,7 +104,7 @@ public class Concept extends Item<Term> implements Serializable {
         this.term = tm;
         this.memory = memory;
 
-        this.beliefs = new ArrayList<>();
+        this.beliefs = new BeliefTable();
         
         if (tm instanceof CompoundTerm) {
             this.termLinkTemplates = ((CompoundTerm) tm).prepareComponentLinks();
@@ -129,12 +130,12 @@ public class Concept extends Item<Term> implements Serializable {
 
 
 
-    public void addToTable(final Task task, final boolean rankTruthExpectation, final List<Task> table, final int max, final Class eventAdd, final Class eventRemove, final Object... extraEventArguments) {
+    public void addToTable(final Task task, final boolean rankTruthExpectation, final BeliefTable table, final int max, final Class eventAdd, final Class eventRemove, final Object... extraEventArguments) {
         
         final int preSize = table.size();
         final Task removedT;
         Sentence removed = null;
-        removedT = addToTable(task, table, max, rankTruthExpectation);
+        removedT = table.add(task, max, rankTruthExpectation);
         if(removedT != null) {
             removed=removedT.sentence;
         }
@@ -178,54 +179,17 @@ public class Concept extends Item<Term> implements Serializable {
         };
     }
 
-    /**
-     * Add a new belief (or goal) into the table Sort the beliefs/desires by
-     * rank, and remove redundant or low rank one
-     *
-     * @param table The table to be revised
-     * @param capacity The capacity of the table
-     * @return whether table was modified
-     */
-    public static Task addToTable(final Task newTask, final List<Task> table, final int capacity, final boolean rankTruthExpectation) {
-        final Sentence newSentence = newTask.sentence;
-        final float rank1 = rankBelief(newSentence, rankTruthExpectation);    // for the new isBelief
-        float rank2;        
-        int i;
-        for (i = 0; i < table.size(); i++) {
-            final Sentence judgment2 = table.get(i).sentence;
-            rank2 = rankBelief(judgment2, rankTruthExpectation);
-            if (rank1 >= rank2) {
-                if (newSentence.truth.equals(judgment2.truth) && newSentence.stamp.equals(judgment2.stamp,false,true,true)) {
-                    //System.out.println(" ---------- Equivalent Belief: " + newSentence + " == " + judgment2);
-                    return null;
-                }
-                table.add(i, newTask);
-                break;
-            }            
-        }
-        
-        if (table.size() == capacity) {
-            // nothing
-        }
-        else if (table.size() > capacity) {
-            final Task removed = table.remove(table.size() - 1);
-            return removed;
-        }
-        else if (i == table.size()) { // branch implies implicit table.size() < capacity
-            table.add(newTask);
-        }
-        
-        return null;
-    }
-
     /**
      * Select a belief value or desire value for a given query
+     * <p>
+     * The events are visited from the ones closest to the occurrence time of the query
+     * outwards, until their projected confidence can't beat the best candidate anymore.
      *
      * @param query The query to be processed
      * @param list The list of beliefs or desires to be used
      * @return The best candidate selected
      */
-    public Task selectCandidate(final Task query, final List<Task> list, final Timable time) {
+    public Task selectCandidate(final Task query, final BeliefTable list, final Timable time) {
  //        if (list == null) {
         //            return null;
         //        }
@@ -236,12 +200,50 @@ public class Concept extends Item<Term> implements Serializable {
         synchronized (list) {
             for (final Task judgT : list) {
                 final Sentence judg = judgT.sentence;
+                //the quality by confidence can't exceed the confidence of an eternal belief
+                if (!judg.isEternal() || judg.truth.getConfidence() <= currentBest) {
+                    continue;
+                }
                 beliefQuality = LocalRules.solutionQuality(rateByConfidence, query, judg, memory, time); //makes revision explicitly search for
                 if (beliefQuality > currentBest /*&& (!forRevision || judgT.sentence.equalsContent(query)) */ /*&& (!forRevision || !Stamp.baseOverlap(query.stamp.evidentialBase, judg.stamp.evidentialBase)) */) {
                     currentBest = beliefQuality;
                     candidate = judgT;
                 }
             }
+            //and of an event neither its eternalized confidence, nor its confidence projected over the distance
+            final long target = query.sentence.getOccurenceTime();
+            final long now = time.time();
+            final float maxConfidence = list.maxEventConfidence();
+            final float maxEternalized = w2c(maxConfidence, memory.narParameters);
+            int before = list.eventIndex(target) - 1;
+            int after = before + 1;
+            while (before >= 0 || after < list.eventCount()) {
+                final int i;
+                if (after >= list.eventCount() || (before >= 0 && target - list.occurrenceAt(before) <= list.occurrenceAt(after) - target)) {
+                    i = before--;
+                } else {
+                    i = after++;
+                }
+                float maxQuality = maxEternalized;
+                if (target != Stamp.ETERNAL) {
+                    final long distance = Math.abs(list.occurrenceAt(i) - target);
+                    final long farthest = target >= now ? target + distance : target - distance;
+                    maxQuality = Math.max(maxQuality, maxConfidence * temporalProjection(farthest, target, now, memory.narParameters));
+                }
+                if (maxQuality <= currentBest) {
+                    break;
+                }
+                final Sentence judg = list.eventAt(i).sentence;
+                final float confidence = judg.truth.getConfidence();
+                if (Math.max(confidence, w2c(confidence, memory.narParameters)) <= currentBest) {
+                    continue;
+                }
+                beliefQuality = LocalRules.solutionQuality(rateByConfidence, query, judg, memory, time);
+                if (beliefQuality > currentBest) {
+                    currentBest = beliefQuality;
+                    candidate = list.eventAt(i);
+                }
+            }
         }
         return candidate;
     }
@@ -306,6 +308,7 @@ public class Concept extends Item<Term> implements Serializable {
             for (final Task t : beliefs) {
                 t.sentence.discountConfidence(memory.narParameters);
             }
+            beliefs.rerank();
         }
     }
 
@@ -56,6 +56,9 @@ public abstract class Item<K> implements Serializable {
     /** The budget of the Item, consisting of 3 numbers */
     public final BudgetValue budget;
 
+    /** Slot of the Item in the PriorityMap it is stored in, -1 if it is not stored in one */
+    public int slot = -1;
+
     public Item() { // items that do not need budget
         this.budget = null;
     }
@@ -30,11 +30,12 @@ import org.opennars.language.Tense;
 import org.opennars.main.MiscFlags;
 import org.opennars.storage.Memory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Set;
 
 import static org.opennars.inference.TemporalRules.*;
 import static org.opennars.language.Tense.*;
@@ -62,16 +63,28 @@ public class Stamp implements Cloneable, Serializable {
         }
         
         /**
-         * The evidential base entry
+         * The evidential base entry, both ids have to fit into 32 bits as the entry is packed into a long.
+         * This limits the NAR ids to 32 bits, they are random ints unless they are given to the NAR,
+         * so that the bases are primitive arrays which are merged and compared without following references.
          * 
-         * @param narId The id of the NAR the input evidence was obtained from
-         * @param inputId The nar-specific input id of the input
+         * @param narId The id of the NAR the input evidence was obtained from, an int
+         * @param inputId The nar-specific input id of the input, between 0 and MAX_INPUT_ID
+         * @throws IllegalArgumentException if the NAR id doesn't fit into an int or the input id is out of range
          */
         public BaseEntry(long narId, long inputId) {
+            if(narId != (int) narId) {
+                throw new IllegalArgumentException("The NAR id " + narId + " doesn't fit into 32 bits");
+            }
+            if(inputId < 0 || inputId > MAX_INPUT_ID) {
+                throw new IllegalArgumentException("The input id " + inputId + " is out of range, the NAR ran out of input ids");
+            }
             this.narId = narId; 
             this.inputId = inputId; 
         }
 
+        /** the largest input id which fits into the lower 32 bits of a packed entry */
+        public static final long MAX_INPUT_ID = 0xffffffffL;
+
         @Override
         public String toString() {
             return "(" + narId + "," + inputId + ")";
@@ -102,14 +115,39 @@ public class Stamp implements Cloneable, Serializable {
         public int compareTo(Object o) {
             return Comparator.comparing(BaseEntry::getNarId).thenComparing(BaseEntry::getInputId).compare(this, (BaseEntry) o);
         }
+
+        /**
+         * @return The entry packed into a long, narId in the upper and inputId in the lower 32 bits,
+         *         which orders the same as compareTo
+         */
+        public long pack() {
+            return (narId << 32) | (inputId & 0xffffffffL);
+        }
+
+        public static long narId(final long packed) {
+            return packed >> 32;
+        }
+
+        public static long inputId(final long packed) {
+            return packed & 0xffffffffL;
+        }
     }
     
-    /** serial numbers. not to be modified after Stamp constructor has initialized it*/
-    public BaseEntry[] evidentialBase;
+    /**
+     * serial numbers as packed BaseEntry's, sorted in ascending order without duplicates.
+     * Not to be modified after Stamp constructor has initialized it
+     */
+    public long[] evidentialBase;
 
     /** the length of @see evidentialBase */
     public int baseLength;
 
+    /** one bit for each entry of evidentialBase, stamps whose masks don't intersect can't overlap */
+    private long evidentialBloom;
+
+    /** whether an entry was in the bases of both parents, then it is in evidentialBase once */
+    private boolean evidentialCycle;
+
     /** creation time of the stamp */
     private long creationTime;
 
@@ -119,8 +157,8 @@ public class Stamp implements Cloneable, Serializable {
     /** default for atemporal events means "always" in Judgment/Question, but "current" in Goal/Quest*/
     public static final long ETERNAL = Integer.MIN_VALUE;
 
-    /** caches evidentialBase as a set for comparisons and hashcode, stores the unique Long's in-order for efficiency*/
-    private BaseEntry[] evidentialSet = null;
+    /** caches evidentialBase as a set for comparisons and hashcode, stores the unique entries in-order for efficiency*/
+    private long[] evidentialSet = null;
 
     /** Tense of the item*/
     private Tense tense;
@@ -160,8 +198,8 @@ public class Stamp implements Cloneable, Serializable {
     /** used for when the ocrrence time will be set later; so should not be called from externally but through another Stamp constructor */
     protected Stamp(final Tense tense, final BaseEntry serial) {
         this.baseLength = 1;
-        this.evidentialBase = new BaseEntry[baseLength];
-        this.evidentialBase[0] = serial;
+        this.evidentialBase = new long[] { serial.pack() };
+        this.evidentialBloom = bloom(evidentialBase[0]);
         this.tense = tense;
         this.creationTime = -1;
     }
@@ -201,6 +239,8 @@ public class Stamp implements Cloneable, Serializable {
     public Stamp(final Stamp old, final long creationTime, final Stamp useEvidentialBase) {        
         this.evidentialBase = useEvidentialBase.evidentialBase;
         this.baseLength = useEvidentialBase.baseLength;
+        this.evidentialBloom = useEvidentialBase.evidentialBloom;
+        this.evidentialCycle = useEvidentialBase.evidentialCycle;
         this.creationTime = creationTime;
 
         this.occurrenceTime = old.getOccurrenceTime();
@@ -214,30 +254,122 @@ public class Stamp implements Cloneable, Serializable {
      * @param second The second Stamp
      */
     public Stamp(final Stamp first, final Stamp second, final long time, Parameters narParameters) {
-        //TODO use iterators instead of repeated first and second .get's?
-        
-        int i1, i2, j;
-        i1 = i2 = j = 0;
         this.baseLength = Math.min(first.baseLength + second.baseLength, narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH);
-        this.evidentialBase = new BaseEntry[baseLength];
+        this.evidentialBase = new long[baseLength];
 
-        final BaseEntry[] firstBase = first.evidentialBase;
-        final BaseEntry[] secondBase = second.evidentialBase;     
-        final int firstLength = firstBase.length;
-        final int secondLength = secondBase.length;
+        final long[] firstBase = first.evidentialBase;
+        final long[] secondBase = second.evidentialBase;
 
         creationTime = time;
         occurrenceTime = first.getOccurrenceTime();    // use the occurrence of task
+        evidentialCycle = first.evidentialCycle || second.evidentialCycle;
         
-        //https://code.google.com/p/open-nars/source/browse/trunk/nars_core_java/nars/entity/Stamp.java#143        
+        if (first.baseLength + second.baseLength <= baseLength) {
+            //all entries are kept, so the sorted bases are merged
+            int i1 = 0;
+            int i2 = 0;
+            int j = 0;
+            while (i1 < firstBase.length || i2 < secondBase.length) {
+                final long next;
+                if (i2 >= secondBase.length || (i1 < firstBase.length && firstBase[i1] <= secondBase[i2])) {
+                    next = firstBase[i1++];
+                } else {
+                    next = secondBase[i2++];
+                }
+                if (j > 0 && evidentialBase[j-1] == next) {
+                    evidentialCycle = true;
+                    continue;
+                }
+                evidentialBase[j++] = next;
+                evidentialBloom |= bloom(next);
+            }
+            trimBase(j);
+            return;
+        }
+        //the base is too long, so the entries of the two parents are taken in turns, to keep evidence of both:
+        //https://code.google.com/p/open-nars/source/browse/trunk/nars_core_java/nars/entity/Stamp.java#143
+        //the input ids grow with time, so they are taken from the end of the sorted bases, newest first
+        int i1 = firstBase.length - 1;
+        int i2 = secondBase.length - 1;
+        int j = 0;
         while (j < baseLength) {
-            if(i2 < secondLength) {
-                evidentialBase[j++] = secondBase[i2++];
+            if (i2 >= 0) {
+                evidentialBase[j++] = secondBase[i2--];
             }
-            if(i1 < firstLength) {
-                evidentialBase[j++] = firstBase[i1++];
+            if (i1 >= 0 && j < baseLength) {
+                evidentialBase[j++] = firstBase[i1--];
             }
         }
+        //then sorted, and an entry which was taken from both is kept once
+        Arrays.sort(evidentialBase);
+        j = 0;
+        for (int i = 0; i < baseLength; i++) {
+            if (j > 0 && evidentialBase[j-1] == evidentialBase[i]) {
+                evidentialCycle = true;
+                continue;
+            }
+            evidentialBase[j++] = evidentialBase[i];
+            evidentialBloom |= bloom(evidentialBase[i]);
+        }
+        trimBase(j);
+    }
+
+    /** shortens the evidential base to the length, after entries were dropped as duplicates */
+    private void trimBase(final int length) {
+        if (length != baseLength) {
+            baseLength = length;
+            evidentialBase = Arrays.copyOf(evidentialBase, length);
+        }
+    }
+
+    /** a stamp with the given fields, used when reading one */
+    private Stamp(final long[] evidentialBase, final boolean evidentialCycle, final long creationTime, final long occurrenceTime, final Tense tense) {
+        this.baseLength = evidentialBase.length;
+        this.evidentialBase = evidentialBase;
+        for (final long entry : evidentialBase) {
+            this.evidentialBloom |= bloom(entry);
+        }
+        this.evidentialCycle = evidentialCycle;
+        this.creationTime = creationTime;
+        this.occurrenceTime = occurrenceTime;
+        this.tense = tense;
+    }
+
+    /**
+     * Writes the fields of the stamp which aren't caches, as the packed entries of the base,
+     * the times and the tense
+     *
+     * @param out The output
+     * @throws IOException if the output fails
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(baseLength);
+        for (int i = 0; i < baseLength; i++) {
+            out.writeLong(evidentialBase[i]);
+        }
+        out.writeLong(creationTime);
+        out.writeLong(occurrenceTime);
+        out.writeByte(tense == null ? -1 : tense.ordinal());
+        out.writeByte((evidentialCycle ? 1 : 0) | (alreadyAnticipatedNegConfirmation ? 2 : 0));
+    }
+
+    /**
+     * @param in The input
+     * @return The stamp written by write
+     * @throws IOException if the input fails
+     */
+    public static Stamp read(final DataInput in) throws IOException {
+        final long[] base = new long[in.readInt()];
+        for (int i = 0; i < base.length; i++) {
+            base[i] = in.readLong();
+        }
+        final long creationTime = in.readLong();
+        final long occurrenceTime = in.readLong();
+        final int tense = in.readByte();
+        final int flags = in.readByte();
+        final Stamp stamp = new Stamp(base, (flags & 1) != 0, creationTime, occurrenceTime, tense < 0 ? null : Tense.values()[tense]);
+        stamp.alreadyAnticipatedNegConfirmation = (flags & 2) != 0;
+        return stamp;
     }
 
     public Stamp(final Timable time, final Memory memory, final Tense tense) {
@@ -249,34 +381,60 @@ public class Stamp implements Cloneable, Serializable {
         this(time, memory, Tense.Present);
     }
     
-    /** Detects evidental base overlaps **/
-    public static boolean baseOverlap(final BaseEntry[] base1, final BaseEntry[] base2) {
-        final Set<BaseEntry> task_base = new HashSet<>(base1.length + base2.length);
-        for (final BaseEntry aBase1 : base1) {
-            if (task_base.contains(aBase1)) { //can have an overlap in itself already
-                return true;
-            }
-            task_base.add(aBase1);
+    /** the bit of an evidential base entry in the bloom mask */
+    private static long bloom(final long entry) {
+        return 1L << ((entry * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+    
+    /**
+     * Detects evidental base overlaps, deciding most non-overlapping pairs by their bloom masks
+     * before merging the bases
+     *
+     * @param s1 The first stamp
+     * @param s2 The second stamp
+     * @param memory The memory which counts the checks, or null
+     * @return Whether the two bases share an entry or one of them is cyclic
+     */
+    public static boolean baseOverlap(final Stamp s1, final Stamp s2, final Memory memory) {
+        if (s1.evidentialCycle || s2.evidentialCycle) {
+            return true;
         }
-        for (final BaseEntry aBase2 : base2) {
-            if (task_base.contains(aBase2)) {
-                return true;
+        if ((s1.evidentialBloom & s2.evidentialBloom) == 0) {
+            if (memory != null) {
+                memory.overlapChecksRejected.incrementAndGet();
             }
-            task_base.add(aBase2); //also add to detect collision with itself
+            return false;
         }
-        return false;
-     }
+        if (memory != null) {
+            memory.overlapChecksExact.incrementAndGet();
+        }
+        return baseOverlap(s1.evidentialBase, s2.evidentialBase);
+    }
     
-    public boolean evidenceIsCyclic() {
-        final Set<BaseEntry> task_base = new HashSet<>(this.evidentialBase.length);
-        for (final BaseEntry anEvidentialBase : this.evidentialBase) {
-            if (task_base.contains(anEvidentialBase)) { //can have an overlap in itself already
+    /** Detects evidental base overlaps, by merging the two sorted bases **/
+    public static boolean baseOverlap(final long[] base1, final long[] base2) {
+        int i1 = 0, i2 = 0;
+        boolean first = true;
+        long last = 0;
+        while (i1 < base1.length || i2 < base2.length) {
+            final long next;
+            if (i2 >= base2.length || (i1 < base1.length && base1[i1] <= base2[i2])) {
+                next = base1[i1++];
+            } else {
+                next = base2[i2++];
+            }
+            if (!first && next == last) { //can have an overlap in itself already
                 return true;
             }
-            task_base.add(anEvidentialBase);
+            first = false;
+            last = next;
         }
         return false;
     }
+    
+    public boolean evidenceIsCyclic() {
+        return evidentialCycle;
+    }
 
     public boolean isEternal() {
         final boolean eternalOccurrence = occurrenceTime == ETERNAL;
@@ -317,36 +475,25 @@ public class Stamp implements Cloneable, Serializable {
         return new Stamp(this);
     }
     
-    public static BaseEntry[] toSetArray(final BaseEntry[] x) {
-        final BaseEntry[] set = x.clone();
+    public static long[] toSetArray(final long[] x) {
+        final long[] set = x.clone();
         
         if (x.length < 2)
             return set;
         
-        //1. copy evidentialBse
-        //2. sort
-        //3. count duplicates
-        //4. create new array 
+        //1. copy evidentialBase
+        //2. sort, a no-op for the sorted bases of stamps
+        //3. drop duplicates in place
+        //4. trim
         
         Arrays.sort(set);
-        BaseEntry lastValue = null;
-        int j = 0; //# of unique items
-        for (final BaseEntry v : set) {
-            if (lastValue == null || !lastValue.equals(v)) {
-                j++;
-            }
-            lastValue = v;
-        }
-        lastValue = null;
-        final BaseEntry[] sorted = new BaseEntry[j];
-        j = 0;
-        for (final BaseEntry v : set) {
-            if (lastValue == null || !lastValue.equals(v)) {
-                sorted[j++] = v;
+        int j = 1; //# of unique items
+        for (int i = 1; i < set.length; i++) {
+            if (set[i] != set[j-1]) {
+                set[j++] = set[i];
             }
-            lastValue = v;
         }
-        return sorted;
+        return j == set.length ? set : Arrays.copyOf(set, j);
     }
 
     /**
@@ -354,7 +501,7 @@ public class Stamp implements Cloneable, Serializable {
      *
      * @return The NavigableSet representation of the evidential base
      */
-    private BaseEntry[] toSet() {        
+    private long[] toSet() {        
         if (evidentialSet == null) {        
             evidentialSet = toSetArray(evidentialBase);
             evidentialHash = Arrays.hashCode(evidentialSet);
@@ -484,7 +631,8 @@ public class Stamp implements Cloneable, Serializable {
             }
             buffer.append(' ').append(Symbols.STAMP_STARTER).append(' ');
             for (int i = 0; i < baseLength; i++) {
-                buffer.append(evidentialBase[i].toString());
+                buffer.append('(').append(BaseEntry.narId(evidentialBase[i])).append(',')
+                      .append(BaseEntry.inputId(evidentialBase[i])).append(')');
                 if (i < (baseLength - 1)) {
                     buffer.append(Symbols.STAMP_SEPARATOR);
                 }
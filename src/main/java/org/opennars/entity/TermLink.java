@@ -28,7 +28,6 @@ import org.opennars.language.Term;
 
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A link between a compound term and a component term
@@ -160,9 +159,9 @@ public class TermLink extends Item<TermLink> implements TLink<Term>, Serializabl
      * @return  hashcode
      */
     protected int init() {
-        //TODO lazy calculate this?
-        final int h = Objects.hash(target, type, Arrays.hashCode(index));
-        return h;
+        //same value as Objects.hash(target, type, Arrays.hashCode(index)), without the array and the boxing
+        final int h = 31 * (31 + (target == null ? 0 : target.hashCode())) + type;
+        return 31 * h + Arrays.hashCode(index);
     }
     
     @Override
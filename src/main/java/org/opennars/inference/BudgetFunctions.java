@@ -82,6 +82,7 @@ public final class BudgetFunctions extends UtilityFunctions {
         final Task task = nal.getCurrentTask();
         task.decPriority(1 - difT);
         task.decDurability(1 - difT);
+        nal.mem().taskBudgetChanged(task);
         final float dif = truth.getConfidence() - max(tTruth.getConfidence(), bTruth.getConfidence());
         final float priority = or(dif, task.getPriority());
         final float durability = aveAri(dif, task.getDurability());
@@ -146,7 +147,32 @@ public final class BudgetFunctions extends UtilityFunctions {
         return quality;
     }
 
-    
+    /**
+     * Decrease Priority according to the time passed since the last forgetting,
+     * used by bags with lazy forgetting.
+     * After forgetCycles, p-q is multiplied by d, the durability being the
+     * percentage of priority level left after that period.
+     * Unlike applyForgetting, the priority is never increased.
+     *
+     * @param budget The previous budget value
+     * @param forgetCycles The time it takes for p-q to become d*(p-q)
+     * @param relativeThreshold The relative threshold of the bag
+     * @param currentTime The current time
+     * @return The new priority
+     */
+    public static float forgetPeriodic(final BudgetValue budget, final float forgetCycles, final float relativeThreshold, final long currentTime) {
+        final long period = budget.setLastForgetTime(currentTime);
+        final float quality = budget.getQuality() * relativeThreshold;      // re-scaled quality
+        final float p = budget.getPriority() - quality;                     // priority above quality
+        if (period <= 0 || p <= 0) {
+            return budget.getPriority();
+        }
+        final float priority = quality + p * (float) pow(budget.getDurability(), period / forgetCycles);
+        budget.setPriority(priority);
+        return priority;
+    }
+
+
     /**
      * Merge an item into another one in a bag, when the two are identical
      * except in budget values
@@ -39,7 +39,6 @@ import java.util.Set;
 
 import static org.opennars.inference.TruthFunctions.*;
 import static org.opennars.language.Terms.reduceComponents;
-import org.opennars.storage.Memory;
 
 /**
  * Compound term composition and decomposition rules, with two premises.
@@ -717,7 +716,7 @@ public final class CompositionalRules {
         for(Term t : app.keySet()) {
             shuffledVariables.add(t);
         }
-        Collections.shuffle(shuffledVariables, Memory.randomNumber);
+        Collections.shuffle(shuffledVariables, nal.random());
         HashSet<Term> selected = new HashSet<Term>();
         int i = 1;
         for(Term t : shuffledVariables) {
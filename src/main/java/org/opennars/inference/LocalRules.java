@@ -38,7 +38,6 @@ import static org.opennars.inference.TemporalRules.reverseOrder;
 import static org.opennars.inference.TruthFunctions.temporalProjection;
 import static org.opennars.language.CompoundTerm.extractIntervals;
 import static org.opennars.language.CompoundTerm.replaceIntervals;
-import org.opennars.main.Parameters;
 
 /**
  * Directly process a task by a oldBelief, with only two Terms in both. In
@@ -67,13 +66,13 @@ public class LocalRules {
         final Sentence sentence = task.sentence;
         
         if (sentence.isJudgment()) {
-            if (revisible(sentence, belief, nal.narParameters)) {
+            if (revisible(sentence, belief, nal)) {
                 return revision(sentence, belief, beliefConcept, true, nal);
             }
         } else {
             if (matchingOrder(sentence, belief)) {
                 final Term[] u = new Term[] { sentence.term, belief.term };
-                if (Variables.unify(Symbols.VAR_QUERY, u)) {
+                if (Variables.unify(Symbols.VAR_QUERY, u, nal.getSubstitution())) {
                     trySolution(belief, task, nal, true);
                 }
             }
@@ -86,10 +85,11 @@ public class LocalRules {
      *
      * @param s1 The first sentence
      * @param s2 The second sentence
+     * @param nal The derivation context
      * @return If revision is possible between the two sentences
      */
-    public static boolean revisible(final Sentence s1, final Sentence s2, Parameters narParameters) {
-        if(!s1.isEternal() && !s2.isEternal() && Math.abs(s1.getOccurenceTime() - s2.getOccurenceTime()) > narParameters.REVISION_MAX_OCCURRENCE_DISTANCE) {
+    public static boolean revisible(final Sentence s1, final Sentence s2, final DerivationContext nal) {
+        if(!s1.isEternal() && !s2.isEternal() && Math.abs(s1.getOccurenceTime() - s2.getOccurenceTime()) > nal.narParameters.REVISION_MAX_OCCURRENCE_DISTANCE) {
             return false;
         }
         if(s1.term.term_indices != null && s2.term.term_indices != null) {
@@ -102,7 +102,7 @@ public class LocalRules {
         return (s1.getRevisible() && 
                 matchingOrder(s1.getTemporalOrder(), s2.getTemporalOrder()) &&
                 CompoundTerm.replaceIntervals(s1.term).equals(CompoundTerm.replaceIntervals(s2.term)) &&
-                !Stamp.baseOverlap(s1.stamp.evidentialBase, s2.stamp.evidentialBase));
+                !Stamp.baseOverlap(s1.stamp, s2.stamp, nal.memory));
     }
 
     /**
@@ -307,6 +307,7 @@ public class LocalRules {
             budget = new BudgetValue(UtilityFunctions.or(taskPriority, quality), task.getDurability(), BudgetFunctions.truthToQuality(solution.truth), nal.narParameters);
             task.setPriority(Math.min(1 - quality, taskPriority));
         }
+        nal.mem().taskBudgetChanged(task);
         return budget;
     }
 
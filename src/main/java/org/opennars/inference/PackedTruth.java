@@ -0,0 +1,226 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.inference;
+
+import org.opennars.entity.TruthValue;
+import org.opennars.main.Parameters;
+
+import static org.opennars.inference.UtilityFunctions.and;
+import static org.opennars.inference.UtilityFunctions.c2w;
+import static org.opennars.inference.UtilityFunctions.or;
+import static org.opennars.inference.UtilityFunctions.w2c;
+
+/**
+ * Truth values packed into a long, and the truth functions on them, which allocate nothing.
+ * <p>
+ * The frequency is kept in the upper and the confidence in the lower 32 bits, as float bits.
+ * As the frequency is never negative, its sign bit marks analytic truth.
+ * The confidence is limited to 1 - TRUTH_EPSILON like in TruthValue, so that
+ * TruthFunctions can compute on packed truth and convert the result back.
+ *
+ * @author Patrick Hammer
+ */
+public final class PackedTruth {
+    private static final long ANALYTIC = 1L << 63;
+
+    private PackedTruth() {
+    }
+
+    /**
+     * @param f frequency value
+     * @param c confidence value, limited to 1 - TRUTH_EPSILON
+     * @param analytic is the truth value an analytic one?
+     * @param narParameters parameters of the reasoner
+     * @return The packed truth value
+     */
+    public static long truth(final float f, final float c, final boolean analytic, final Parameters narParameters) {
+        final float maxConfidence = 1.0f - narParameters.TRUTH_EPSILON;
+        //floatToIntBits since the sign of the NaN of a revision without evidence would mark it analytic
+        final long bits = ((long) Float.floatToIntBits(f) << 32) | (Float.floatToRawIntBits(c < maxConfidence ? c : maxConfidence) & 0xffffffffL);
+        return analytic ? bits | ANALYTIC : bits;
+    }
+
+    public static long truth(final float f, final float c, final Parameters narParameters) {
+        return truth(f, c, false, narParameters);
+    }
+
+    public static long pack(final TruthValue v) {
+        final long bits = ((long) Float.floatToIntBits(v.getFrequency()) << 32) | (Float.floatToRawIntBits(v.getConfidence()) & 0xffffffffL);
+        return v.getAnalytic() ? bits | ANALYTIC : bits;
+    }
+
+    public static TruthValue unpack(final long t, final Parameters narParameters) {
+        return new TruthValue(frequency(t), confidence(t), analytic(t), narParameters);
+    }
+
+    public static float frequency(final long t) {
+        return Float.intBitsToFloat((int) (t >>> 32) & 0x7fffffff);
+    }
+
+    public static float confidence(final long t) {
+        return Float.intBitsToFloat((int) t);
+    }
+
+    public static boolean analytic(final long t) {
+        return (t & ANALYTIC) != 0;
+    }
+
+    /** @see TruthValue#getExpectation() */
+    public static float expectation(final long t) {
+        return (confidence(t) * (frequency(t) - 0.5f) + 0.5f);
+    }
+
+    /* ----- the functions of TruthFunctions, see there ----- */
+
+    public static long conversion(final long v1, final Parameters narParameters) {
+        final float w = and(frequency(v1), confidence(v1));
+        return truth(1, w2c(w, narParameters), narParameters);
+    }
+
+    public static long negation(final long v1, final Parameters narParameters) {
+        return truth(1 - frequency(v1), confidence(v1), narParameters);
+    }
+
+    public static long contraposition(final long v1, final Parameters narParameters) {
+        final float w = and(1 - frequency(v1), confidence(v1));
+        return truth(0, w2c(w, narParameters), narParameters);
+    }
+
+    public static long revision(final long v1, final long v2, final Parameters narParameters) {
+        final float f1 = frequency(v1);
+        final float f2 = frequency(v2);
+        final float w1 = c2w(confidence(v1), narParameters);
+        final float w2 = c2w(confidence(v2), narParameters);
+        final float w = w1 + w2;
+        return truth((w1 * f1 + w2 * f2) / w, w2c(w, narParameters), narParameters);
+    }
+
+    public static long deduction(final long v1, final long v2, final Parameters narParameters) {
+        final float f = and(frequency(v1), frequency(v2));
+        return truth(f, and(confidence(v1), confidence(v2), f), narParameters);
+    }
+
+    public static long deduction(final long v1, final float reliance, final Parameters narParameters) {
+        final float f1 = frequency(v1);
+        return truth(f1, and(f1, confidence(v1), reliance), true, narParameters);
+    }
+
+    public static long analogy(final long v1, final long v2, final Parameters narParameters) {
+        final float f2 = frequency(v2);
+        return truth(and(frequency(v1), f2), and(confidence(v1), confidence(v2), f2), narParameters);
+    }
+
+    public static long resemblance(final long v1, final long v2, final Parameters narParameters) {
+        final float f1 = frequency(v1);
+        final float f2 = frequency(v2);
+        return truth(and(f1, f2), and(confidence(v1), confidence(v2), or(f1, f2)), narParameters);
+    }
+
+    public static long abduction(final long v1, final long v2, final Parameters narParameters) {
+        if (analytic(v1) || analytic(v2)) {
+            return truth(0.5f, 0f, narParameters);
+        }
+        final float w = and(frequency(v2), confidence(v1), confidence(v2));
+        return truth(frequency(v1), w2c(w, narParameters), narParameters);
+    }
+
+    public static long abduction(final long v1, final float reliance, final Parameters narParameters) {
+        if (analytic(v1)) {
+            return truth(0.5f, 0f, narParameters);
+        }
+        final float w = and(confidence(v1), reliance);
+        return truth(frequency(v1), w2c(w, narParameters), true, narParameters);
+    }
+
+    public static long induction(final long v1, final long v2, final Parameters narParameters) {
+        return abduction(v2, v1, narParameters);
+    }
+
+    public static long exemplification(final long v1, final long v2, final Parameters narParameters) {
+        if (analytic(v1) || analytic(v2)) {
+            return truth(0.5f, 0f, narParameters);
+        }
+        final float w = and(frequency(v1), frequency(v2), confidence(v1), confidence(v2));
+        return truth(1, w2c(w, narParameters), narParameters);
+    }
+
+    public static long comparison(final long v1, final long v2, final Parameters narParameters) {
+        final float f1 = frequency(v1);
+        final float f2 = frequency(v2);
+        final float f0 = or(f1, f2);
+        final float f = (f0 == 0) ? 0 : (and(f1, f2) / f0);
+        final float w = and(f0, confidence(v1), confidence(v2));
+        return truth(f, w2c(w, narParameters), narParameters);
+    }
+
+    public static long desireStrong(final long v1, final long v2, final Parameters narParameters) {
+        final float f2 = frequency(v2);
+        return truth(and(frequency(v1), f2), and(confidence(v1), confidence(v2), f2), narParameters);
+    }
+
+    public static long desireWeak(final long v1, final long v2, final Parameters narParameters) {
+        final float f2 = frequency(v2);
+        return truth(and(frequency(v1), f2), and(confidence(v1), confidence(v2), f2, w2c(1.0f, narParameters)), narParameters);
+    }
+
+    public static long desireDed(final long v1, final long v2, final Parameters narParameters) {
+        return truth(and(frequency(v1), frequency(v2)), and(confidence(v1), confidence(v2)), narParameters);
+    }
+
+    public static long desireInd(final long v1, final long v2, final Parameters narParameters) {
+        final float w = and(frequency(v2), confidence(v1), confidence(v2));
+        return truth(frequency(v1), w2c(w, narParameters), narParameters);
+    }
+
+    public static long union(final long v1, final long v2, final Parameters narParameters) {
+        return truth(or(frequency(v1), frequency(v2)), and(confidence(v1), confidence(v2)), narParameters);
+    }
+
+    public static long intersection(final long v1, final long v2, final Parameters narParameters) {
+        return truth(and(frequency(v1), frequency(v2)), and(confidence(v1), confidence(v2)), narParameters);
+    }
+
+    public static long reduceDisjunction(final long v1, final long v2, final Parameters narParameters) {
+        final long v0 = intersection(v1, negation(v2, narParameters), narParameters);
+        return deduction(v0, 1f, narParameters);
+    }
+
+    public static long reduceConjunction(final long v1, final long v2, final Parameters narParameters) {
+        final long v0 = intersection(negation(v1, narParameters), v2, narParameters);
+        return negation(deduction(v0, 1f, narParameters), narParameters);
+    }
+
+    public static long reduceConjunctionNeg(final long v1, final long v2, final Parameters narParameters) {
+        return reduceConjunction(v1, negation(v2, narParameters), narParameters);
+    }
+
+    public static long anonymousAnalogy(final long v1, final long v2, final Parameters narParameters) {
+        final long v0 = truth(frequency(v1), w2c(confidence(v1), narParameters), narParameters);
+        return analogy(v2, v0, narParameters);
+    }
+
+    public static long eternalize(final long v1, final Parameters narParameters) {
+        return truth(frequency(v1), w2c(confidence(v1), narParameters), narParameters);
+    }
+}
@@ -23,8 +23,6 @@
  */
 package org.opennars.inference;
 
-import java.util.ArrayList;
-import java.util.List;
 import org.opennars.control.DerivationContext;
 import org.opennars.entity.*;
 import org.opennars.io.Symbols;
@@ -74,7 +72,7 @@ public class RuleTables {
             Sentence belief_event = belief;
             if(temporalInference && !task.sentence.isEternal() && belief_event != null && !belief_event.isEternal()) {
                 boolean found_overlap = false;
-                if(Stamp.baseOverlap(task.sentence.stamp.evidentialBase, belief_event.stamp.evidentialBase)) {
+                if(Stamp.baseOverlap(task.sentence.stamp, belief_event.stamp, memory)) {
                     found_overlap = true;
                 }
                 if(!found_overlap) { //temporal rules are inductive so no chance to succeed if there is an overlap
@@ -95,7 +93,7 @@ public class RuleTables {
             }
             
             //too restrictive, its checked for non-deductive inference rules in derivedTask (also for single prem)
-            nal.evidentalOverlap = Stamp.baseOverlap(task.sentence.stamp.evidentialBase, belief.stamp.evidentialBase);
+            nal.evidentalOverlap = Stamp.baseOverlap(task.sentence.stamp, belief.stamp, memory);
             if(nal.evidentalOverlap && (!task.sentence.isEternal() || !belief.isEternal())) {
                 return; //only allow for eternal reasoning for now to prevent derived event floods
             }
@@ -121,27 +119,27 @@ public class RuleTables {
             return;
         }*/
         
-        List<TermLink> termLinks = new ArrayList<TermLink>();
-            
+        //the links only lend their type and index to the rule table, so they get no budget
+        TermLink termLink = null;
         TermLink structuralTermLink = taskConcept.termLinkTemplates.get(beliefTerm);
         if(structuralTermLink != null) {
-            termLinks.add(new TermLink(structuralTermLink.target, structuralTermLink, task.budget.clone()));
-        }
-        if(!taskConcept.termLinkTemplates.containsKey(beliefTerm) &&
-                beliefConcept != null && beliefConcept.termLinkTemplates.containsKey(nal.getCurrentConcept().getTerm())) {
-            termLinks.add(new TermLink(beliefTerm, beliefConcept.termLinkTemplates.get(nal.getCurrentConcept().getTerm()), task.budget.clone()));
+            termLink = new TermLink(structuralTermLink.target, structuralTermLink, null);
+        } else if(beliefConcept != null) {
+            final TermLink beliefTemplate = beliefConcept.termLinkTemplates.get(nal.getCurrentConcept().getTerm());
+            if(beliefTemplate != null) {
+                termLink = new TermLink(beliefTerm, beliefTemplate, null);
+            }
         }
 
-        //task term termlink template tasklink
-        TaskLink virtualTaskLink = new TaskLink(task, new TermLink(task.getTerm(), taskConcept.termLinkTemplates.get(nal.getCurrentConcept().getTerm()), task.budget.clone()), task.budget, 1);
         if(structuralTermLink != null) {// && structuralTermLink.type == TermLink.TRANSFORM) {
-            TaskLink structuralTaskLink = new TaskLink(task, structuralTermLink, task.budget.clone(), 1);
-            transformTask(structuralTaskLink, nal);
+            transformTask(structuralTermLink.index, nal);
         }
-        for(TermLink termLink : termLinks)  {
+        if(termLink != null)  {
+            //task term termlink template tasklink
+            TaskLink virtualTaskLink = new TaskLink(task, new TermLink(task.getTerm(), taskConcept.termLinkTemplates.get(nal.getCurrentConcept().getTerm()), null), null, 1);
             applyRuleTable(virtualTaskLink, termLink, nal, task, taskSentence, taskTerm, beliefTerm, belief);
             //other structural inference with task linked from its own concept: 
-            applyRuleTable(new TaskLink(task, null, task.budget.clone(), 1), termLink, nal, task, taskSentence, taskTerm, beliefTerm, belief);
+            applyRuleTable(new TaskLink(task, null, null, 1), termLink, nal, task, taskSentence, taskTerm, beliefTerm, belief);
         }
     }
 
@@ -202,7 +200,7 @@ public class RuleTables {
                         if (belief != null) {
                             if (beliefTerm instanceof Implication) {
                                 final Term[] u = new Term[] { beliefTerm, taskTerm };
-                                if (Variables.unify(VAR_INDEPENDENT, ((Statement) beliefTerm).getSubject(), taskTerm, u, true)) { //only secure place that
+                                if (Variables.unify(VAR_INDEPENDENT, ((Statement) beliefTerm).getSubject(), taskTerm, u, true, nal.getSubstitution())) { //only secure place that
                                     final Sentence newBelief = belief.clone(u[0]);                                                //allows partial match
                                     final Sentence newTaskSentence = taskSentence.clone(u[1]);
                                     detachmentWithVar(newBelief, newTaskSentence, bIndex, false, nal);
@@ -455,7 +453,7 @@ public class RuleTables {
         final Statement.EnumStatementSide figureLeft = retSideFromFigure(figure, EnumFigureSide.LEFT);
         final Statement.EnumStatementSide figureRight = retSideFromFigure(figure, EnumFigureSide.RIGHT);
 
-        if (!Variables.unify(VAR_INDEPENDENT, taskStatement.retBySide(figureLeft), beliefStatement.retBySide(figureRight), u)) {
+        if (!Variables.unify(VAR_INDEPENDENT, taskStatement.retBySide(figureLeft), beliefStatement.retBySide(figureRight), u, nal.getSubstitution())) {
             return;
         }
 
@@ -505,7 +503,7 @@ public class RuleTables {
             t1 = isDeduction ? beliefStatement.getSubject() : taskStatement.getSubject();
             t2 = isDeduction ? taskStatement.getPredicate() : beliefStatement.getPredicate();
 
-            if (Variables.unify(VAR_QUERY, t1, t2, new Term[]{taskStatement, beliefStatement})) {
+            if (Variables.unify(VAR_QUERY, t1, t2, new Term[]{taskStatement, beliefStatement}, nal.getSubstitution())) {
                 LocalRules.matchReverse(nal);
             } else {
                 SyllogisticRules.dedExe(t1, t2, taskSentence, belief, nal);
@@ -534,7 +532,7 @@ public class RuleTables {
         final Statement.EnumStatementSide figureRight = retSideFromFigure(figure, EnumFigureSide.RIGHT);
 
         final Term[] u = new Term[] { asymSt, symSt };
-        if (!Variables.unify(VAR_INDEPENDENT, asymSt.retBySide(figureLeft), symSt.retBySide(figureRight), u)) {
+        if (!Variables.unify(VAR_INDEPENDENT, asymSt.retBySide(figureLeft), symSt.retBySide(figureRight), u, nal.getSubstitution())) {
             return;
         }
 
@@ -543,7 +541,7 @@ public class RuleTables {
         final Term t1 = asymSt.retBySide(retOppositeSide(figureLeft));
         final Term t2 = symSt.retBySide(retOppositeSide(figureRight));
 
-        if (Variables.unify(VAR_QUERY, t1, t2, u)) {
+        if (Variables.unify(VAR_QUERY, t1, t2, u, nal.getSubstitution())) {
             LocalRules.matchAsymSym(asym, sym, figure, nal);
         } else {
             switch (figure) {
@@ -618,7 +616,7 @@ public class RuleTables {
         Term rt2 = s2.retBySide(retOppositeSide(figureRight));
         
         final Term[] u = new Term[] { s1, s2 };
-        if (Variables.unify(VAR_INDEPENDENT, ut1, ut2, u)) {
+        if (Variables.unify(VAR_INDEPENDENT, ut1, ut2, u, nal.getSubstitution())) {
             //recalculate rt1, rt2 from above:
             switch (figure) {
                 case 11: rt1 = s1.getPredicate();   rt2 = s2.getPredicate(); break;
@@ -669,7 +667,7 @@ public class RuleTables {
             
             if (!component.hasVarIndep() && !component.hasVarDep()) { //because of example: <<(*,w1,#2) --> [good]> ==> <w1 --> TRANSLATE>>. <(*,w1,w2) --> [good]>.
                 SyllogisticRules.detachment(mainSentence, subSentence, index, checkTermAgain, nal);
-            } else if (Variables.unify(VAR_INDEPENDENT, component, content, u)) { //happens through syllogisms
+            } else if (Variables.unify(VAR_INDEPENDENT, component, content, u, nal.getSubstitution())) { //happens through syllogisms
                 mainSentence = mainSentence.clone(u[0]);
                 subSentence = subSentence.clone(u[1]);
                 SyllogisticRules.detachment(mainSentence, subSentence, index, false, nal);
@@ -721,7 +719,7 @@ public class RuleTables {
 
         if (component2 != null) {
             final Term[] u = new Term[] { conditional, statement };
-            if (Variables.unify(VAR_INDEPENDENT, component, component2, u)) {
+            if (Variables.unify(VAR_INDEPENDENT, component, component2, u, nal.getSubstitution())) {
                 conditional = (Implication) u[0];
                 statement = (Statement) u[1];
                 SyllogisticRules.conditionalDedInd(conditionalSentence, conditional, index, statement, side, nal);
@@ -795,7 +793,7 @@ public class RuleTables {
             if ((compound instanceof Conjunction) && (nal.getCurrentBelief() != null)) {
                 final Conjunction conj = (Conjunction) compound;
                 final Term[] u = new Term[] { compound, statement };
-                if (Variables.unify(VAR_DEPENDENT, component, statement, u) && u[0] instanceof Conjunction && u[1] instanceof Statement) {
+                if (Variables.unify(VAR_DEPENDENT, component, statement, u, nal.getSubstitution()) && u[0] instanceof Conjunction && u[1] instanceof Statement) {
                     compound = (Conjunction) u[0];
                     statement = (Statement) u[1];
                     if(conj.isSpatial || compound.getTemporalOrder() != TemporalRules.ORDER_FORWARD || //only allow dep var elimination
@@ -866,8 +864,15 @@ public class RuleTables {
      * @param nal Reference to the memory
      */
     public static void transformTask(final TaskLink tLink, final DerivationContext nal) {
+        transformTask(tLink.index, nal);
+    }
+
+    /**
+     * @param indices The index of the link to the transformed component
+     * @param nal Reference to the memory
+     */
+    public static void transformTask(final short[] indices, final DerivationContext nal) {
         final CompoundTerm content = (CompoundTerm) nal.getCurrentTask().getTerm();
-        final short[] indices = tLink.index;
         Term expectedInheritanceTerm = null; // we store here the (dereferenced) term which we expect to be a inheritance
 
         { // this block "dereferences" the term by the address which we are storing in "indices"
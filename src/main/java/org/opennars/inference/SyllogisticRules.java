@@ -524,7 +524,7 @@ public final class SyllogisticRules {
         final Sentence taskSentence = task.sentence;
         final Sentence belief = nal.getCurrentBelief();
         final boolean deduction = (side != 0);
-        final boolean conditionalTask = Variables.hasSubstitute(Symbols.VAR_INDEPENDENT, premise2, belief.term);
+        final boolean conditionalTask = Variables.hasSubstitute(Symbols.VAR_INDEPENDENT, premise2, belief.term, nal.getSubstitution());
         final Term commonComponent;
         Term newComponent = null;
         if (side == 0 || side == 1) {
@@ -547,7 +547,7 @@ public final class SyllogisticRules {
             index = (short) index2;
         } else {
             Term[] u = new Term[] { premise1, premise2 };            
-            boolean match = Variables.unify(Symbols.VAR_INDEPENDENT, oldCondition.term[index], commonComponent, u);
+            boolean match = Variables.unify(Symbols.VAR_INDEPENDENT, oldCondition.term[index], commonComponent, u, nal.getSubstitution());
             premise1 = (Implication) u[0]; premise2 = u[1];
             
             if (!match && (commonComponent.getClass() == oldCondition.getClass())) {
@@ -559,7 +559,7 @@ public final class SyllogisticRules {
                     match = Variables.unify(Symbols.VAR_INDEPENDENT, 
                             oldCondition.term[index], 
                             compoundCommonComponent.term[index], 
-                            u);
+                            u, nal.getSubstitution());
                     premise1 = (Implication) u[0]; premise2 = u[1];
                 }
                 
@@ -684,7 +684,7 @@ public final class SyllogisticRules {
         final Task task = nal.getCurrentTask();
         final Sentence taskSentence = task.sentence;
         final Sentence belief = nal.getCurrentBelief();
-        final boolean conditionalTask = Variables.hasSubstitute(Symbols.VAR_INDEPENDENT, premise2, belief.term);
+        final boolean conditionalTask = Variables.hasSubstitute(Symbols.VAR_INDEPENDENT, premise2, belief.term, nal.getSubstitution());
         final Term commonComponent;
         Term newComponent = null;
         if (side == 0) {
@@ -704,12 +704,12 @@ public final class SyllogisticRules {
         final Conjunction oldCondition = (Conjunction) tm;
 
         Term[] u = new Term[] { premise1, premise2 };
-        boolean match = Variables.unify(Symbols.VAR_DEPENDENT, oldCondition.term[index], commonComponent, u);
+        boolean match = Variables.unify(Symbols.VAR_DEPENDENT, oldCondition.term[index], commonComponent, u, nal.getSubstitution());
         premise1 = (Equivalence) u[0]; premise2 = u[1];
         
         if (!match && (commonComponent.getClass() == oldCondition.getClass())) {
             u = new Term[] { premise1, premise2 };
-            match = Variables.unify(Symbols.VAR_DEPENDENT, oldCondition.term[index], ((CompoundTerm) commonComponent).term[index], u);
+            match = Variables.unify(Symbols.VAR_DEPENDENT, oldCondition.term[index], ((CompoundTerm) commonComponent).term[index], u, nal.getSubstitution());
             premise1 = (Equivalence) u[0]; premise2 = u[1];
         }
         if (!match) {
@@ -803,7 +803,7 @@ public final class SyllogisticRules {
         final TruthValue value1 = sentence.truth;
         final TruthValue value2 = belief.truth;
 
-        final boolean keepOrder = Variables.hasSubstitute(Symbols.VAR_INDEPENDENT, st1, task.getTerm());
+        final boolean keepOrder = Variables.hasSubstitute(Symbols.VAR_INDEPENDENT, st1, task.getTerm(), nal.getSubstitution());
 
         // we folded the logic to use loops for more compact code
         for (int loop=0;loop<2;loop++) {
@@ -860,11 +860,11 @@ public final class SyllogisticRules {
         Term comp = null;
         for(final Term t : compound) {
             final Term[] unify = new Term[] { t, component };
-            if(Variables.unify(Symbols.VAR_DEPENDENT, unify)) {
+            if(Variables.unify(Symbols.VAR_DEPENDENT, unify, nal.getSubstitution())) {
                 comp = t;
                 break;
             }
-            if(Variables.unify(Symbols.VAR_QUERY, unify)) {
+            if(Variables.unify(Symbols.VAR_QUERY, unify, nal.getSubstitution())) {
                 comp = t;
                 break;
             }
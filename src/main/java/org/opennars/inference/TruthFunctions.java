@@ -28,6 +28,11 @@ import org.opennars.entity.TruthValue;
 import static java.lang.Math.abs;
 import org.opennars.main.Parameters;
 
+import static org.opennars.inference.PackedTruth.confidence;
+import static org.opennars.inference.PackedTruth.frequency;
+import static org.opennars.inference.PackedTruth.pack;
+import static org.opennars.inference.PackedTruth.unpack;
+
 /**
  * All truth-value (and desire-value) functions used in inference rules
  *
@@ -125,11 +130,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue conversion(final TruthValue v1, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float w = and(f1, c1);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(1, c, narParameters);
+        return unpack(PackedTruth.conversion(pack(v1), narParameters), narParameters);
     }
 
     /* ----- Single argument functions, called in StructuralRules ----- */
@@ -139,9 +140,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue negation(final TruthValue v1, Parameters narParameters) {
-        final float f = 1 - v1.getFrequency();
-        final float c = v1.getConfidence();
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.negation(pack(v1), narParameters), narParameters);
     }
 
     /**
@@ -150,11 +149,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue contraposition(final TruthValue v1, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float w = and(1 - f1, c1);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(0, c, narParameters);
+        return unpack(PackedTruth.contraposition(pack(v1), narParameters), narParameters);
     }
 
     /* ----- double argument functions, called in MatchingRules ----- */
@@ -165,18 +160,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue revision(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        return revision(v1, v2, new TruthValue(narParameters), narParameters);
-    }
-    
-    private static final TruthValue revision(final TruthValue v1, final TruthValue v2, final TruthValue result, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float w1 = c2w( v1.getConfidence(), narParameters );
-        final float w2 = c2w( v2.getConfidence(), narParameters );
-        final float w = w1 + w2;
-        result.setFrequency( (w1 * f1 + w2 * f2) / w );
-        result.setConfidence( w2c(w, narParameters) );
-        return result;
+        return unpack(PackedTruth.revision(pack(v1), pack(v2), narParameters), narParameters);
     }
     
     /* ----- double argument functions, called in SyllogisticRules ----- */
@@ -187,13 +171,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue deduction(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2, f);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.deduction(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -203,10 +181,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue deduction(final TruthValue v1, final float reliance, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c = and(f1, c1, reliance);
-        return new TruthValue(f1, c, true, narParameters);
+        return unpack(PackedTruth.deduction(pack(v1), reliance, narParameters), narParameters);
     }
 
     /**
@@ -216,13 +191,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue analogy(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2, f2);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.analogy(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -232,13 +201,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue resemblance(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2, or(f1, f2));
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.resemblance(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -248,16 +211,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue abduction(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        if (v1.getAnalytic() || v2.getAnalytic()) {
-            return new TruthValue(0.5f, 0f, narParameters);
-        }
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float w = and(f2, c1, c2);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(f1, c, narParameters);
+        return unpack(PackedTruth.abduction(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -267,14 +221,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue abduction(final TruthValue v1, final float reliance, Parameters narParameters) {
-        if (v1.getAnalytic()) {
-            return new TruthValue(0.5f, 0f, narParameters);
-        }
-        final float f1 = v1.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float w = and(c1, reliance);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(f1, c, true, narParameters);
+        return unpack(PackedTruth.abduction(pack(v1), reliance, narParameters), narParameters);
     }
 
     /**
@@ -284,7 +231,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue induction(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        return abduction(v2, v1, narParameters);
+        return unpack(PackedTruth.induction(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -294,16 +241,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue exemplification(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        if (v1.getAnalytic() || v2.getAnalytic()) {
-            return new TruthValue(0.5f, 0f, narParameters);
-        }
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float w = and(f1, f2, c1, c2);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(1, c, narParameters);
+        return unpack(PackedTruth.exemplification(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -313,15 +251,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue comparison(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f0 = or(f1, f2);
-        final float f = (f0 == 0) ? 0 : (and(f1, f2) / f0);
-        final float w = and(f0, c1, c2);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.comparison(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /* ----- desire-value functions, called in SyllogisticRules ----- */
@@ -332,13 +262,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue desireStrong(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2, f2);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.desireStrong(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -348,13 +272,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue desireWeak(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2, f2, w2c(1.0f, narParameters));
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.desireWeak(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -364,13 +282,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue desireDed(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.desireDed(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -380,13 +292,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue desireInd(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float w = and(f2, c1, c2);
-        final float c = w2c(w, narParameters);
-        return new TruthValue(f1, c, narParameters);
+        return unpack(PackedTruth.desireInd(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /* ----- double argument functions, called in CompositionalRules ----- */
@@ -397,13 +303,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue union(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = or(f1, f2);
-        final float c = and(c1, c2);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.union(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -413,13 +313,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue intersection(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float f2 = v2.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c2 = v2.getConfidence();
-        final float f = and(f1, f2);
-        final float c = and(c1, c2);
-        return new TruthValue(f, c, narParameters);
+        return unpack(PackedTruth.intersection(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -429,8 +323,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue reduceDisjunction(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final TruthValue v0 = intersection(v1, negation(v2, narParameters), narParameters);
-        return deduction(v0, 1f, narParameters);
+        return unpack(PackedTruth.reduceDisjunction(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -440,8 +333,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue reduceConjunction(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final TruthValue v0 = intersection(negation(v1, narParameters), v2, narParameters);
-        return negation(deduction(v0, 1f, narParameters), narParameters);
+        return unpack(PackedTruth.reduceConjunction(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -451,7 +343,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue reduceConjunctionNeg(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        return reduceConjunction(v1, negation(v2, narParameters), narParameters);
+        return unpack(PackedTruth.reduceConjunctionNeg(pack(v1), pack(v2), narParameters), narParameters);
     }
 
     /**
@@ -461,10 +353,7 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final TruthValue anonymousAnalogy(final TruthValue v1, final TruthValue v2, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float c1 = v1.getConfidence();
-        final TruthValue v0 = new TruthValue(f1, w2c(c1, narParameters), narParameters);
-        return analogy(v2, v0, narParameters);
+        return unpack(PackedTruth.anonymousAnalogy(pack(v1), pack(v2), narParameters), narParameters);
     }
     
     
@@ -483,10 +372,8 @@ public final class TruthFunctions extends UtilityFunctions {
      * @return Truth value of the conclusion
      */
     public static final EternalizedTruthValue eternalize(final TruthValue v1, Parameters narParameters) {
-        final float f1 = v1.getFrequency();
-        final float c1 = v1.getConfidence();
-        final float c = w2c(c1, narParameters);
-        return new EternalizedTruthValue(f1, c, narParameters);
+        final long t = PackedTruth.eternalize(pack(v1), narParameters);
+        return new EternalizedTruthValue(frequency(t), confidence(t), narParameters);
     }
     
     public static final float temporalProjection(final long sourceTime, final long targetTime, final long currentTime, Parameters param) {
@@ -60,6 +60,23 @@ public class UtilityFunctions {
         }
         return 1 - product;
     }
+
+    /* fixed arity versions of and and or, which spare the truth functions the varargs array */
+    public final static float and(final float a, final float b) {
+        return a * b;
+    }
+
+    public final static float and(final float a, final float b, final float c) {
+        return a * b * c;
+    }
+
+    public final static float and(final float a, final float b, final float c, final float d) {
+        return a * b * c * d;
+    }
+
+    public final static float or(final float a, final float b) {
+        return 1 - (1 - a) * (1 - b);
+    }
     
     /**
      * A function where the output is the arithmetic average the inputs
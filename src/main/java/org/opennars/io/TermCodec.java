@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.io;
+
+import org.opennars.io.Symbols.NativeOperator;
+import org.opennars.language.CompoundTerm;
+import org.opennars.language.Image;
+import org.opennars.language.ImageExt;
+import org.opennars.language.ImageInt;
+import org.opennars.language.Interval;
+import org.opennars.language.Similarity;
+import org.opennars.language.Term;
+import org.opennars.language.Terms;
+import org.opennars.language.Variable;
+import org.opennars.operator.Operator;
+import org.opennars.storage.Memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact binary encoding of terms, for storing and transferring them.
+ * <p>
+ * A term is written in prefix order: a compound as the code of its operator, the amount
+ * of its terms (and the relation index of an image) followed by its terms,
+ * an interval as its time, and an atom as its index in a dictionary of atoms.
+ * An atom is added to the dictionary, with its name, where it appears first,
+ * so an Encoder and a Decoder which are used for a sequence of terms share the dictionary
+ * and each name is written only once.
+ * <p>
+ * Decoding makes the terms with their make methods, like the parser does.
+ * A variable which is scoped, like the variables of the term of a sentence, is scoped to the
+ * decoded term it is read with, so variables of the same name in different terms stay apart.
+ * The imagination spaces of terms are not written.
+ *
+ * @author Patrick Hammer
+ */
+public class TermCodec {
+    /* followed by the index of an atom in the dictionary */
+    private static final int ATOM = 0;
+    /* followed by the kind and the name of an atom which is added to the dictionary */
+    private static final int NEW_ATOM = 1;
+    /* followed by the time of the interval */
+    private static final int INTERVAL = 2;
+    /* plus the ordinal of the operator, followed by the amount of terms and the terms */
+    private static final int COMPOUND = 3;
+
+    /* kinds of atoms */
+    private static final int TERM = 0;
+    private static final int VARIABLE = 1;
+    private static final int OPERATOR = 2;
+    private static final int SCOPED_VARIABLE = 3;
+
+    private static final NativeOperator[] operators = NativeOperator.values();
+
+    /**
+     * Writes terms, remembering the atoms which were already written
+     */
+    public static class Encoder {
+        private final DataOutput out;
+        private final Map<String,Integer> dictionary = new HashMap<>();
+
+        public Encoder(final DataOutput out) {
+            this.out = out;
+        }
+
+        public void write(final Term t) throws IOException {
+            if(t instanceof CompoundTerm) {
+                final CompoundTerm c = (CompoundTerm) t;
+                out.writeByte(COMPOUND + c.operator().ordinal());
+                writeVarLong(out, c.term.length);
+                if(c instanceof Image) {
+                    writeVarLong(out, ((Image) c).relationIndex);
+                }
+                for(final Term component : c.term) {
+                    write(component);
+                }
+            } else if(t instanceof Interval) {
+                out.writeByte(INTERVAL);
+                writeVarLong(out, ((Interval) t).time);
+            } else {
+                final int kind = t instanceof Variable ? (((Variable) t).getScope() != t ? SCOPED_VARIABLE : VARIABLE) :
+                                 (t instanceof Operator ? OPERATOR : TERM);
+                final String name = atomName(t);
+                final String key = kind + name;
+                final Integer index = dictionary.get(key);
+                if(index != null) {
+                    out.writeByte(ATOM);
+                    writeVarLong(out, index);
+                } else {
+                    dictionary.put(key, dictionary.size());
+                    out.writeByte(NEW_ATOM);
+                    out.writeByte(kind);
+                    out.writeUTF(name);
+                }
+            }
+        }
+
+        /* the name the atom was made from, which includes its indices if it has some */
+        private static String atomName(final Term t) {
+            if(t.term_indices == null || t.index_variable == null) {
+                return t.name().toString();
+            }
+            final StringBuilder name = new StringBuilder(t.index_variable).append('[');
+            for(int i=0; i<t.term_indices.length; i++) {
+                if(i > 0) {
+                    name.append(',');
+                }
+                name.append(t.term_indices[i]);
+            }
+            return name.append(']').toString();
+        }
+    }
+
+    /**
+     * Reads terms written by an Encoder, with the operators registered in the memory
+     */
+    public static class Decoder {
+        private final DataInput in;
+        private final Memory memory;
+        private final List<Object[]> dictionary = new ArrayList<>();
+        /* the names of the scoped variables of the term which is read */
+        private final Set<String> scoped = new HashSet<>();
+
+        public Decoder(final DataInput in, final Memory memory) {
+            this.in = in;
+            this.memory = memory;
+        }
+
+        public Term read() throws IOException {
+            scoped.clear();
+            final Term t = readTerm();
+            if(!scoped.isEmpty()) {
+                t.recurseSubtermsContainingVariables((v, parent) -> {
+                    if(v instanceof Variable && scoped.contains(v.name().toString())) {
+                        ((Variable) v).setScope(t, v.name());
+                    }
+                });
+            }
+            return t;
+        }
+
+        private Term readTerm() throws IOException {
+            final int code = in.readUnsignedByte();
+            switch(code) {
+                case ATOM: {
+                    final Object[] atom = dictionary.get((int) readVarLong(in));
+                    return atom((Integer) atom[0], (String) atom[1]);
+                }
+                case NEW_ATOM: {
+                    final int kind = in.readUnsignedByte();
+                    final String name = in.readUTF();
+                    dictionary.add(new Object[] {kind, name});
+                    return atom(kind, name);
+                }
+                case INTERVAL:
+                    return new Interval(readVarLong(in));
+                default:
+                    if(code - COMPOUND >= operators.length) {
+                        throw new IOException("Invalid term code " + code);
+                    }
+                    final NativeOperator op = operators[code - COMPOUND];
+                    final Term[] components = new Term[(int) readVarLong(in)];
+                    final short relationIndex = (op == NativeOperator.IMAGE_EXT || op == NativeOperator.IMAGE_INT) ? (short) readVarLong(in) : -1;
+                    for(int i=0; i<components.length; i++) {
+                        components[i] = readTerm();
+                    }
+                    return compound(op, components, relationIndex);
+            }
+        }
+
+        private Term atom(final int kind, final String name) throws IOException {
+            switch(kind) {
+                case SCOPED_VARIABLE:
+                    scoped.add(name);
+                    return new Variable(name);
+                case VARIABLE:
+                    return new Variable(name);
+                case OPERATOR:
+                    final Operator op = memory.getOperator(name);
+                    if(op == null) {
+                        throw new IOException("Unknown operator " + name);
+                    }
+                    return op;
+                default:
+                    return Term.get(name);
+            }
+        }
+
+        private static Term compound(final NativeOperator op, final Term[] components, final short relationIndex) {
+            switch(op) {
+                case IMAGE_EXT:
+                    return ImageExt.make(components, relationIndex);
+                case IMAGE_INT:
+                    return ImageInt.make(components, relationIndex);
+                case SIMILARITY:
+                    return Similarity.make(components[0], components[1]);
+                default:
+                    return Terms.term(op, components);
+            }
+        }
+    }
+
+    /**
+     * @param t The term
+     * @return The term encoded with its own dictionary
+     */
+    public static byte[] encode(final Term t) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new Encoder(new DataOutputStream(bytes)).write(t);
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Could not encode " + t, ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data The term encoded by encode
+     * @param memory The memory with the operators of the term
+     * @return The term
+     * @throws IOException if the data is not a valid term
+     */
+    public static Term decode(final byte[] data, final Memory memory) throws IOException {
+        return new Decoder(new DataInputStream(new ByteArrayInputStream(data)), memory).read();
+    }
+
+    private static void writeVarLong(final DataOutput out, long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(final DataInput in) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable length number");
+    }
+}
@@ -51,6 +51,10 @@ public class Events {
     /** fired at the end of each memory cycle */
     public static class CycleEnd {     }
 
+    /** fired at the end of each memory cycle with the amount of premises fired in it
+     *  and the amount of premises fired per cycle, smoothed over the last cycles */
+    public static class PremisesFired {     }
+
     /** fired at the beginning of each individual Memory work cycle */
     public static class WorkCycleStart {
     }
@@ -23,12 +23,16 @@
  */
 package org.opennars.language;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterators;
 import org.opennars.entity.TermLink;
 import org.opennars.inference.TemporalRules;
 import org.opennars.io.Symbols;
 import org.opennars.io.Symbols.NativeOperator;
 import org.opennars.main.MiscFlags;
+import org.opennars.operator.Operation;
+import org.opennars.operator.Operator;
 import org.opennars.storage.Memory;
 
 import java.nio.CharBuffer;
@@ -64,7 +68,14 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
     private boolean hasVariables, hasVarQueries, hasVarIndeps, hasVarDeps, hasIntervals;
     
     int containedTemporalRelations = -1;
+    /* hash of the name, computed from the operator and the terms, 0 if it has to be computed again */
     int hash;
+    /* length of the name, computed together with the hash */
+    private int nameLength;
+    /* the term with its intervals replaced, the key of its concept, null if not made yet */
+    private transient Term conceptTerm;
+    /* the cached result of isValid, see VALID, only kept for terms without variables and intervals */
+    private transient byte validity = 0;
     private boolean normalized;
     
 
@@ -81,6 +92,46 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
     @Override public abstract CompoundTerm clone();
 
     
+    /* the canonical instances of the compounds, weakly referenced so that unused ones are collected */
+    private static final Interner<CompoundTerm> canonical = Interners.newWeakInterner();
+
+    /**
+     * Gives the canonical instance of the compound, so that structurally equal terms made by
+     * the make methods share one instance and are compared by reference.
+     * Only terms which are not changed after they are made are shared:
+     * variables get renamed, intervals replaced, operations carry their task,
+     * and spatial terms and terms with an imagination space carry more than their structure,
+     * so neither they nor the compounds containing them are shared.
+     *
+     * @param t The freshly made compound
+     * @return The canonical instance, or t if it isn't shared
+     */
+    @SuppressWarnings("unchecked") //the canonical instance is returned only if it has the class of t
+    protected static <T extends CompoundTerm> T intern(final T t) {
+        if(t.hasVar() || t.hasInterval() || t instanceof Operation || t.term_indices != null || hasImagination(t)) {
+            return t;
+        }
+        final CompoundTerm c = canonical.intern(t);
+        if(c.getClass() != t.getClass() || c.imagination != null) {
+            return t;
+        }
+        return (T) c;
+    }
+
+    private static boolean hasImagination(final Term t) {
+        if(t.imagination != null) {
+            return true;
+        }
+        if(t instanceof CompoundTerm) {
+            for(final Term component : ((CompoundTerm) t).term) {
+                if(hasImagination(component)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
     /** subclasses should be sure to call init() in their constructors;
      * it is not done here to allow subclass constructors to set data before calling init() */
     public CompoundTerm(final Term[] components) {
@@ -175,6 +226,9 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
     
     public void invalidateName() {        
         this.name = null; //invalidate name so it will be (re-)created lazily        
+        this.hash = 0; //and the hash, as the terms might have changed
+        this.conceptTerm = null;
+        this.validity = 0;
         for (final Term t : term) {
             if (t.hasVar())
                 if (t instanceof CompoundTerm)
@@ -203,6 +257,157 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
         return (CompoundTerm)c;
     }
     
+    /* the results of validity(): cloneDeep would return null, an equal term, or a valid but different term */
+    private static final byte INVALID = -1, VALID = 1, RESTRUCTURED = 2;
+
+    /**
+     * Whether cloneDeep returns a term, checked on the term itself without
+     * cloning it, unless the compound would be restructured by its make method.
+     * <p>
+     * For example (&amp;,a,b) --&gt; (&amp;,b,a) is normalized to (&amp;,a,b) --&gt; (&amp;,a,b), which is invalid.
+     *
+     * @return Whether the term is valid
+     */
+    public boolean isValid() {
+        return validity() != INVALID;
+    }
+
+    private byte validity() {
+        if (validity != 0) {
+            return validity;
+        }
+        byte v = VALID;
+        for (final Term t : term) {
+            if (t instanceof CompoundTerm) {
+                final byte c = ((CompoundTerm) t).validity();
+                if (c == INVALID) {
+                    v = INVALID;
+                    break;
+                }
+                if (c == RESTRUCTURED) {
+                    v = RESTRUCTURED;
+                }
+            }
+        }
+        if (v == VALID) {
+            v = validComponents();
+        }
+        if (v == RESTRUCTURED) { //the make method of the compound decides on the restructured terms
+            v = cloneDeep() == null ? INVALID : RESTRUCTURED;
+        }
+        if (!hasVar() && !hasInterval()) { //the others can be changed in place
+            validity = v;
+        }
+        return v;
+    }
+
+    /**
+     * Mirrors the make method of the compound on the terms of the compound,
+     * RESTRUCTURED where it would build a different term
+     */
+    private byte validComponents() {
+        final int order = getTemporalOrder();
+        if (this instanceof Operation) {
+            return RESTRUCTURED;
+        }
+        if (this instanceof Product || this instanceof ImageExt || this instanceof ImageInt) {
+            return VALID;
+        }
+        if (this instanceof Inheritance) {
+            if (Statement.invalidStatement(term[0], term[1])) {
+                return INVALID;
+            }
+            return (term[0] instanceof Product && term[1] instanceof Operator) ? RESTRUCTURED : VALID;
+        }
+        if (this instanceof Similarity) {
+            if (Statement.invalidStatement(term[0], term[1])) {
+                return INVALID;
+            }
+            return term[0].compareTo(term[1]) > 0 ? RESTRUCTURED : VALID;
+        }
+        if (this instanceof Implication) {
+            if (Statement.invalidStatement(term[0], term[1], order != TemporalRules.ORDER_FORWARD && order != TemporalRules.ORDER_CONCURRENT) ||
+                term[0] instanceof Implication || term[0] instanceof Equivalence || term[1] instanceof Equivalence ||
+                term[0] instanceof Interval || term[1] instanceof Interval) {
+                return INVALID;
+            }
+            return term[1] instanceof Implication ? RESTRUCTURED : VALID;
+        }
+        if (this instanceof Equivalence) {
+            if ((Statement.invalidStatement(term[0], term[1]) && order != TemporalRules.ORDER_FORWARD && order != TemporalRules.ORDER_CONCURRENT) ||
+                term[0] instanceof Implication || term[0] instanceof Equivalence || term[1] instanceof Implication || term[1] instanceof Equivalence ||
+                term[0] instanceof Interval || term[1] instanceof Interval) {
+                return INVALID;
+            }
+            if (order == TemporalRules.ORDER_BACKWARD) {
+                return RESTRUCTURED;
+            }
+            if (order != TemporalRules.ORDER_FORWARD) {
+                final int c = term[0].compareTo(term[1]);
+                return c == 0 ? INVALID : c > 0 ? RESTRUCTURED : VALID;
+            }
+            return VALID;
+        }
+        if (this instanceof Negation) {
+            if (term.length != 1) {
+                return INVALID;
+            }
+            return term[0] instanceof Negation ? RESTRUCTURED : VALID;
+        }
+        if (this instanceof DifferenceExt || this instanceof DifferenceInt) {
+            if (term.length != 2) {
+                return term.length == 1 ? RESTRUCTURED : INVALID;
+            }
+            if ((this instanceof DifferenceExt && term[0] instanceof SetExt && term[1] instanceof SetExt) ||
+                (this instanceof DifferenceInt && term[0] instanceof SetInt && term[1] instanceof SetInt)) {
+                return RESTRUCTURED;
+            }
+            return term[0].equals(term[1]) ? INVALID : VALID;
+        }
+        if (this instanceof SetExt || this instanceof SetInt || this instanceof Disjunction ||
+            this instanceof IntersectionExt || this instanceof IntersectionInt) {
+            if (term.length == 0) {
+                return INVALID;
+            }
+            return term.length > 1 && isSortedSet() ? VALID : RESTRUCTURED;
+        }
+        if (this instanceof Conjunction) {
+            if (term.length == 0) {
+                return INVALID;
+            }
+            if (term.length == 1) {
+                return RESTRUCTURED;
+            }
+            final boolean spatial = getIsSpatial();
+            if (order == TemporalRules.ORDER_FORWARD && spatial) {
+                return VALID;
+            }
+            for (int i = 0; i < term.length; i++) {
+                final Term t = term[i];
+                if (Conjunction.isConjunctionAndHasSameOrder(t, order) && t.getIsSpatial() == spatial) { //flattened
+                    return RESTRUCTURED;
+                }
+                if (order == TemporalRules.ORDER_FORWARD ?
+                        (t instanceof Interval && i > 0 && term[i - 1] instanceof Interval) : //summed up
+                        (t instanceof Interval || t.term_indices != null)) { //dropped, relative indices
+                    return RESTRUCTURED;
+                }
+            }
+            return order == TemporalRules.ORDER_FORWARD || isSortedSet() ? VALID : RESTRUCTURED;
+        }
+        return RESTRUCTURED;
+    }
+
+    /** whether the terms are in ascending order without equal ones */
+    private boolean isSortedSet() {
+        for (int i = 1; i < term.length; i++) {
+            if (term[i - 1].compareTo(term[i]) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static void transformIndependentVariableToDependent(final CompoundTerm T) { //a special instance of transformVariableTermsDeep in 1.7
         final Term[] term=T.term;
         for (int i = 0; i < term.length; i++) {
@@ -220,6 +425,10 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
     
     static final Interval conceptival = new Interval(1);
     private static void ReplaceIntervals(final CompoundTerm comp) {
+        //compounds without intervals can be canonical instances which are shared, so they are left untouched
+        if(!comp.hasInterval()) {
+            return;
+        }
         comp.invalidateName();
         for(int i=0; i<comp.term.length; i++) {
             final Term t = comp.term[i];
@@ -235,15 +444,36 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
         }
     }
 
-    public static Term replaceIntervals(Term T) {
-        if(T instanceof CompoundTerm) {
-            T=T.cloneDeep(); //we will operate on a copy
-            if(T == null) {
+    /**
+     * The term with its intervals replaced, which is the key of its concept.
+     * It is made once and kept with the term, and a valid term without intervals is its own concept term.
+     * The result is shared, so it must not be changed.
+     *
+     * @return The concept term, or null if the term isn't a valid concept term
+     */
+    public static Term replaceIntervals(final Term T) {
+        if(!(T instanceof CompoundTerm)) {
+            return T;
+        }
+        final CompoundTerm comp = (CompoundTerm) T;
+        Term replaced = comp.conceptTerm;
+        if(replaced == null && !T.hasInterval()) {
+            if(!comp.isValid()) {
                 return null; //not a valid concept term
             }
-            ReplaceIntervals((CompoundTerm) T);
+            comp.conceptTerm = T;
+            return T;
         }
-        return T;
+        if(replaced == null) {
+            replaced = T.cloneDeep(); //we will operate on a copy
+            if(replaced == null) {
+                return null; //not a valid concept term
+            }
+            ReplaceIntervals((CompoundTerm) replaced);
+            ((CompoundTerm) replaced).conceptTerm = replaced;
+            comp.conceptTerm = replaced;
+        }
+        return replaced;
     }
     
     private static void ExtractIntervals(final Memory mem, final List<Long> ivals, final CompoundTerm comp) {
@@ -350,6 +580,63 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
         return makeCompoundName(operator(), term);
     }
 
+    /**
+     * Hashes the name the way makeName makes it, so that the hash is the one of the name.
+     * Needs to be overridden together with makeName.
+     *
+     * @param h The hash of the name so far
+     */
+    protected void hashName(final NameHash h) {
+        h.append(COMPOUND_TERM_OPENER.ch).append(operator().toString());
+        for (final Term t : term) {
+            h.append(Symbols.ARGUMENT_SEPARATOR).append(t);
+        }
+        h.append(COMPOUND_TERM_CLOSER.ch);
+    }
+
+    /**
+     * The hash of String, built from the pieces of a name without making the name,
+     * the hashes of compound pieces are the cached ones
+     */
+    protected static final class NameHash {
+        int hash = 0;
+        int length = 0;
+
+        public NameHash append(final char c) {
+            hash = 31 * hash + c;
+            length++;
+            return this;
+        }
+
+        public NameHash append(final CharSequence s) {
+            for (int i = 0; i < s.length(); i++) {
+                hash = 31 * hash + s.charAt(i);
+            }
+            length += s.length();
+            return this;
+        }
+
+        public NameHash append(final Term t) {
+            if (!(t instanceof CompoundTerm)) {
+                return append(t.name());
+            }
+            final CompoundTerm c = (CompoundTerm) t;
+            final int h = c.hashCode();
+            //shift by the length of the name, like appending it char by char would
+            int shift = 1;
+            int base = 31;
+            for (int n = c.nameLength; n > 0; n >>= 1) {
+                if ((n & 1) == 1) {
+                    shift *= base;
+                }
+                base *= base;
+            }
+            hash = hash * shift + h;
+            length += c.nameLength;
+            return this;
+        }
+    }
+
     @Override
     public CharSequence name() {
         if (this.name == null) {            
@@ -665,23 +952,13 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
      * @return The new compound
      */
     public Term setComponent(final int index, final Term t, final Memory memory) {
-        final List<Term> list = asTermList();//Deep();
-        list.remove(index);
-        if (t != null) {
-            if (getClass() != t.getClass()) {
-                list.add(index, t);
-            } else {
-                //final List<Term> list2 = ((CompoundTerm) t).cloneTermsList();
-                final Term[] tt = ((CompoundTerm)t).term;
-                for (int i = 0; i < tt.length; i++) {
-                    list.add(index + i, tt[i]);
-                }
-            }
-        }
-        if(this.isCommutative()) {
-            Term[] ret = list.toArray(new Term[0]);
-            return Terms.term(this, ret);
-        }
+        //the other terms are shared, a term of the same type is spliced in with its terms
+        final Term[] inserted = t == null ? EmptyTermArray :
+                                getClass() != t.getClass() ? new Term[] { t } : ((CompoundTerm) t).term;
+        final Term[] list = new Term[term.length - 1 + inserted.length];
+        System.arraycopy(term, 0, list, 0, index);
+        System.arraycopy(inserted, 0, list, index, inserted.length);
+        System.arraycopy(term, index + 1, list, index + inserted.length, term.length - index - 1);
         return Terms.term(this, list);
     }
 
@@ -725,31 +1002,59 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
         if ((subs == null) || (subs.isEmpty())) {            
             return this;//.clone();
         }
-                
-        final Term[] tt = new Term[term.length];
+        boolean variablesOnly = true;
+        for (final Term k : subs.keySet()) {
+            if (!(k instanceof Variable)) {
+                variablesOnly = false;
+                break;
+            }
+        }
+        return applySubstitute(subs, variablesOnly);
+    }
+
+    /**
+     * The terms which are not changed are shared with the result,
+     * so only the compounds on the paths to substituted terms are rebuilt,
+     * and their term array is only copied once a term is changed.
+     *
+     * @param variablesOnly Whether only variables are substituted, so that terms without variables are left as they are
+     */
+    private Term applySubstitute(final Map<Term, Term> subs, final boolean variablesOnly) {
+        if (variablesOnly && !hasVar()) {
+            return this;
+        }
+        Term[] tt = null;
         boolean modified = false;
         
-        for (int i = 0; i < tt.length; i++) {
-            final Term t1 = tt[i] = term[i];
+        for (int i = 0; i < term.length; i++) {
+            final Term t1 = term[i];
+            Term t = t1;
             
-            if (subs.containsKey(t1)) {
-                Term t2 = subs.get(t1);                            
-                while (subs.containsKey(t2)) {
-                    t2 = subs.get(t2);
+            Term t2 = subs.get(t1);
+            if (t2 != null) {
+                Term next;
+                while ((next = subs.get(t2)) != null) {
+                    t2 = next;
                 }
                 //prevents infinite recursion
                 if (!t2.containsTerm(t1)) {
-                    tt[i] = t2; //t2.clone();
+                    t = t2; //t2.clone();
                     modified = true;
                 }
             } else if (t1 instanceof CompoundTerm) {
-                final Term ss = ((CompoundTerm) t1).applySubstitute(subs);
-                if (ss!=null) {
-                    tt[i] = ss;
-                    if (!tt[i].equals(term[i]))
+                final Term ss = ((CompoundTerm) t1).applySubstitute(subs, variablesOnly);
+                if (ss != null && ss != t1) {
+                    t = ss;
+                    if (!ss.equals(t1))
                         modified = true;
                 }
             }
+            if (t != t1 && tt == null) { //copy on the first change
+                tt = Arrays.copyOf(term, term.length);
+            }
+            if (tt != null) {
+                tt[i] = t;
+            }
         }
         if (!modified)
             return this;
@@ -793,9 +1098,50 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
 
 
 
+    /**
+     * Hash of the name, computed from the operator and the hashes of the terms,
+     * so that the name doesn't have to be made
+     */
     @Override
     public int hashCode() {
-        return name().hashCode();
+        int h = hash;
+        if (h == 0) {
+            if (name != null) {
+                h = nameHash(name);
+                nameLength = name.length();
+            } else {
+                final NameHash n = new NameHash();
+                hashName(n);
+                h = n.hash;
+                nameLength = n.length;
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /* the hash of String, for any CharSequence */
+    private static int nameHash(final CharSequence name) {
+        if (name instanceof String) {
+            return name.hashCode();
+        }
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + name.charAt(i);
+        }
+        return h;
+    }
+
+    private static boolean nameEquals(final CharSequence a, final CharSequence b) {
+        if (a.length() != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < a.length(); i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -806,12 +1152,31 @@ public abstract class CompoundTerm extends Term implements Iterable<Term> {
         return super.compareTo(that);
     }
     
+    /**
+     * Equal compounds have the same type and operator, and equal terms,
+     * where the atomic terms are compared by name like in the name of the compound
+     */
     @Override
     public boolean equals(final Object that) {
         if (that==this) return true;                
-        if (!(that instanceof Term))
+        if (!(that instanceof CompoundTerm) || that.getClass() != getClass())
             return false;
-        return name().equals(((Term)that).name());
+        final CompoundTerm c = (CompoundTerm) that;
+        if (complexity != c.complexity || term.length != c.term.length || operator() != c.operator() || hashCode() != c.hashCode())
+            return false;
+        for (int i = 0; i < term.length; i++) {
+            final Term a = term[i];
+            final Term b = c.term[i];
+            if (a == b)
+                continue;
+            if (a instanceof CompoundTerm || b instanceof CompoundTerm) {
+                if (!a.equals(b))
+                    return false;
+            } else if (!nameEquals(a.name(), b.name())) {
+                return false;
+            }
+        }
+        return true;
     }   
 
     public void setNormalized(final boolean b) {
@@ -250,34 +250,36 @@ public class Conjunction extends CompoundTerm {
             if(newArgList.length == 1) {
                 return newArgList[0];
             }
-            return new Conjunction(newArgList, temporalOrder, false, spatial);
+            return intern(new Conjunction(newArgList, temporalOrder, false, spatial));
             
         } 
         else {
             
             // sort/merge arguments
-            final NavigableSet<Term> set = new TreeSet<>();
             final Term[] flattened = flatten(argList, temporalOrder, spatial);
+            final Term[] args = new Term[flattened.length];
+            int n = 0;
             final ConvRectangle rect = UpdateConvRectangle(flattened);
             for (final Term t : flattened) {
                 if(!(t instanceof Interval)) { //intervals only for seqs
                     if(t.term_indices == null || rect == null || rect.term_indices == null) {
-                        set.add(t);
+                        args[n++] = t;
                     } 
                     else 
                     if(t instanceof CompoundTerm)
                     {   
                         final Term updated = UpdateRelativeIndices(rect.term_indices[2], rect.term_indices[3], rect.term_indices[4], rect.term_indices[5], t.cloneDeep());
-                        set.add(updated);
+                        args[n++] = updated;
                     }
                 }
             }
+            final Term[] set = Term.toSortedSetArray(n == args.length ? args : Arrays.copyOf(args, n));
             
-            if (set.size() == 1) {
-                return set.first();
+            if (set.length == 1) {
+                return set[0];
             }
             
-            return new Conjunction(set.toArray(new Term[0]), temporalOrder, false, spatial, rect);
+            return intern(new Conjunction(set, temporalOrder, false, spatial, rect));
         }
     }
 
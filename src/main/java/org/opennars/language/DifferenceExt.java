@@ -91,7 +91,7 @@ public class DifferenceExt extends CompoundTerm {
             return null;
         }
         
-        return new DifferenceExt(arg);
+        return intern(new DifferenceExt(arg));
     }
 
     /**
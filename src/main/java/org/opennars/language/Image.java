@@ -26,7 +26,6 @@ package org.opennars.language;
 import org.opennars.io.Symbols;
 import org.opennars.io.Symbols.NativeOperator;
 
-import java.util.Objects;
 
 import static org.opennars.io.Symbols.NativeOperator.COMPOUND_TERM_CLOSER;
 import static org.opennars.io.Symbols.NativeOperator.COMPOUND_TERM_OPENER;
@@ -48,9 +47,8 @@ abstract public class Image extends CompoundTerm {
     }
 
     @Override
-    protected void init(final Term[] components) {
-        super.init(components);
-        this.hash = Objects.hash(super.hashCode(), relationIndex); 
+    public boolean equals(final Object that) {
+        return super.equals(that) && relationIndex == ((Image) that).relationIndex;
     }
     
     @Override
@@ -110,6 +108,21 @@ abstract public class Image extends CompoundTerm {
         return makeImageName(operator(), term, relationIndex);
     }
 
+    @Override
+    protected void hashName(final NameHash h) {
+        h.append(COMPOUND_TERM_OPENER.ch).append(operator().toString())
+         .append(Symbols.ARGUMENT_SEPARATOR).append(term[relationIndex]);
+        for (int i = 0; i < term.length; i++) {
+            h.append(Symbols.ARGUMENT_SEPARATOR);
+            if (i == relationIndex) {
+                h.append(Symbols.IMAGE_PLACE_HOLDER);
+            } else {
+                h.append(term[i]);
+            }
+        }
+        h.append(COMPOUND_TERM_CLOSER.ch);
+    }
+
     /**
      * Get the relation term in the Image
      * @return The term representing a relation
@@ -93,7 +93,7 @@ public class ImageExt extends Image {
             }
             n++;
         }
-        return new ImageExt(argument, (short) index);
+        return intern(new ImageExt(argument, (short) index));
     }
 
     /**
@@ -117,7 +117,7 @@ public class ImageExt extends Image {
         }
         final Term[] argument = product.cloneTerms(); //TODO is this clone needed?
         argument[index] = relation;
-        return new ImageExt(argument, index);
+        return intern(new ImageExt(argument, index));
     }
 
     /**
@@ -133,11 +133,21 @@ public class ImageExt extends Image {
         final Term relation = argList[oldIndex];
         argList[oldIndex] = component;
         argList[index] = relation;
-        return new ImageExt(argList, index);
+        return intern(new ImageExt(argList, index));
     }
 
 
 
+    /**
+     * Try to make a new compound from a set of term. Called by the public make methods.
+     * @param argument The argument list
+     * @param index The index of the place-holder in the new Image
+     * @return the Term generated from the arguments
+     */
+    public static ImageExt make(final Term[] argument, final short index) {
+        return intern(new ImageExt(argument, index));
+    }
+
     /**
      * get the operator of the term.
      * @return the operator of the term
@@ -81,7 +81,7 @@ public class Negation extends CompoundTerm {
             // (--,(--,P)) = P
             return ((Negation) t).term[0];
         }         
-        return new Negation(t);
+        return intern(new Negation(t));
     }
 
     /**
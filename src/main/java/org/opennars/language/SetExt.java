@@ -68,7 +68,7 @@ public class SetExt extends SetTensional {
     public static SetExt make(Term... t) {
         t = Term.toSortedSetArray(t);
         if (t.length == 0) return null;
-        return new SetExt(t);
+        return intern(new SetExt(t));
     }
 
     public static SetExt make(final Collection<Term> l) {
@@ -93,5 +93,10 @@ public class SetExt extends SetTensional {
     public CharSequence makeName() {
         return makeSetName(SET_EXT_OPENER.ch, term, SET_EXT_CLOSER.ch);
     }
+
+    @Override
+    protected void hashName(final NameHash h) {
+        hashSetName(h, SET_EXT_OPENER.ch, term, SET_EXT_CLOSER.ch);
+    }
 }
 
@@ -72,7 +72,7 @@ public class SetInt extends SetTensional {
     public static SetInt make(Term... t) {
         t = Term.toSortedSetArray(t);
         if (t.length == 0) return null;
-        return new SetInt(t);
+        return intern(new SetInt(t));
     }
 
     /**
@@ -93,6 +93,11 @@ public class SetInt extends SetTensional {
     public CharSequence makeName() {
         return makeSetName(SET_INT_OPENER.ch, term, SET_INT_CLOSER.ch);
     }
+
+    @Override
+    protected void hashName(final NameHash h) {
+        hashSetName(h, SET_INT_OPENER.ch, term, SET_INT_CLOSER.ch);
+    }
     
 }
 
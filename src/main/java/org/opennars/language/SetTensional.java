@@ -77,6 +77,15 @@ abstract public class SetTensional extends CompoundTerm {
         
         return n.compact().toString();
     }
+
+    protected static void hashSetName(final NameHash h, final char opener, final Term[] arg, final char closer) {
+        h.append(opener);
+        for (int i = 0; i < arg.length; i++) {
+            if (i!=0) h.append(Symbols.ARGUMENT_SEPARATOR);
+            h.append(arg[i]);
+        }
+        h.append(closer);
+    }
     
 
     /**
@@ -189,6 +189,17 @@ public abstract class Statement extends CompoundTerm {
     protected CharSequence makeName() {
         return makeStatementName(getSubject(), operator(), getPredicate());
     }
+
+    @Override
+    protected void hashName(final NameHash h) {
+        hashStatementName(h, getSubject(), operator(), getPredicate());
+    }
+
+    final protected static void hashStatementName(final NameHash h, final Term subject, final NativeOperator relation, final Term predicate) {
+        h.append(STATEMENT_OPENER.ch).append(subject)
+         .append(' ').append(relation.toString()).append(' ')
+         .append(predicate).append(STATEMENT_CLOSER.ch);
+    }
     
     final protected static CharSequence makeStatementName(final Term subject, final NativeOperator relation, final Term predicate) {
         final CharSequence subjectName = subject.name();
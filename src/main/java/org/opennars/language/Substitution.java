@@ -0,0 +1,154 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.language;
+
+import org.opennars.storage.Memory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The two substitution maps of a unification, with a trail of the bindings
+ * so that a failed attempt of a partial match can be undone instead of
+ * being tried on copies of the maps.
+ * <p>
+ * A derivation context keeps one of them, which is cleared and reused for
+ * each unification of its premise.
+ *
+ * @author Patrick Hammer
+ */
+public class Substitution {
+    /** the maps of the first and second term, null until the first binding when not owned */
+    final Map<Term, Term>[] map;
+
+    /* the trail: the side, the key and the previous value of each binding */
+    private byte[] sides;
+    private Term[] keys;
+    private Term[] previous;
+    private int size = 0;
+
+    /** the random numbers for the order in which the components of commutative compounds are tried */
+    public Random random = Memory.randomNumber;
+
+    public Substitution() {
+        this(newMaps());
+        map[0] = new HashMap<>();
+        map[1] = new HashMap<>();
+    }
+
+    /**
+     * @param map The two maps to bind into, entries may be null to be instantiated as necessary
+     */
+    public Substitution(final Map<Term, Term>[] map) {
+        this.map = map;
+    }
+
+    /**
+     * @param side 0 for the variables of the first term, 1 for those of the second
+     * @return The map of the side, null if nothing was bound yet
+     */
+    public Map<Term, Term> get(final int side) {
+        return map[side];
+    }
+
+    /**
+     * @return An array for the two maps, with both entries null
+     */
+    @SuppressWarnings("unchecked")
+    static Map<Term, Term>[] newMaps() {
+        return (Map<Term, Term>[]) new Map<?, ?>[2];
+    }
+
+    /**
+     * Bind a variable, recording the previous value on the trail
+     *
+     * @param side 0 for the variables of the first term, 1 for those of the second
+     * @param key The variable
+     * @param value The term it is substituted with
+     */
+    public void bind(final int side, final Term key, final Term value) {
+        if (map[0] == null) {
+            map[0] = new HashMap<>();
+            map[1] = new HashMap<>();
+        }
+        final Term old = map[side].put(key, value);
+        if (keys == null) {
+            sides = new byte[8];
+            keys = new Term[8];
+            previous = new Term[8];
+        } else if (size == keys.length) {
+            final int grown = size * 2;
+            sides = Arrays.copyOf(sides, grown);
+            keys = Arrays.copyOf(keys, grown);
+            previous = Arrays.copyOf(previous, grown);
+        }
+        sides[size] = (byte) side;
+        keys[size] = key;
+        previous[size] = old;
+        size++;
+    }
+
+    /**
+     * @return The position of the trail, to undo the bindings made after it
+     */
+    public int mark() {
+        return size;
+    }
+
+    /**
+     * Undo the bindings made since the mark, in reverse order
+     *
+     * @param mark The position of the trail returned by mark()
+     */
+    public void undo(final int mark) {
+        while (size > mark) {
+            size--;
+            final Map<Term, Term> m = map[sides[size]];
+            if (previous[size] == null) {
+                m.remove(keys[size]);
+            } else {
+                m.put(keys[size], previous[size]);
+            }
+            keys[size] = null;
+            previous[size] = null;
+        }
+    }
+
+    /**
+     * Remove all bindings, keeping the maps and the trail for reuse
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(previous, 0, size, null);
+            size = 0;
+        }
+        if (map[0] != null) {
+            map[0].clear();
+            map[1].clear();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import org.opennars.storage.Memory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 //import org.opennars.util.sort.SortedList;
 
 /**
@@ -50,7 +51,7 @@ import java.util.*;
  */
 public class Term implements AbstractTerm, Serializable {
     public ImaginationSpace imagination;
-    private static final Map<CharSequence,Term> atoms = new HashMap();
+    private static final Map<CharSequence,Term> atoms = new ConcurrentHashMap<>();
 
     final public static Term SELF = SetExt.make(Term.get("SELF"));
     final public static Term SEQ_SPATIAL = Term.get("#");
@@ -90,6 +91,10 @@ public class Term implements AbstractTerm, Serializable {
     
     
     protected CharSequence name = null;
+
+    /* the first characters of the name as sort key, and the name it was made of */
+    private transient long sortKey;
+    private transient volatile CharSequence sortKeyName = null;
     
     /**
      * Default constructor that build an internal Term
@@ -291,9 +296,33 @@ public class Term implements AbstractTerm, Serializable {
         else if ((this instanceof Variable) && (that.getClass()!=Variable.class)) {
             return -1;
         }
+        if (that instanceof Term) {
+            final long a = sortKey();
+            final long b = ((Term) that).sortKey();
+            if (a != b) {
+                return Long.compareUnsigned(a, b);
+            }
+        }
         return Texts.compareTo(name(), that.name());            
     }
 
+    /**
+     * The first four characters of the name packed into a long, which orders
+     * like the names unless they are equal, cached until the name changes
+     */
+    private long sortKey() {
+        final CharSequence n = name();
+        if (n != sortKeyName) {
+            long key = 0;
+            for (int i = 0; i < 4; i++) {
+                key = (key << 16) | (i < n.length() ? n.charAt(i) : 0);
+            }
+            sortKey = key;
+            sortKeyName = n;
+        }
+        return sortKey;
+    }
+
     
     
     public int containedTemporalRelations() {
@@ -414,22 +443,38 @@ public class Term implements AbstractTerm, Serializable {
                 
         }
         
-        //TODO fast sorted array for arg.length == 3
-
-        //terms > 2:        
-        final NavigableSet<Term> s = new TreeSet();
-        //SortedList<Term> s = new SortedList(arg.length);
-        //s.setAllowDuplicate(false);
-
-        Collections.addAll(s, arg);
-        
-        return s.toArray(new Term[0]);
+        //terms > 2, sorted by insertion into a copy, dropping the terms equal to one before:
+        final Term[] s = Arrays.copyOf(arg, arg.length);
+        int n = 0;
+        for (int i = 0; i < s.length; i++) {
+            final Term x = s[i];
+            int lo = 0, hi = n;
+            boolean duplicate = false;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                final int c = x.compareTo(s[mid]);
+                if (c == 0) {
+                    duplicate = true;
+                    break;
+                }
+                if (c < 0) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            if (!duplicate) {
+                System.arraycopy(s, lo, s, lo + 1, n - lo);
+                s[lo] = x;
+                n++;
+            }
+        }
+        return n == s.length ? s : Arrays.copyOf(s, n);
     }
 
-    /** performs a thorough check of the validity of a term (by cloneDeep it) to see if it's valid */
+    /** performs a thorough check of the validity of a term, whether cloneDeep would return a term */
     public static boolean valid(final Term content) {
-        final Term cloned = content.cloneDeep();
-        return cloned != null;
+        return !(content instanceof CompoundTerm) || ((CompoundTerm) content).isValid();
     }
 
     public boolean subjectOrPredicateIsIndependentVar() {
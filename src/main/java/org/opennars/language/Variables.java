@@ -25,12 +25,8 @@ package org.opennars.language;
 
 import org.opennars.inference.TemporalRules;
 import org.opennars.io.Symbols;
-import org.opennars.storage.Memory;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Static utility class for static methods related to Variables
@@ -74,6 +70,26 @@ public class Variables {
         return findSubstitute(type, term1, term2, map, false);
     }
     public static boolean findSubstitute(final char type, final Term term1, final Term term2, final Map<Term, Term>[] map, final boolean allowPartial) {
+        return findSubstitute(type, term1, term2, new Substitution(map), allowPartial);
+    }
+
+    /**
+     * Find the substitution unifying two terms, binding into the frames of s.
+     * Like with the maps, the bindings of a failed unification are not undone,
+     * only those of the attempts of a partial or commutative match.
+     *
+     * @param type The type of variable that can be substituted
+     * @param term1 The first term
+     * @param term2 The second term
+     * @param s The substitution to bind into
+     * @param allowPartial Whether a forward conjunction can match a part of a longer one
+     * @return Whether the terms can be unified
+     */
+    public static boolean findSubstitute(final char type, final Term term1, final Term term2, final Substitution s, final boolean allowPartial) {
+        final boolean partialConjunctions = allowPartial && term1 instanceof Conjunction && term2 instanceof Conjunction;
+        if(!partialConjunctions && !term1.hasVar() && !term2.hasVar()) { //constant terms only match if they are equal
+            return term1.equals(term2);
+        }
 
         boolean term1HasVar = term1.hasVar(type);
         if(type == Symbols.VAR_INDEPENDENT) {
@@ -89,7 +105,7 @@ public class Variables {
         final boolean term1Var = term1 instanceof Variable;
         final boolean term2Var = term2 instanceof Variable;
         
-        if(allowPartial && term1 instanceof Conjunction && term2 instanceof Conjunction) {
+        if(partialConjunctions) {
             final Conjunction c1 = (Conjunction) term1;
             final Conjunction c2 = (Conjunction) term2;
             //more effective matching for NLP
@@ -99,39 +115,20 @@ public class Variables {
                 if(c1.size() < c2.size()) {
                     //find an offset that works
                     for(int k=0;k<(c2.term.length - c1.term.length);k++) {
-                        final Map<Term, Term>[] mapk = (Map<Term, Term>[]) new HashMap<?,?>[2];
-                        mapk[0] = new HashMap<>();
-                        mapk[1] = new HashMap<>();
-                        if(map[0] == null) {
-                            map[0] = new HashMap<>();
-                        }
-                        if(map[1] == null) {
-                            map[1] = new HashMap<>();
-                        }
-                        appendToMap(map[0], mapk[0]);
-                        appendToMap(map[1], mapk[1]);
+                        final int mark = s.mark();
                         boolean succeeded = true;
                         for(int j=k;j<k+size_smaller;j++) {
                             final int i = j-k;
-                            final Map<Term, Term>[] mapNew = (Map<Term, Term>[]) new HashMap<?,?>[2];
-                            mapNew[0] = new HashMap<>();
-                            mapNew[1] = new HashMap<>();
-                            appendToMap(map[0], mapNew[0]);
-                            appendToMap(map[1], mapNew[1]);
                             //attempt unification:
-                            if(findSubstitute(type,c1.term[i],c2.term[j],mapNew)) {
-                                appendToMap(mapNew[0], mapk[0]);
-                                appendToMap(mapNew[1], mapk[1]);
-                            } else { //another shift k is needed
+                            if(!findSubstitute(type,c1.term[i],c2.term[j],s,false)) { //another shift k is needed
                                 succeeded = false;
                                 break;
                             }
                         }
                         if(succeeded) {
-                            appendToMap(mapk[0], map[0]);
-                            appendToMap(mapk[1], map[1]);
                             return true;
                         }
+                        s.undo(mark);
                     }
                 }
             }
@@ -148,9 +145,8 @@ public class Variables {
             final Variable v2 = (Variable) term2;
             if(v1.getType() == v2.getType()) {
                 final Variable CommonVar = makeCommonVariable(term1, term2);
-                if (map[0] == null) {  map[0] = new HashMap(); map[1] = new HashMap(); }                
-                map[0].put(v1, CommonVar);
-                map[1].put(v2, CommonVar);
+                s.bind(0, v1, CommonVar);
+                s.bind(1, v2, CommonVar);
                 return true;
             }
         }
@@ -164,28 +160,26 @@ public class Variables {
             Term termB = term1VarUnifyAllowed ? term2 : term1;
             Variable termAAsVariable = (Variable)termA;
 
-            if (map[0] == null) {  map[0] = new HashMap(); map[1] = new HashMap(); }
-
             if (term1VarUnifyAllowed) {
 
                 if ((termB instanceof Variable) && allowUnification(((Variable) termB).getType(), type)) {
                     final Variable CommonVar = makeCommonVariable(termA, termB);
-                    map[0].put(termAAsVariable, CommonVar);
-                    map[1].put(termB, CommonVar);
+                    s.bind(0, termAAsVariable, CommonVar);
+                    s.bind(1, termB, CommonVar);
                 } else {
                     if(termB instanceof Variable && ((((Variable)termB).getType()==Symbols.VAR_QUERY && ((Variable)termA).getType()!=Symbols.VAR_QUERY) ||
                         (((Variable)termB).getType()!=Symbols.VAR_QUERY && ((Variable)termA).getType()==Symbols.VAR_QUERY))) {
                         return false;
                     }
-                    map[0].put(termAAsVariable, termB);
+                    s.bind(0, termAAsVariable, termB);
                     if (termAAsVariable.isCommon()) {
-                        map[1].put(termAAsVariable, termB);
+                        s.bind(1, termAAsVariable, termB);
                     }
                 }
             } else {
-                map[1].put(termAAsVariable, termB);
+                s.bind(1, termAAsVariable, termB);
                 if (termAAsVariable.isCommon()) {
-                    map[0].put(termAAsVariable, termB);
+                    s.bind(0, termAAsVariable, termB);
                 }
             }
 
@@ -202,6 +196,16 @@ public class Variables {
             final CompoundTerm cTerm1 = (CompoundTerm) term1;
             final CompoundTerm cTerm2 = (CompoundTerm) term2;
 
+            if (cTerm1.size() != cTerm2.size()) {
+                return false;
+            }
+            //a variable has complexity 0 and is substituted by a term of at least that,
+            //so a side without variables can't be less complex than the other side
+            if ((!cTerm2.hasVar() && cTerm1.getComplexity() > cTerm2.getComplexity()) ||
+                (!cTerm1.hasVar() && cTerm2.getComplexity() > cTerm1.getComplexity())) {
+                return false;
+            }
+
             //consider temporal order on term matching
             final boolean isSameOrder = term1.getTemporalOrder() == term2.getTemporalOrder();
             final boolean isSameSpatial = term1.getIsSpatial() == term2.getIsSpatial();
@@ -217,47 +221,32 @@ public class Variables {
                 return false;
             }
 
-            if (cTerm1.size() != cTerm2.size()) {
-                return false;
-            }
             if ((cTerm1 instanceof ImageExt) && (((ImageExt) cTerm1).relationIndex != ((ImageExt) cTerm2).relationIndex) || (cTerm1 instanceof ImageInt) && (((ImageInt) cTerm1).relationIndex != ((ImageInt) cTerm2).relationIndex)) {
                 return false;
             }
-            final Term[] list = cTerm1.cloneTerms();
             if (cTerm1.isCommutative()) {
-                CompoundTerm.shuffle(list, Memory.randomNumber);
+                final Term[] list = cTerm1.cloneTerms();
+                CompoundTerm.shuffle(list, s.random);
                 //ok attempt unification
-                if(cTerm2 == null || list == null || cTerm2.term == null || list.length != cTerm2.term.length) {
+                if(list.length != cTerm2.term.length) {
                     return false;
                 }
-                final Set<Integer> matchedJ = new HashSet<>(list.length * 2);
+                final boolean[] matchedJ = new boolean[list.length];
                 for(int i = 0; i < list.length; i++) {
                     boolean succeeded = false;
                     for(int j = 0; j < list.length; j++) {
-                        if(matchedJ.contains(j)) { //this one already was used to match one of the i's
+                        if(matchedJ[j]) { //this one already was used to match one of the i's
                             continue;
                         }
                         final Term ti = list[i].clone();
-                        //clone map also:
-                        final Map<Term, Term>[] mapNew = (Map<Term, Term>[]) new HashMap<?,?>[2];
-                        mapNew[0] = new HashMap<>();
-                        mapNew[1] = new HashMap<>();
-                        if(map[0] == null) {
-                            map[0] = new HashMap<>();
-                        }
-                        if(map[1] == null) {
-                            map[1] = new HashMap<>();
-                        }
-                        appendToMap(map[0], mapNew[0]);
-                        appendToMap(map[1], mapNew[1]);
-                        //attempt unification:
-                        if(findSubstitute(type,ti,cTerm2.term[i],mapNew)) {
-                            appendToMap(mapNew[0], map[0]);
-                            appendToMap(mapNew[1], map[1]);
+                        //attempt unification, undoing its bindings if it fails:
+                        final int mark = s.mark();
+                        if(findSubstitute(type,ti,cTerm2.term[i],s,false)) {
                             succeeded = true;
-                            matchedJ.add(j);
+                            matchedJ[j] = true;
                             break;
                         }
+                        s.undo(mark);
                     }
                     if(!succeeded) {
                         return false;
@@ -266,9 +255,7 @@ public class Variables {
                 return true;
             }
             for (int i = 0; i < cTerm1.size(); i++) {
-                final Term t1 = list[i];
-                final Term t2 = cTerm2.term[i];
-                if (!findSubstitute(type, t1, t2, map)) {
+                if (!findSubstitute(type, cTerm1.term[i], cTerm2.term[i], s, false)) {
                     return false;
                 }
             }
@@ -277,12 +264,6 @@ public class Variables {
         }
     }
 
-    private static void appendToMap(Map<Term, Term> source, Map<Term, Term> target) {
-        for(final Term c : source.keySet()) {
-            target.put(c, source.get(c));
-        }
-    }
-
 
     /**
      * Check whether a string represent a name of a term that contains a
@@ -323,6 +304,9 @@ public class Variables {
     public static boolean unify(final char type, final Term[] t) {
         return unify(type, t[0], t[1], t);
     }
+    public static boolean unify(final char type, final Term[] t, final Substitution s) {
+        return unify(type, t[0], t[1], t, false, s);
+    }
 
  
     /**
@@ -337,18 +321,37 @@ public class Variables {
     public static boolean unify(final char type, final Term t1, final Term t2, final Term[] compound) { 
         return unify(type, t1, t2, compound, false);
     }
+    public static boolean unify(final char type, final Term t1, final Term t2, final Term[] compound, final Substitution s) {
+        return unify(type, t1, t2, compound, false, s);
+    }
     public static boolean unify(final char type, final Term t1, final Term t2, final Term[] compound, final boolean allowPartial) {
-        final Map<Term, Term> map[] = new Map[2]; //begins empty: null,null
-        
-        final boolean hasSubs = findSubstitute(type, t1, t2, map, allowPartial);
+        return unify(type, t1, t2, compound, allowPartial, new Substitution(Substitution.newMaps())); //begins empty: null,null
+    }
+
+    /**
+     * To unify two terms, reusing the frames of a substitution
+     *
+     * @param type The type of variable that can be substituted
+     * @param t1 The compound containing the first term, possibly modified
+     * @param t2 The compound containing the second term, possibly modified
+     * @param compound The first and second term as an array, which will have been modified upon returning true
+     * @param allowPartial Whether a forward conjunction can match a part of a longer one
+     * @param s The substitution to use, which is cleared before
+     * @return Whether the unification is possible.  't' will refer to the unified terms
+     */
+    public static boolean unify(final char type, final Term t1, final Term t2, final Term[] compound, final boolean allowPartial, final Substitution s) {
+        s.clear();
+        final boolean hasSubs = findSubstitute(type, t1, t2, s, allowPartial);
         if (hasSubs) {
-            final Term a = (compound[0] instanceof Variable && map[0].containsKey(compound[0])) ? 
-                            map[0].get(compound[0]) : 
-                            applySubstituteAndRenameVariables(((CompoundTerm)compound[0]), map[0]);
+            final Map<Term, Term> map0 = s.get(0);
+            final Map<Term, Term> map1 = s.get(1);
+            final Term a = (compound[0] instanceof Variable && map0.containsKey(compound[0])) ? 
+                            map0.get(compound[0]) : 
+                            applySubstituteAndRenameVariables(((CompoundTerm)compound[0]), map0);
             if (a == null) return false;
-            final Term b = (compound[1] instanceof Variable && map[1].containsKey(compound[1])) ? 
-                            map[1].get(compound[1]) :
-                            applySubstituteAndRenameVariables(((CompoundTerm)compound[1]), map[1]);
+            final Term b = (compound[1] instanceof Variable && map1.containsKey(compound[1])) ? 
+                            map1.get(compound[1]) :
+                            applySubstituteAndRenameVariables(((CompoundTerm)compound[1]), map1);
             if (b == null) return false;
             //only set the values if it will return true, otherwise if it returns false the callee can expect its original values untouched
             if(compound[0] instanceof Variable && compound[0].hasVarQuery() && (a.hasVarIndep() || a.hasVarIndep()) ) {
@@ -423,7 +426,11 @@ public class Variables {
      * @return Whether there is a substitution
      */
     public static boolean hasSubstitute(final char type, final Term term1, final Term term2) {
-        return findSubstitute(type, term1, term2, new HashMap<>(), new HashMap<>());
+        return findSubstitute(type, term1, term2, new Substitution(Substitution.newMaps()), false);
+    }
+    public static boolean hasSubstitute(final char type, final Term term1, final Term term2, final Substitution s) {
+        s.clear();
+        return findSubstitute(type, term1, term2, s, false);
     }
     
 }
@@ -24,6 +24,7 @@
 package org.opennars.main;
 
 import org.apache.commons.lang3.StringUtils;
+import org.opennars.control.CycleScheduler;
 import org.opennars.entity.*;
 import org.opennars.interfaces.Timable;
 import org.opennars.interfaces.pub.Reasoner;
@@ -45,7 +46,7 @@ import org.opennars.language.Term;
 import org.opennars.operator.Operator;
 import org.opennars.plugin.Plugin;
 import org.opennars.plugin.perception.SensoryChannel;
-import org.opennars.storage.PriorityMap;
+import org.opennars.storage.Bag;
 import org.opennars.storage.Memory;
 import org.xml.sax.SAXException;
 
@@ -117,6 +118,7 @@ public class Nar extends SensoryChannel implements Reasoner, Serializable, Runna
         final ObjectInputStream stream = new ObjectInputStream(inStream);
         final Nar ret = (Nar) stream.readObject();
         ret.memory.event = new EventEmitter();
+        ret.memory.scheduler = new CycleScheduler();
         ret.plugins = new ArrayList<>();
         ret.sensoryChannels = new HashMap<>();
         List<Plugin> pluginsToAdd = ConfigReader.loadParamsFromFileAndReturnPlugins(ret.usedConfigFilePath, ret, ret.narParameters);
@@ -175,7 +177,8 @@ public class Nar extends SensoryChannel implements Reasoner, Serializable, Runna
     
     /** constructs the NAR and loads a config from the default filepath
      *
-     * @param narId inter NARS id of this NARS instance
+     * @param narId inter NARS id of this NARS instance, has to fit into an int
+     * @throws IllegalArgumentException if the id doesn't fit into 32 bits, ids of the whole long range were accepted before
      */
     public Nar(long narId) throws IOException, InstantiationException, InvocationTargetException, NoSuchMethodException, 
             ParserConfigurationException, IllegalAccessException, SAXException, ClassNotFoundException, ParseException {
@@ -185,14 +188,18 @@ public class Nar extends SensoryChannel implements Reasoner, Serializable, Runna
     public String usedConfigFilePath = "";
     /** constructs the NAR and loads a config from the filepath
      *
-     * @param narId inter NARS id of this NARS instance
+     * @param narId inter NARS id of this NARS instance, has to fit into an int as it is packed into the evidential bases
      * @param relativeConfigFilePath (relative) path of the XML encoded config file
+     * @throws IllegalArgumentException if the id doesn't fit into 32 bits, ids of the whole long range were accepted before
      */
     public Nar(long narId, String relativeConfigFilePath) throws IOException, InstantiationException, InvocationTargetException, 
             NoSuchMethodException, ParserConfigurationException, SAXException, IllegalAccessException, ParseException, ClassNotFoundException {
+        if(narId != (int) narId) {
+            throw new IllegalArgumentException("The NAR id " + narId + " doesn't fit into 32 bits");
+        }
         List<Plugin> pluginsToAdd = ConfigReader.loadParamsFromFileAndReturnPlugins(relativeConfigFilePath, this, this.narParameters);
         final Memory m = new Memory(this.narParameters,
-                new PriorityMap<Term,Concept>(narParameters.CONCEPT_BAG_SIZE));
+                Bag.<Term,Concept>make(narParameters.CONCEPT_BAG_TYPE, narParameters.CONCEPT_BAG_LEVELS, narParameters.CONCEPT_BAG_SIZE));
         this.memory = m;
         this.memory.narId = narId;
         this.usedConfigFilePath = relativeConfigFilePath;
@@ -202,12 +209,16 @@ public class Nar extends SensoryChannel implements Reasoner, Serializable, Runna
     }
     
     /** constructs the NAR and loads a config from the filepath
+     *
+     * Assigns a random 32 bit id to the instance, as the id is packed with the input id into one long
+     * for each evidential base entry. Of 100 NARs exchanging evidence, two have the same id with a
+     * probability of about 1 in a million, NARs which have to be told apart for sure need to be given ids.
      *
      * @param relativeConfigFilePath (relative) path of the XML encoded config file
      */
     public Nar(String relativeConfigFilePath) throws IOException, InstantiationException, InvocationTargetException, 
             NoSuchMethodException, ParserConfigurationException, SAXException, IllegalAccessException, ParseException, ClassNotFoundException {
-        this(java.util.UUID.randomUUID().getLeastSignificantBits(), relativeConfigFilePath);
+        this((int) java.util.UUID.randomUUID().getLeastSignificantBits(), relativeConfigFilePath);
     }
     
     /** constructs the NAR and loads a config from the default filepath
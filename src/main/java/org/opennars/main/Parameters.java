@@ -43,6 +43,12 @@ public class Parameters implements Serializable {
     //not changeable at runtime as bags would have to be re-constructed
     public int CONCEPT_BAG_SIZE = 10000;
     public int CONCEPT_BAG_LEVELS = 1000;
+    /** Storage engine of the ConceptBag, "PriorityMap" (always selects the highest priority item)
+     *  or "LevelBag" (selects items probabilistically according to their priority level) */
+    public String CONCEPT_BAG_TYPE = "PriorityMap";
+    /** Directory of the file keeping the concepts displaced from the ConceptBag, which are reactivated
+     *  from there when their term is conceptualized again, empty to forget them */
+    public String CONCEPT_STORE_DIRECTORY = "";
     
     /** 
        Cycles per duration.
@@ -118,13 +124,24 @@ public class Parameters implements Serializable {
     /** Size of TaskLinkBag */
     public int TASK_LINK_BAG_SIZE = 100;  //was 200 in new experiment
     public int TASK_LINK_BAG_LEVELS = 10;
+    /** Storage engine of the cycling tasks, see CONCEPT_BAG_TYPE */
+    public String TASK_LINK_BAG_TYPE = "PriorityMap";
     /** Size of TermLinkBag */
     public int TERM_LINK_BAG_SIZE = 200;  //was 1000 in new experiment
     public int TERM_LINK_BAG_LEVELS = 10;
+    /** Storage engine of the premise queue, see CONCEPT_BAG_TYPE */
+    public String TERM_LINK_BAG_TYPE = "PriorityMap";
     /** Maximum TermLinks checked for novelty for each TaskLink in TermLinkBag */
     public volatile int TERM_LINK_MAX_MATCHED = 10;
     public volatile int TASKS_MAX_FIRED = 10;
     public volatile int PREMISES_MAX_FIRED = 100;
+    /** Whether a premise which is added while an equal one is waiting in the premise queue is merged into it,
+     *  so that it is derived once with the merged budget instead of once for each time it was added.
+     *  Off by default, as some inference relies on the repeated derivations, like answering the query of VariableTest */
+    public volatile boolean PREMISE_MERGING = false;
+    /** Milliseconds of wall-clock time a cycle may take, the amount of fired tasks and premises is then
+     *  adapted to their measured cost, with TASKS_MAX_FIRED and PREMISES_MAX_FIRED as upper bounds. 0 for fixed amounts */
+    public volatile float CYCLE_TIME_BUDGET = 0.0f;
     /** Size of Novel Task Buffer */
     public int NOVEL_TASK_BAG_SIZE = 100;
     public int NOVEL_TASK_BAG_LEVELS = 10;
@@ -266,6 +283,10 @@ public class Parameters implements Serializable {
     /** TaskLink decay rate in TaskLinkBag, in [1, 99]. originally: TASK_LINK_FORGETTING_CYCLE */
     public volatile float TASKLINK_FORGET_DURATIONS = 4.0f;
 
+    /** Whether the concepts and cycling tasks decay with time, computed only when they are taken out,
+     *  instead of being forgotten each time they are used. Not changeable at runtime. */
+    public boolean LAZY_FORGETTING = false;
+
     /** Sequence bag forget durations */
     public volatile float EVENT_FORGET_DURATIONS = 4.0f;
     
@@ -275,9 +296,13 @@ public class Parameters implements Serializable {
     /** Maximum anticipations about its content stored in a concept */
     public volatile int ANTICIPATIONS_PER_CONCEPT_MAX = 8;
     
-    /** Default threads amount at startup */
+    /** Default threads amount at startup, the concepts and the rest of the memory are not thread-safe, so more than 1 is experimental */
     public volatile int THREADS_AMOUNT = 1;
     
+    /** Amount of workers executing the premises of a cycle in parallel, their derived tasks are added
+     *  in the order of the premises once all are executed. Not changeable at runtime. */
+    public int PREMISE_WORKERS = 1;
+    
     /** Default volume at startup */
     public volatile int VOLUME = 0;
     
@@ -84,6 +84,19 @@ public class Operation extends Inheritance {
         return makeStatementName(getSubject(), Symbols.NativeOperator.INHERITANCE, getPredicate());
     }
 
+    @Override
+    protected void hashName(final NameHash h) {
+        if(getSubject() instanceof Product && getPredicate() instanceof Operator) {
+            h.append(COMPOUND_TERM_OPENER.ch).append(getPredicate().name());
+            for (final Term t : ((Product)getSubject()).term) {
+                h.append(Symbols.ARGUMENT_SEPARATOR).append(t);
+            }
+            h.append(COMPOUND_TERM_CLOSER.ch);
+            return;
+        }
+        hashStatementName(h, getSubject(), Symbols.NativeOperator.INHERITANCE, getPredicate());
+    }
+
     
     public static CharSequence makeName(final CharSequence op, final Term[] arg) {
         final StringBuilder nameBuilder = new StringBuilder(16) //estimate
@@ -46,9 +46,15 @@ public class Remind extends Operator {
     }
     
     public void activate(final Memory memory, final Concept c, final BudgetValue b, final Activating mode) {
-        memory.concepts.take(c.name());
-        BudgetFunctions.activate(c.budget, b);
-        memory.concepts.putBack(c, memory.cycles(memory.narParameters.CONCEPT_FORGET_DURATIONS), memory);
+        synchronized(memory.concepts.lockFor(c.name())) {
+            //the concept may have been displaced in the meantime, then it isn't the concept of the term anymore
+            final Concept active = memory.concepts.take(c.name());
+            if(active == null) {
+                return;
+            }
+            BudgetFunctions.activate(active.budget, b);
+            memory.putBack(active);
+        }
     }
 
     /**
@@ -62,6 +68,9 @@ public class Remind extends Operator {
     protected List<Task> execute(final Operation operation, final Term[] args, final Memory memory, final Timable time) {
         final Term term = args[1];
         final Concept concept = memory.conceptualize(Consider.budgetMentalConcept(operation), term);
+        if(concept == null) {
+            return null;
+        }
         final BudgetValue budget = new BudgetValue(memory.narParameters.DEFAULT_QUESTION_PRIORITY, memory.narParameters.DEFAULT_QUESTION_DURABILITY, 1, memory.narParameters);
         activate(memory, concept, budget, Activating.TaskLink);
         return null;
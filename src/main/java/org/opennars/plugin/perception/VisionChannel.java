@@ -142,11 +142,13 @@ public class VisionChannel extends SensoryChannel  {
         cnt_updated = 0;
         HadNewInput = false;
         termid++;
+        //not made by SetExt.make: the sensation is attached to this frame's own instance,
+        //which is then kept out of the shared compounds
         final Term V;
         if(isEternal) {
-            V = SetExt.make(new Term(subj));
+            V = new SetExt(new Term(subj));
         } else {
-            V = SetExt.make(new Term(subj+termid));   
+            V = new SetExt(new Term(subj+termid));   
         }
         //the visual space has to be a copy.
         final float[][] cpy = new float[height][width];
@@ -24,8 +24,8 @@
 package org.opennars.plugin.perception;
 
 import org.opennars.entity.TruthValue;
+import org.opennars.inference.PackedTruth;
 import org.opennars.inference.TemporalRules;
-import org.opennars.inference.TruthFunctions;
 import org.opennars.language.Conjunction;
 import org.opennars.language.Term;
 import org.opennars.main.Nar;
@@ -81,10 +81,11 @@ public class VisualSpace implements ImaginationSpace {
         VisualSpace other = (VisualSpace) obj;
         double kh = ((float) other.height) / ((double) this.height);
         double kw = ((float) other.width)  / ((double) this.width);
-        TruthValue bestShiftTruth = new TruthValue(0.5f, 0.01f, nar.narParameters);
+        //packed truth values, so that the comparison of the pixels allocates nothing
+        long bestShiftTruth = PackedTruth.truth(0.5f, 0.01f, nar.narParameters);
         for(int oj=-this.height; oj<this.height; oj++) {
             for(int oi=-this.width; oi<this.width; oi++) {
-                TruthValue sim = new TruthValue(0.5f, 0.01f, nar.narParameters);
+                long sim = PackedTruth.truth(0.5f, 0.01f, nar.narParameters);
                 for(int i=0; i<this.height; i++) {
                     for(int j=0; j<this.width; j++) {
                         int transi = i+oi;
@@ -94,18 +95,18 @@ public class VisualSpace implements ImaginationSpace {
                         }
                         int i2 = (int) (((double) i) * kh);
                         int j2 = (int) (((double) j)  * kw);
-                        TruthValue t1 = new TruthValue(cropped[transi][transj], nar.narParameters.DEFAULT_JUDGMENT_CONFIDENCE, nar.narParameters);
-                        TruthValue t2 = new TruthValue(other.cropped[i2][j2], nar.narParameters.DEFAULT_JUDGMENT_CONFIDENCE, nar.narParameters);
-                        TruthValue t3 = comparison ? TruthFunctions.comparison(t1,t2, nar.narParameters) : TruthFunctions.abduction(t1,t2, nar.narParameters);
-                        sim = TruthFunctions.revision(sim, t3, nar.narParameters);                
+                        long t1 = PackedTruth.truth(cropped[transi][transj], nar.narParameters.DEFAULT_JUDGMENT_CONFIDENCE, nar.narParameters);
+                        long t2 = PackedTruth.truth(other.cropped[i2][j2], nar.narParameters.DEFAULT_JUDGMENT_CONFIDENCE, nar.narParameters);
+                        long t3 = comparison ? PackedTruth.comparison(t1,t2, nar.narParameters) : PackedTruth.abduction(t1,t2, nar.narParameters);
+                        sim = PackedTruth.revision(sim, t3, nar.narParameters);                
                     }
                 }
-                if(sim.getExpectation() > bestShiftTruth.getExpectation()) {
+                if(PackedTruth.expectation(sim) > PackedTruth.expectation(bestShiftTruth)) {
                     bestShiftTruth = sim;
                 }
             }
         }
-        return bestShiftTruth;
+        return PackedTruth.unpack(bestShiftTruth, nar.narParameters);
     }
 
     @Override
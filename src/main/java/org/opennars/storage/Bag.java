@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.storage;
+
+import org.opennars.entity.Item;
+import org.opennars.inference.BudgetFunctions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A bag of items with access by key and selection by priority.
+ * <p>
+ * The storage engine decides which item is selected next:
+ * PriorityMap always hands out the highest priority item,
+ * LevelBag selects items probabilistically according to their priority.
+ * <p>
+ * Items taken out with takeNext stay accessible by key until they are taken by key
+ * or displaced, so that a selected item can be put back.
+ * <p>
+ * With lazy forgetting, the priority of an item decays with the time passed since it
+ * was last forgotten, and the decay is only computed when the item is taken out of the
+ * bag, instead of re-ordering the bag every time an item is used.
+ * Before an item is displaced the decay is applied to all the items, at most once per cycle,
+ * so that the same item is displaced as with forgetting on use.
+ * <p>
+ * Bags are not thread-safe, operations on a key which have to be atomic synchronize on lockFor(key).
+ *
+ * @author Patrick Hammer
+ */
+public abstract class Bag<K,V extends Item<K>> implements Serializable, Iterable<V> {
+    private static final long serialVersionUID = 1L;
+
+    public static final String PRIORITY_MAP = "PriorityMap";
+    public static final String LEVEL_BAG = "LevelBag";
+
+    /* the memory providing the time for lazy forgetting, null if forgetting is applied on use */
+    protected Memory lazyMemory = null;
+    protected float lazyForgetCycles;
+    /* the time the decay was last applied to all the items */
+    protected long decayedTime = -1;
+
+    /**
+     * Creates a bag with the storage engine given by the config
+     *
+     * @param type The storage engine, PRIORITY_MAP or LEVEL_BAG
+     * @param levels The amount of levels, only used by LEVEL_BAG
+     * @param maxSize The capacity of the bag
+     * @return The new bag
+     */
+    public static <K,V extends Item<K>> Bag<K,V> make(final String type, final int levels, final int maxSize) {
+        if(PRIORITY_MAP.equals(type)) {
+            return new PriorityMap<>(maxSize);
+        }
+        if(LEVEL_BAG.equals(type)) {
+            return new LevelBag<>(levels, maxSize);
+        }
+        throw new IllegalArgumentException("Unknown bag type: " + type);
+    }
+
+    /**
+     * @param length The length of the array
+     * @return An array for the items of a bag, which can hold any item, as V is erased to Item
+     */
+    @SuppressWarnings("unchecked")
+    static <K,V extends Item<K>> V[] itemArray(final int length) {
+        return (V[]) new Item<?>[length];
+    }
+
+    /**
+     * Put an item into the bag, displacing the lowest priority item if the bag is full.
+     * An item which is already in the bag is re-prioritized, it never gets a second entry.
+     *
+     * @param item The item to put in
+     * @return The displaced item, or null, the item itself if the bag can't hold any items
+     */
+    public abstract V putIn(V item);
+
+    /**
+     * @param key The key of the item
+     * @return The item with the key, or null
+     */
+    public abstract V get(K key);
+
+    /**
+     * Take an item out of the bag by key
+     *
+     * @param key The key of the item
+     * @return The taken item, or null
+     */
+    public abstract V take(K key);
+
+    /**
+     * Take the next item to be processed out of the bag
+     *
+     * @return The selected item, or null if the bag is empty
+     */
+    public abstract V takeNext();
+
+    /**
+     * The next items takeNext would hand out, left in the bag
+     *
+     * @param k The amount of items
+     * @param out The collection the items are added to
+     */
+    public void topK(final int k, final Collection<V> out) {
+        final List<V> selected = new ArrayList<>(k);
+        for(int i=0; i<k; i++) {
+            final V item = takeNext();
+            if(item == null) {
+                break;
+            }
+            selected.add(item);
+        }
+        for(final V item : selected) {
+            putIn(item);
+        }
+        out.addAll(selected);
+    }
+
+    /**
+     * Restores the order after the priority of an item in the bag was changed.
+     * Has to follow every change of the budget of an item while it is in the bag,
+     * as the bag orders the items by the budgets they had when they were put in or updated.
+     *
+     * @param item The item whose priority changed
+     */
+    public abstract void update(V item);
+
+    /**
+     * @param key The key of an item
+     * @return The object to synchronize on to make several operations on the key atomic
+     */
+    public Object lockFor(final K key) {
+        return this;
+    }
+
+    public abstract int size();
+
+    public abstract void clear();
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Apply forgetting to an item and put it back into the bag
+     *
+     * @param oldItem The item to put back
+     * @param forgetCycles The forget rate
+     * @param m The memory
+     * @return The displaced item, or null
+     */
+    public V putBack(final V oldItem, final float forgetCycles, final Memory m) {
+        if(lazyMemory != null) {
+            forgetLazily(oldItem);
+            return putIn(oldItem);
+        }
+        final float relativeThreshold = m.narParameters.QUALITY_RESCALED;
+        BudgetFunctions.applyForgetting(oldItem.budget, forgetCycles, relativeThreshold);
+        return putIn(oldItem);
+    }
+
+    /**
+     * Apply forgetting to an item which stays in the bag, the same as take followed by putBack.
+     * With lazy forgetting nothing needs to be done, as the item decays with time anyway.
+     *
+     * @param key The key of the item
+     * @param forgetCycles The forget rate
+     * @param m The memory
+     */
+    public void forget(final K key, final float forgetCycles, final Memory m) {
+        if(lazyMemory != null) {
+            return;
+        }
+        final V item = take(key);
+        if(item != null) {
+            putBack(item, forgetCycles, m);
+        }
+    }
+
+    /**
+     * Apply forgetting to items which stay in the bag, and restore the order of the bag,
+     * the same as taking them out and putting them back one by one.
+     * With lazy forgetting, their decay since the last forgetting is applied.
+     *
+     * @param items The items to forget
+     * @param forgetCycles The forget rate
+     * @param m The memory
+     */
+    public void forgetAll(final Collection<V> items, final float forgetCycles, final Memory m) {
+        final float relativeThreshold = m.narParameters.QUALITY_RESCALED;
+        for(final V item : items) {
+            if(lazyMemory != null) {
+                forgetLazily(item);
+            } else {
+                BudgetFunctions.applyForgetting(item.budget, forgetCycles, relativeThreshold);
+            }
+            update(item);
+        }
+    }
+
+    /**
+     * Let the priority of the items decay with the time passed since they were last forgotten,
+     * instead of decaying them each time they are used
+     *
+     * @param forgetCycles The time it takes for the priority above the quality to decay by the durability
+     * @param m The memory whose time is used
+     */
+    public void setLazyForgetting(final float forgetCycles, final Memory m) {
+        this.lazyForgetCycles = forgetCycles;
+        this.lazyMemory = m;
+    }
+
+    /**
+     * Applies the decay since the last forgetting of the item, if forgetting is lazy
+     *
+     * @param item The item to forget
+     * @return Whether the priority of the item changed
+     */
+    protected boolean forgetLazily(final V item) {
+        if(lazyMemory == null) {
+            return false;
+        }
+        final float priority = item.getPriority();
+        final float relativeThreshold = lazyMemory.narParameters.QUALITY_RESCALED;
+        return BudgetFunctions.forgetPeriodic(item.budget, lazyForgetCycles, relativeThreshold, lazyMemory.time()) != priority;
+    }
+
+    /**
+     * Applies the decay since their last forgetting to all the items, if forgetting is lazy,
+     * so that the lowest item can be displaced.
+     * As the decay only depends on the time, this is done at most once per cycle.
+     */
+    protected void forgetAllLazily() {
+        if(lazyMemory == null || lazyMemory.time() == decayedTime) {
+            return;
+        }
+        decayedTime = lazyMemory.time();
+        final List<V> decayed = new ArrayList<>();
+        for(final V item : this) {
+            if(forgetLazily(item)) {
+                decayed.add(item);
+            }
+        }
+        for(final V item : decayed) {
+            update(item);
+        }
+    }
+
+    @Override
+    public abstract Iterator<V> iterator();
+}
@@ -0,0 +1,309 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.storage;
+
+import org.opennars.entity.Sentence;
+import org.opennars.entity.Task;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+import static org.opennars.inference.BudgetFunctions.rankBelief;
+
+/**
+ * Table of the beliefs of a concept, ordered by rank with the best one first.
+ * <p>
+ * The ranks of the entries are cached for both rankings, by confidence and by
+ * truth expectation, as a table can receive beliefs ranked either way.
+ * The table counts for each ranking the neighbours which are out of order,
+ * as long as there are none the insertion point is found by binary search,
+ * else by scanning the cached ranks.
+ * Only the entries which rank equal to the new belief are checked for duplicates.
+ * <p>
+ * The events of the table are indexed by their occurrence time in addition,
+ * so that the ones close to a time can be found by binary search.
+ * <p>
+ * The cached ranks have to be refreshed with rerank() when truth values of
+ * the entries are changed in place.
+ *
+ * @author Patrick Hammer
+ */
+public class BeliefTable extends AbstractList<Task<?>> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CONFIDENCE = 0;
+    private static final int EXPECTATION = 1;
+
+    private Task<?>[] tasks = new Task<?>[4];
+    /* the cached ranks of the entries, by confidence and by truth expectation */
+    private final float[][] ranks = { new float[4], new float[4] };
+    /* amount of neighbours in wrong order, for each ranking */
+    private final int[] disorders = new int[2];
+    private int size = 0;
+
+    /* the events of the table in the order of their occurrence times */
+    private Task<?>[] events = new Task<?>[4];
+    private long[] occurrences = new long[4];
+    private int eventCount = 0;
+    /* no event of the table has a higher confidence */
+    private float maxEventConfidence = 0.0f;
+
+    /**
+     * Add a new belief into the table and remove the lowest ranked one if the capacity is exceeded
+     *
+     * @param newTask The belief to add
+     * @param capacity The capacity of the table
+     * @param rankTruthExpectation Whether to rank by truth expectation instead of confidence
+     * @return The removed belief, or null
+     */
+    public Task<?> add(final Task<?> newTask, final int capacity, final boolean rankTruthExpectation) {
+        final Sentence<?> newSentence = newTask.sentence;
+        final int ranking = rankTruthExpectation ? EXPECTATION : CONFIDENCE;
+        final float rank1 = rankBelief(newSentence, rankTruthExpectation);
+        final int i = insertionPoint(ranking, rank1);
+        final boolean inserted = i < size;
+        if (inserted) {
+            for (int k = i; k < size && (k == i || ranks[ranking][k] == rank1); k++) {
+                final Sentence<?> judgment2 = tasks[k].sentence;
+                if (newSentence.truth.equals(judgment2.truth) && newSentence.stamp.equals(judgment2.stamp,false,true,true)) {
+                    return null;
+                }
+            }
+            insert(i, newTask);
+        }
+        
+        if (size == capacity) {
+            // nothing
+        }
+        else if (size > capacity) {
+            return removeLast();
+        }
+        else if (!inserted) {
+            insert(size, newTask);
+        }
+        return null;
+    }
+
+    /**
+     * Add a belief after the ones in the table, to restore a table in the order it had
+     *
+     * @param task The belief to add
+     */
+    void append(final Task<?> task) {
+        insert(size, task);
+    }
+
+    /** the index of the first entry which doesn't rank higher than rank, or size if there is none */
+    private int insertionPoint(final int ranking, final float rank) {
+        final float[] r = ranks[ranking];
+        if (disorders[ranking] == 0) {
+            int low = 0, high = size;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (r[mid] > rank) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        for (int i = 0; i < size; i++) {
+            if (rank >= r[i]) {
+                return i;
+            }
+        }
+        return size;
+    }
+
+    private void insert(final int i, final Task<?> task) {
+        if (size == tasks.length) {
+            final int capacity = size * 2;
+            tasks = Arrays.copyOf(tasks, capacity);
+            ranks[CONFIDENCE] = Arrays.copyOf(ranks[CONFIDENCE], capacity);
+            ranks[EXPECTATION] = Arrays.copyOf(ranks[EXPECTATION], capacity);
+        }
+        if (i > 0 && i < size) {
+            countDisorder(i - 1, i, -1);
+        }
+        System.arraycopy(tasks, i, tasks, i + 1, size - i);
+        System.arraycopy(ranks[CONFIDENCE], i, ranks[CONFIDENCE], i + 1, size - i);
+        System.arraycopy(ranks[EXPECTATION], i, ranks[EXPECTATION], i + 1, size - i);
+        tasks[i] = task;
+        ranks[CONFIDENCE][i] = rankBelief(task.sentence, false);
+        ranks[EXPECTATION][i] = rankBelief(task.sentence, true);
+        size++;
+        if (i > 0) {
+            countDisorder(i - 1, i, 1);
+        }
+        if (i < size - 1) {
+            countDisorder(i, i + 1, 1);
+        }
+        if (!task.sentence.isEternal()) {
+            addEvent(task);
+        }
+        modCount++;
+    }
+
+    private Task<?> removeLast() {
+        final Task<?> removed = tasks[size - 1];
+        if (size > 1) {
+            countDisorder(size - 2, size - 1, -1);
+        }
+        tasks[--size] = null;
+        if (!removed.sentence.isEternal()) {
+            removeEvent(removed);
+        }
+        modCount++;
+        return removed;
+    }
+
+    private void addEvent(final Task<?> event) {
+        if (eventCount == events.length) {
+            events = Arrays.copyOf(events, eventCount * 2);
+            occurrences = Arrays.copyOf(occurrences, eventCount * 2);
+        }
+        final long occurrence = event.sentence.getOccurenceTime();
+        final int i = eventIndex(occurrence + 1);
+        System.arraycopy(events, i, events, i + 1, eventCount - i);
+        System.arraycopy(occurrences, i, occurrences, i + 1, eventCount - i);
+        events[i] = event;
+        occurrences[i] = occurrence;
+        eventCount++;
+        maxEventConfidence = Math.max(maxEventConfidence, event.sentence.truth.getConfidence());
+    }
+
+    private void removeEvent(final Task<?> task) {
+        final long occurrence = task.sentence.getOccurenceTime();
+        int i = eventIndex(occurrence);
+        while (i < eventCount && occurrences[i] == occurrence && events[i] != task) {
+            i++;
+        }
+        if (i == eventCount || events[i] != task) { //the occurrence time was changed meanwhile
+            for (i = 0; i < eventCount && events[i] != task; i++) {
+            }
+            if (i == eventCount) {
+                return;
+            }
+        }
+        System.arraycopy(events, i + 1, events, i, eventCount - i - 1);
+        System.arraycopy(occurrences, i + 1, occurrences, i, eventCount - i - 1);
+        events[--eventCount] = null;
+    }
+
+    /**
+     * @param time The occurrence time
+     * @return The index of the first event which occurs at or after time, or eventCount if there is none
+     */
+    public int eventIndex(final long time) {
+        int low = 0, high = eventCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (occurrences[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param i The index in the order of occurrence
+     * @return The event
+     */
+    public Task<?> eventAt(final int i) {
+        return events[i];
+    }
+
+    /**
+     * @param i The index in the order of occurrence
+     * @return The occurrence time of the event when it was added
+     */
+    public long occurrenceAt(final int i) {
+        return occurrences[i];
+    }
+
+    public int eventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return An upper bound of the confidence of the events
+     */
+    public float maxEventConfidence() {
+        return maxEventConfidence;
+    }
+
+    private void countDisorder(final int i, final int j, final int delta) {
+        for (int ranking = CONFIDENCE; ranking <= EXPECTATION; ranking++) {
+            if (ranks[ranking][i] < ranks[ranking][j]) {
+                disorders[ranking] += delta;
+            }
+        }
+    }
+
+    /**
+     * Refresh the cached ranks after the truth values of the entries were changed in place
+     */
+    public void rerank() {
+        disorders[CONFIDENCE] = disorders[EXPECTATION] = 0;
+        maxEventConfidence = 0.0f;
+        for (int i = 0; i < eventCount; i++) {
+            maxEventConfidence = Math.max(maxEventConfidence, events[i].sentence.truth.getConfidence());
+        }
+        for (int i = 0; i < size; i++) {
+            ranks[CONFIDENCE][i] = rankBelief(tasks[i].sentence, false);
+            ranks[EXPECTATION][i] = rankBelief(tasks[i].sentence, true);
+            if (i > 0) {
+                countDisorder(i - 1, i, 1);
+            }
+        }
+    }
+
+    @Override
+    public Task<?> get(final int i) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+        return tasks[i];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(tasks, 0, size, null);
+        Arrays.fill(events, 0, eventCount, null);
+        disorders[CONFIDENCE] = disorders[EXPECTATION] = 0;
+        size = 0;
+        eventCount = 0;
+        maxEventConfidence = 0.0f;
+        modCount++;
+    }
+}
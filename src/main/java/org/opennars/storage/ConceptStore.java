@@ -0,0 +1,554 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.storage;
+
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Concept;
+import org.opennars.entity.Sentence;
+import org.opennars.entity.Stamp;
+import org.opennars.entity.Task;
+import org.opennars.inference.PackedTruth;
+import org.opennars.io.TermCodec;
+import org.opennars.language.Term;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Second tier of the concept memory, keeping the concepts displaced from the
+ * concept bag in a memory-mapped file, so that they can be reactivated with
+ * their beliefs when their term is conceptualized again.
+ * <p>
+ * The concepts are written into an append-only log of mapped segments, with an index
+ * from a 64 bit hash of the term to the location of its record in the segments.
+ * Terms with the same hash get entries of their own, told apart by the term the record starts with.
+ * A record starts with its length, followed by the term and the terms of the tasks
+ * encoded by a TermCodec with a dictionary of its own, the budgets as floats, the truth
+ * values packed into longs, and the stamps with the packed entries of their bases.
+ * The memory, the parameters and the registered operators are not written but taken
+ * from the memory when a concept is read back, and the concept gets the term it is
+ * looked up with, so that it shares the term with the memory.
+ * Each record is a copy of the concept with the tasks it references, so a concept
+ * read back holds copies of its tasks, not the objects other concepts point to.
+ * Once most of the log consists of reactivated concepts the live records are copied
+ * into the other one of two files, which are created once and reused from their start.
+ * The files only live as long as the process, the memory writes the records into its
+ * serialized form and reads them into a new store when it is loaded.
+ *
+ * @author Patrick Hammer
+ */
+public class ConceptStore {
+    private static final int SEGMENT_SIZE = 1 << 24;
+    /* the length of a record is written before it */
+    private static final int HEADER = 4;
+
+    /* flags of a task */
+    private static final int INPUT = 1;
+    private static final int SEQUENCE_BUFFER = 2;
+    private static final int PARENT_BELIEF = 4;
+    /* flags of a sentence */
+    private static final int TRUTH = 1;
+    private static final int REVISIBLE = 2;
+    private static final int TEMPORAL_INDUCTION = 4;
+    /* how the event of a concept is written */
+    private static final int NO_EVENT = 0;
+    private static final int BELIEF_EVENT = 1;
+    private static final int OWN_EVENT = 2;
+
+    private final Memory memory;
+    private final File directory;
+
+    /* the two files of the log, the live records are copied from the current one into the other when compacting */
+    private final RandomAccessFile[] files = new RandomAccessFile[2];
+    private final File[] paths = new File[2];
+    private int current = 0;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private long fileSize = 0;
+
+    private final Index index = new Index();
+    private long liveBytes = 0;
+    private long writtenBytes = 0;
+
+    /* the record which is written */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    /**
+     * @param memory The memory the concepts belong to
+     * @param directory The directory of the store file
+     * @throws IOException if the store file can't be created
+     */
+    public ConceptStore(final Memory memory, final String directory) throws IOException {
+        this.memory = memory;
+        this.directory = new File(directory);
+        for(int i=0; i<files.length; i++) {
+            paths[i] = File.createTempFile("concepts", ".store", this.directory);
+            paths[i].deleteOnExit();
+            files[i] = new RandomAccessFile(paths[i], "rw");
+        }
+    }
+
+    /* starts the log again at the start of the current file, which keeps its size */
+    private void restart() {
+        segments.clear();
+        fileSize = 0;
+        writtenBytes = 0;
+    }
+
+    /**
+     * @param term The term of a concept
+     * @return The key of the term in the index, a 64 bit FNV-1a hash of its name, never 0
+     */
+    protected long key(final Term term) {
+        final CharSequence name = term.name();
+        long h = 0xcbf29ce484222325L;
+        for(int i=0; i<name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Spill a concept into the store
+     *
+     * @param concept The displaced concept
+     */
+    public synchronized void put(final Concept concept) {
+        try {
+            bytes.reset();
+            writeConcept(new DataOutputStream(bytes), concept);
+            final long key = key(concept.getTerm());
+            final int old = find(key, concept.getTerm());
+            if(old != -1) {
+                remove(old);
+            }
+            write(key, ByteBuffer.wrap(bytes.toByteArray()));
+            if(writtenBytes > SEGMENT_SIZE && writtenBytes > 2 * liveBytes) {
+                compact();
+            }
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Concept store failed to write " + concept.getTerm(), ex);
+        }
+    }
+
+    /**
+     * Take a concept out of the store
+     *
+     * @param term The term of the concept, which the concept gets
+     * @return The concept, or null if it isn't in the store
+     */
+    public synchronized Concept take(final Term term) {
+        final long key = key(term);
+        try {
+            for(int i = index.next(key, -1); i != -1; i = index.next(key, i)) {
+                final DataInputStream in = record(index.locations[i]);
+                final TermCodec.Decoder terms = new TermCodec.Decoder(in, memory);
+                //a different term with the same hash isn't the concept, the next entry of the key may be
+                if(terms.read().equals(term)) {
+                    remove(i);
+                    return readConcept(in, terms, term);
+                }
+            }
+            return null;
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Concept store failed to read " + term, ex);
+        }
+    }
+
+    public synchronized boolean contains(final Term term) {
+        try {
+            return find(key(term), term) != -1;
+        } catch (final IOException ex) {
+            throw new IllegalStateException("Concept store failed to read " + term, ex);
+        }
+    }
+
+    public synchronized int size() {
+        return index.size;
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        liveBytes = 0;
+        unmap(segments);
+        restart();
+    }
+
+    /**
+     * Unmaps the segments and deletes the files, the store can't be used afterwards
+     *
+     * @throws IOException if a file can't be closed
+     */
+    public synchronized void close() throws IOException {
+        clear();
+        for(int i=0; i<files.length; i++) {
+            files[i].close();
+            paths[i].delete();
+        }
+    }
+
+    /**
+     * Writes the concepts of the store record by record, to be read into the store of a loaded memory
+     *
+     * @param out The output the records are written to
+     * @throws IOException if the output fails
+     */
+    public synchronized void writeConcepts(final DataOutput out) throws IOException {
+        out.writeInt(index.size);
+        for(int i=0; i<index.keys.length; i++) {
+            if(index.keys[i] != 0) {
+                final ByteBuffer data = read(segments, index.locations[i]);
+                final byte[] record = new byte[data.remaining()];
+                data.get(record);
+                out.writeLong(index.keys[i]);
+                out.writeInt(record.length);
+                out.write(record);
+            }
+        }
+    }
+
+    /**
+     * Reads concepts written by writeConcepts into the store
+     *
+     * @param in The input the records are read from
+     * @throws IOException if the input fails
+     */
+    public synchronized void readConcepts(final DataInput in) throws IOException {
+        final int amount = in.readInt();
+        for(int i=0; i<amount; i++) {
+            final long key = in.readLong();
+            final byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+            write(key, ByteBuffer.wrap(record));
+        }
+    }
+
+    /** the bucket of the index which holds the record of the term, or -1 */
+    private int find(final long key, final Term term) throws IOException {
+        for(int i = index.next(key, -1); i != -1; i = index.next(key, i)) {
+            if(new TermCodec.Decoder(record(index.locations[i]), memory).read().equals(term)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void remove(final int bucket) {
+        liveBytes -= HEADER + length(segments, index.remove(bucket));
+    }
+
+    private void write(final long key, final ByteBuffer data) throws IOException {
+        final int length = HEADER + data.remaining();
+        MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if(segment == null || segment.remaining() < length) {
+            final int size = Math.max(SEGMENT_SIZE, length);
+            segment = files[current].getChannel().map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+            fileSize += size;
+            segments.add(segment);
+        }
+        final int position = segment.position();
+        segment.putInt(data.remaining());
+        segment.put(data);
+        index.put(key, (long) (segments.size() - 1) << 32 | position);
+        liveBytes += length;
+        writtenBytes += length;
+    }
+
+    /* the length of the record at the location, a segment index in the upper and a position in the lower 32 bits */
+    private static int length(final List<MappedByteBuffer> segments, final long location) {
+        return segments.get((int) (location >>> 32)).getInt((int) location);
+    }
+
+    /* the bytes of the record, without copying them out of the segment */
+    private static ByteBuffer read(final List<MappedByteBuffer> segments, final long location) {
+        final ByteBuffer data = segments.get((int) (location >>> 32)).duplicate();
+        final int position = (int) location + HEADER;
+        data.position(position);
+        data.limit(position + length(segments, location));
+        return data;
+    }
+
+    private DataInputStream record(final long location) {
+        final ByteBuffer data = read(segments, location);
+        final byte[] copy = new byte[data.remaining()];
+        data.get(copy);
+        return new DataInputStream(new ByteArrayInputStream(copy));
+    }
+
+    /** copies the concepts which are still in the store record by record into the other file */
+    private void compact() throws IOException {
+        final List<MappedByteBuffer> old = new ArrayList<>(segments);
+        final long[] keys = Arrays.copyOf(index.keys, index.keys.length);
+        final long[] locations = Arrays.copyOf(index.locations, index.locations.length);
+        index.clear();
+        liveBytes = 0;
+        current = 1 - current;
+        restart();
+        for(int i=0; i<keys.length; i++) {
+            if(keys[i] != 0) {
+                write(keys[i], read(old, locations[i]));
+            }
+        }
+        unmap(old);
+    }
+
+    /* Unsafe.invokeCleaner, which unmaps a buffer, null where the JVM has none */
+    private static final Method invokeCleaner;
+    private static final Object unsafe;
+    static {
+        Method method = null;
+        Object instance = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            instance = field.get(null);
+            method = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            //before Java 9, the segments are unmapped when they are garbage collected
+        }
+        invokeCleaner = method;
+        unsafe = instance;
+    }
+
+    /**
+     * Unmaps the segments right away instead of when they are garbage collected, where the JVM allows it.
+     * No buffer of them may be used afterwards, the records are always copied out of them.
+     */
+    private static void unmap(final List<MappedByteBuffer> segments) {
+        if(invokeCleaner != null) {
+            for(final MappedByteBuffer segment : segments) {
+                try {
+                    invokeCleaner.invoke(unsafe, segment);
+                } catch (final ReflectiveOperationException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /* ---------- the record format ---------- */
+
+    private static void writeConcept(final DataOutput out, final Concept concept) throws IOException {
+        final TermCodec.Encoder terms = new TermCodec.Encoder(out);
+        terms.write(concept.getTerm());
+        writeBudget(out, concept.budget);
+        out.writeLong(concept.lastFireTime);
+        out.writeBoolean(concept.observable);
+        out.writeInt(concept.recent_intervals.size());
+        for(final float interval : concept.recent_intervals) {
+            out.writeFloat(interval);
+        }
+        out.writeInt(concept.beliefs.size());
+        for(final Task<?> belief : concept.beliefs) {
+            writeTask(out, terms, belief);
+        }
+        final int belief = concept.event == null ? -1 : concept.beliefs.indexOf(concept.event);
+        if(concept.event == null) {
+            out.writeByte(NO_EVENT);
+        } else if(belief >= 0 && concept.beliefs.get(belief) == concept.event) {
+            out.writeByte(BELIEF_EVENT);
+            out.writeInt(belief);
+        } else {
+            out.writeByte(OWN_EVENT);
+            writeTask(out, terms, concept.event);
+        }
+    }
+
+    /* the term of the record was read already by the decoder, to check it */
+    private Concept readConcept(final DataInput in, final TermCodec.Decoder terms, final Term term) throws IOException {
+        final Concept concept = new Concept(readBudget(in), term, memory);
+        concept.lastFireTime = in.readLong();
+        concept.observable = in.readBoolean();
+        final int intervals = in.readInt();
+        for(int i=0; i<intervals; i++) {
+            concept.recent_intervals.add(in.readFloat());
+        }
+        final int beliefs = in.readInt();
+        for(int i=0; i<beliefs; i++) {
+            concept.beliefs.append(readTask(in, terms));
+        }
+        switch(in.readUnsignedByte()) {
+            case BELIEF_EVENT:
+                concept.event = concept.beliefs.get(in.readInt());
+                break;
+            case OWN_EVENT:
+                concept.event = readTask(in, terms);
+                break;
+            default:
+                break;
+        }
+        return concept;
+    }
+
+    /* the task of a belief or event, a judgment, so it has no best solution; an input task has no parent belief */
+    private static void writeTask(final DataOutput out, final TermCodec.Encoder terms, final Task<?> task) throws IOException {
+        final Sentence<?> parent = task.isInput() ? null : task.getParentBelief();
+        out.writeByte((task.isInput() ? INPUT : 0) | (task.isElemOfSequenceBuffer() ? SEQUENCE_BUFFER : 0) | (parent != null ? PARENT_BELIEF : 0));
+        writeSentence(out, terms, task.sentence);
+        writeBudget(out, task.budget);
+        if(parent != null) {
+            writeSentence(out, terms, parent);
+        }
+    }
+
+    private Task<Term> readTask(final DataInput in, final TermCodec.Decoder terms) throws IOException {
+        final int flags = in.readUnsignedByte();
+        final Sentence<Term> sentence = readSentence(in, terms);
+        final BudgetValue budget = readBudget(in);
+        final Task<Term> task;
+        if((flags & INPUT) != 0) {
+            task = new Task<>(sentence, budget, Task.EnumType.INPUT);
+        } else {
+            task = new Task<>(sentence, budget, (flags & PARENT_BELIEF) != 0 ? readSentence(in, terms) : null);
+        }
+        task.setElemOfSequenceBuffer((flags & SEQUENCE_BUFFER) != 0);
+        return task;
+    }
+
+    private static void writeSentence(final DataOutput out, final TermCodec.Encoder terms, final Sentence<?> sentence) throws IOException {
+        terms.write(sentence.term);
+        out.writeChar(sentence.punctuation);
+        out.writeByte((sentence.truth != null ? TRUTH : 0) | (sentence.getRevisible() ? REVISIBLE : 0) |
+                      (sentence.producedByTemporalInduction ? TEMPORAL_INDUCTION : 0));
+        if(sentence.truth != null) {
+            out.writeLong(PackedTruth.pack(sentence.truth));
+        }
+        sentence.stamp.write(out);
+    }
+
+    private Sentence<Term> readSentence(final DataInput in, final TermCodec.Decoder terms) throws IOException {
+        final Term term = terms.read();
+        final char punctuation = in.readChar();
+        final int flags = in.readUnsignedByte();
+        final long truth = (flags & TRUTH) != 0 ? in.readLong() : 0;
+        final Sentence<Term> sentence = new Sentence<>(term, punctuation, (flags & TRUTH) != 0 ? PackedTruth.unpack(truth, memory.narParameters) : null, Stamp.read(in));
+        sentence.setRevisible((flags & REVISIBLE) != 0);
+        sentence.producedByTemporalInduction = (flags & TEMPORAL_INDUCTION) != 0;
+        return sentence;
+    }
+
+    private static void writeBudget(final DataOutput out, final BudgetValue budget) throws IOException {
+        out.writeFloat(budget.getPriority());
+        out.writeFloat(budget.getDurability());
+        out.writeFloat(budget.getQuality());
+        out.writeLong(budget.getLastForgetTime());
+    }
+
+    private BudgetValue readBudget(final DataInput in) throws IOException {
+        final BudgetValue budget = new BudgetValue(in.readFloat(), in.readFloat(), in.readFloat(), memory.narParameters);
+        final long lastForgetTime = in.readLong();
+        if(lastForgetTime != -1) {
+            budget.setLastForgetTime(lastForgetTime);
+        }
+        return budget;
+    }
+
+    /**
+     * Open addressing hash table from the keys of the terms to the locations of their records,
+     * so that the index holds no objects. A key of 0 marks a free bucket.
+     * Each record has an entry of its own, terms with the same key have their entries in the same cluster.
+     */
+    private static final class Index {
+        long[] keys = new long[16];
+        long[] locations = new long[16];
+        int size = 0;
+
+        private int bucket(final long key) {
+            return (int) (key ^ (key >>> 32)) & (keys.length - 1);
+        }
+
+        /**
+         * @param key The key of a term
+         * @param after The bucket the search continues after, -1 to start it
+         * @return The next bucket with the key, or -1
+         */
+        int next(final long key, final int after) {
+            for(int i = after == -1 ? bucket(key) : (after + 1) & (keys.length - 1); keys[i] != 0; i = (i + 1) & (keys.length - 1)) {
+                if(keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void put(final long key, final long location) {
+            if(2 * (size + 1) > keys.length) {
+                final long[] oldKeys = keys;
+                final long[] oldLocations = locations;
+                keys = new long[2 * oldKeys.length];
+                locations = new long[2 * oldKeys.length];
+                size = 0;
+                for(int i=0; i<oldKeys.length; i++) {
+                    if(oldKeys[i] != 0) {
+                        put(oldKeys[i], oldLocations[i]);
+                    }
+                }
+            }
+            int i = bucket(key);
+            while(keys[i] != 0) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            size++;
+            keys[i] = key;
+            locations[i] = location;
+        }
+
+        /** @return The location of the entry in the bucket, which is removed */
+        long remove(int i) {
+            final long location = locations[i];
+            //shift the following entries of the cluster back, so that none is behind a free bucket
+            for(int j = (i + 1) & (keys.length - 1); keys[j] != 0; j = (j + 1) & (keys.length - 1)) {
+                final int home = bucket(keys[j]);
+                if(((j - home) & (keys.length - 1)) >= ((j - i) & (keys.length - 1))) {
+                    keys[i] = keys[j];
+                    locations[i] = locations[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+            size--;
+            return location;
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0);
+            size = 0;
+        }
+    }
+}
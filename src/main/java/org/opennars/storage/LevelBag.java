@@ -0,0 +1,291 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.storage;
+
+import org.opennars.entity.Item;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Bag which sorts its items into priority levels and selects them probabilistically.
+ * <p>
+ * An item with priority p is kept in level floor(p * levels), each level is a FIFO list.
+ * takeNext chooses a level with probability proportional to (level + 1) times the
+ * amount of items in it, and takes the oldest item of that level, so that items are
+ * selected in proportion to their priority.
+ * On overflow, the oldest item of the lowest non-empty level is displaced.
+ * <p>
+ * The level lists are linked through arrays indexed by the slot of the item, and the
+ * level weights are kept in a Fenwick tree, so insertion, removal and selection
+ * don't depend on the amount of items and don't allocate.
+ * With lazy forgetting, the decay of an item is applied when it is taken out,
+ * until then it stays in the level of its previous priority, and to all the items
+ * before one is displaced.
+ *
+ * @author Patrick Hammer
+ */
+public class LevelBag<K,V extends Item<K>> extends Bag<K,V> {
+    private static final long serialVersionUID = 1L;
+
+    final Map<K,V> theMap;
+    final int levels;
+    final int maxSize;
+
+    /* the items by slot, with their level and the neighbours in their level list */
+    private V[] items;
+    private int[] level;
+    private int[] prev;
+    private int[] next;
+    private int size = 0;
+
+    /* oldest and newest slot of each level, -1 if the level is empty */
+    private final int[] first;
+    private final int[] last;
+    /* Fenwick tree over the level weights (level + 1) * amount of items */
+    private final long[] weights;
+    private long totalWeight = 0;
+
+    public LevelBag(final int levels, final int maxSize) {
+        this.levels = Math.max(1, levels);
+        this.maxSize = maxSize;
+        theMap = new HashMap<>();
+        final int capacity = Math.max(1, Math.min(maxSize, 64));
+        items = Bag.<K,V>itemArray(capacity);
+        level = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        first = new int[this.levels];
+        last = new int[this.levels];
+        Arrays.fill(first, -1);
+        Arrays.fill(last, -1);
+        weights = new long[this.levels + 1];
+    }
+
+    @Override
+    public V putIn(final V item) {
+        if(contains(item)) {
+            update(item);
+            theMap.put(item.name(), item);
+            return null;
+        }
+        if(maxSize <= 0) {
+            return item;
+        }
+        V displaced = null;
+        if(size >= maxSize) {
+            forgetAllLazily();
+            displaced = removeSlot(first[findLevel(0)]);
+            //an equal item put in after it can hold the key
+            if(theMap.get(displaced.name()) == displaced) {
+                theMap.remove(displaced.name());
+            }
+        }
+        if(size == items.length) {
+            final int capacity = Math.min(maxSize, items.length * 2);
+            items = Arrays.copyOf(items, capacity);
+            level = Arrays.copyOf(level, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        final int slot = size++;
+        items[slot] = item;
+        item.slot = slot;
+        link(slot, levelOf(item));
+        theMap.put(item.name(), item);
+        return displaced;
+    }
+
+    @Override
+    public V get(final K key) {
+        return theMap.get(key);
+    }
+
+    @Override
+    public V take(final K key) {
+        final V ret = theMap.remove(key);
+        if(ret != null && contains(ret)) {
+            removeSlot(ret.slot);
+        }
+        if(ret != null) {
+            forgetLazily(ret);
+        }
+        return ret;
+    }
+
+    @Override
+    public V takeNext() {
+        if(size == 0) {
+            return null;
+        }
+        final long r = (long) (Memory.randomNumber.nextDouble() * totalWeight);
+        final V ret = removeSlot(first[findLevel(r)]);
+        forgetLazily(ret);
+        return ret;
+    }
+
+    /**
+     * @return The sum of the level weights takeNext selects by
+     */
+    long totalWeight() {
+        return totalWeight;
+    }
+
+    @Override
+    public void update(final V item) {
+        if(!contains(item)) {
+            return;
+        }
+        final int l = levelOf(item);
+        if(l != level[item.slot]) {
+            unlink(item.slot);
+            link(item.slot, l);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(int i=0; i<size; i++) {
+            items[i].slot = -1;
+            items[i] = null;
+        }
+        size = 0;
+        Arrays.fill(first, -1);
+        Arrays.fill(last, -1);
+        Arrays.fill(weights, 0);
+        totalWeight = 0;
+        theMap.clear();
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public V next() {
+                if(i >= size) {
+                    throw new NoSuchElementException();
+                }
+                return items[i++];
+            }
+        };
+    }
+
+    private boolean contains(final V item) {
+        return item.slot >= 0 && item.slot < size && items[item.slot] == item;
+    }
+
+    private int levelOf(final V item) {
+        final int l = (int) (item.getPriority() * levels);
+        return Math.max(0, Math.min(levels - 1, l));
+    }
+
+    private void link(final int slot, final int l) {
+        level[slot] = l;
+        prev[slot] = last[l];
+        next[slot] = -1;
+        if(last[l] >= 0) {
+            next[last[l]] = slot;
+        } else {
+            first[l] = slot;
+        }
+        last[l] = slot;
+        addWeight(l, l + 1);
+    }
+
+    private void unlink(final int slot) {
+        final int l = level[slot];
+        if(prev[slot] >= 0) {
+            next[prev[slot]] = next[slot];
+        } else {
+            first[l] = next[slot];
+        }
+        if(next[slot] >= 0) {
+            prev[next[slot]] = prev[slot];
+        } else {
+            last[l] = prev[slot];
+        }
+        addWeight(l, -(l + 1));
+    }
+
+    private V removeSlot(final int slot) {
+        final V ret = items[slot];
+        unlink(slot);
+        ret.slot = -1;
+        size--;
+        if(slot != size) {
+            //move the last item into the free slot
+            items[slot] = items[size];
+            items[slot].slot = slot;
+            level[slot] = level[size];
+            prev[slot] = prev[size];
+            next[slot] = next[size];
+            if(prev[slot] >= 0) {
+                next[prev[slot]] = slot;
+            } else {
+                first[level[slot]] = slot;
+            }
+            if(next[slot] >= 0) {
+                prev[next[slot]] = slot;
+            } else {
+                last[level[slot]] = slot;
+            }
+        }
+        items[size] = null;
+        return ret;
+    }
+
+    private void addWeight(final int l, final long w) {
+        totalWeight += w;
+        for(int i = l + 1; i <= levels; i += i & (-i)) {
+            weights[i] += w;
+        }
+    }
+
+    /** the lowest level whose cumulative weight exceeds r */
+    private int findLevel(long r) {
+        int pos = 0;
+        for(int step = Integer.highestOneBit(levels); step > 0; step >>= 1) {
+            if(pos + step <= levels && weights[pos + step] <= r) {
+                pos += step;
+                r -= weights[pos];
+            }
+        }
+        return pos;
+    }
+}
@@ -23,6 +23,9 @@
  */
 package org.opennars.storage;
 
+import org.opennars.control.CycleScheduler;
+import org.opennars.control.DerivationContext;
+import org.opennars.control.DerivationPool;
 import org.opennars.control.GeneralInferenceControl;
 import org.opennars.entity.*;
 import org.opennars.inference.BudgetFunctions;
@@ -45,8 +48,13 @@ import org.opennars.main.Parameters;
 import org.opennars.operator.Operation;
 import org.opennars.operator.Operator;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 import org.opennars.entity.Stamp.BaseEntry;
 
 import static org.opennars.inference.BudgetFunctions.truthToQuality;
@@ -77,12 +85,34 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
     /* InnateOperator registry. Containing all registered operators of the system */
     public final Map<CharSequence, Operator> operators;
     
-    public final PriorityMap<Term,Concept> concepts;
+    public final Bag<Term,Concept> concepts;
+    /* the concepts displaced from the concept bag, null if they are forgotten,
+       written with the memory and read into a new store when it is loaded */
+    public transient ConceptStore conceptStore = null;
+    /* the terms of the concepts in the concept bag by their subterms */
+    public final SubtermIndex subterms = new SubtermIndex();
 
     /* List of new tasks accumulated in one cycle, to be processed in the next cycle */
     public final Deque<Task> inputTasks;
-    public final PriorityMap cyclingTasks;
-    public final PriorityMap premiseQueue;
+    public final Bag<Sentence<Term>,Task<Term>> cyclingTasks;
+    public final Bag<GeneralInferenceControl.PremiseKey,GeneralInferenceControl.Premises> premiseQueue;
+    /* amount of premises which were merged into an equal premise waiting in the premiseQueue */
+    public final AtomicLong duplicatePremises = new AtomicLong();
+    /* amount of evidential base overlap checks decided by the bloom masks of the stamps, and the ones which compared the bases */
+    public final AtomicLong overlapChecksRejected = new AtomicLong();
+    public final AtomicLong overlapChecksExact = new AtomicLong();
+
+    /* decides the amount of tasks and premises fired in a cycle, created anew when the Nar is loaded */
+    public transient CycleScheduler scheduler = new CycleScheduler();
+
+    /* the workers executing the premises in parallel, null if they are executed by the cycling thread */
+    public transient ForkJoinPool premiseWorkers = null;
+
+    /* the premises and derivation contexts which can be reused, by thread */
+    private transient volatile ThreadLocal<DerivationPool> derivationPools = null;
+
+    /* time of the current cycle, used for lazy forgetting */
+    private long cycleTime = 0;
     
     //Boolean localInferenceMutex = false;
     
@@ -94,30 +124,81 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
     /**
      * Create a new memory
      */
-    public Memory(final Parameters narParameters, final PriorityMap<Term, Concept> concepts) {
+    public Memory(final Parameters narParameters, final Bag<Term, Concept> concepts) {
         this.narParameters = narParameters;
         this.event = new EventEmitter();
         this.concepts = concepts;             
         this.inputTasks = new ArrayDeque<>();
-        this.cyclingTasks = new PriorityMap(narParameters.TASK_LINK_BAG_SIZE);
-        this.premiseQueue = new PriorityMap(narParameters.TERM_LINK_BAG_SIZE);
+        this.cyclingTasks = Bag.make(narParameters.TASK_LINK_BAG_TYPE, narParameters.TASK_LINK_BAG_LEVELS, narParameters.TASK_LINK_BAG_SIZE);
+        this.premiseQueue = Bag.make(narParameters.TERM_LINK_BAG_TYPE, narParameters.TERM_LINK_BAG_LEVELS, narParameters.TERM_LINK_BAG_SIZE);
+        if(narParameters.LAZY_FORGETTING) {
+            this.concepts.setLazyForgetting(cycles(narParameters.CONCEPT_FORGET_DURATIONS), this);
+            this.cyclingTasks.setLazyForgetting(cycles(narParameters.TASKLINK_FORGET_DURATIONS), this);
+        }
+        if(narParameters.PREMISE_WORKERS > 1) {
+            this.premiseWorkers = new ForkJoinPool(narParameters.PREMISE_WORKERS);
+        }
         this.operators = new HashMap<>();
+        if(!narParameters.CONCEPT_STORE_DIRECTORY.isEmpty()) {
+            try {
+                this.conceptStore = new ConceptStore(this, narParameters.CONCEPT_STORE_DIRECTORY);
+            } catch (final IOException ex) {
+                throw new IllegalStateException("Could not create the concept store in " + narParameters.CONCEPT_STORE_DIRECTORY, ex);
+            }
+        }
         reset();
     }
     
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeBoolean(conceptStore != null);
+        if(conceptStore != null) {
+            conceptStore.writeConcepts(out);
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if(in.readBoolean()) {
+            conceptStore = new ConceptStore(this, narParameters.CONCEPT_STORE_DIRECTORY);
+            conceptStore.readConcepts(in);
+        }
+    }
+
     public void reset() {
         event.emit(ResetStart.class);
-        this.concepts.queue.clear();
-        this.concepts.theMap.clear();
-        this.cyclingTasks.queue.clear();
-        this.cyclingTasks.theMap.clear();
+        this.concepts.clear();
+        this.subterms.clear();
+        this.cyclingTasks.clear();
         this.inputTasks.clear();
-        this.premiseQueue.queue.clear();
-        this.premiseQueue.theMap.clear();
+        this.premiseQueue.clear();
+        this.duplicatePremises.set(0);
+        this.overlapChecksRejected.set(0);
+        this.overlapChecksExact.set(0);
+        this.scheduler.reset();
+        if(conceptStore != null) {
+            conceptStore.clear();
+        }
         resetStatic();
         event.emit(ResetEnd.class);
     }
 
+    /**
+     * @return The pool of reusable premises and derivation contexts of the current thread
+     */
+    public DerivationPool derivationPool() {
+        ThreadLocal<DerivationPool> pools = derivationPools;
+        if(pools == null) {
+            synchronized(this) {
+                if(derivationPools == null) {
+                    derivationPools = ThreadLocal.withInitial(() -> new DerivationPool(this));
+                }
+                pools = derivationPools;
+            }
+        }
+        return pools.get();
+    }
+
     /* ---------- conversion utilities ---------- */
     /**
      * Get an existing Concept for a given name
@@ -128,11 +209,32 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
      * @return a Concept or null
      */
     public Concept concept(final Term t) {
-        synchronized (concepts) {
-            return concepts.get(CompoundTerm.replaceIntervals(t));
+        final Term key = CompoundTerm.replaceIntervals(t);
+        if (key == null) {
+            return null;
+        }
+        synchronized (concepts.lockFor(key)) {
+            return concepts.get(key);
         }
     }
 
+    /**
+     * Get the active concepts containing a term, using the subterm index
+     *
+     * @param t The term to search
+     * @return The concepts whose term is or contains the term
+     */
+    public List<Concept> conceptsContaining(final Term t) {
+        final List<Concept> ret = new ArrayList<>();
+        for (final Term key : subterms.conceptsContaining(CompoundTerm.replaceIntervals(t))) {
+            final Concept c = concept(key);
+            if (c != null) {
+                ret.add(c);
+            }
+        }
+        return ret;
+    }
+
     /**
      * Get the Concept associated to a Term, or create it.
      * 
@@ -159,12 +261,24 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
             return null;
         }
         term = CompoundTerm.replaceIntervals(term);
+        if(term == null) {
+            return null;
+        }
 
         final Concept displaced;
         Concept concept;
 
-        synchronized (concepts) {
+        synchronized (concepts.lockFor(term)) {
             concept = concepts.take(term);
+            //reactivate it if it was displaced before
+            if (concept == null && conceptStore != null) {
+                concept = conceptStore.take(term);
+                if (concept != null) {
+                    BudgetFunctions.activate(concept.budget, budget);
+                    subterms.add(term);
+                    emit(Events.ConceptNew.class, concept);
+                }
+            }
 
             //see if concept is active
             if (concept == null) {
@@ -172,6 +286,7 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
                 concept = new Concept(budget, term, this);
                 //if (memory.logic!=null)
                 //    memory.logic.CONCEPT_NEW.commit(term.getComplexity());
+                subterms.add(term);
                 emit(Events.ConceptNew.class, concept);
             }
             else if (concept!=null) {
@@ -184,30 +299,82 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
                 return null;
             }
 
-            displaced = concepts.putBack(concept, cycles(narParameters.CONCEPT_FORGET_DURATIONS), this);
+            displaced = putBack(concept);
         }
 
-        if (displaced == null) {
-            //added without replacing anything
-            return concept;
-        }        
-        else if (displaced == concept) {
+        if (displaced == concept) {
             //not able to insert
-            conceptRemoved(displaced);
             return null;
-        }        
-        else {
+        }
+        return concept;
+    }
+
+    /**
+     * Restores the order of the cycling tasks after the budget of a task was changed in place,
+     * as a fired task is back in them while its premises are derived
+     *
+     * @param task The task whose budget changed, nothing is done if it isn't a cycling task
+     */
+    @SuppressWarnings("unchecked")
+    public void taskBudgetChanged(final Task<?> task) {
+        synchronized(cyclingTasks.lockFor((Sentence<Term>) task.name())) {
+            cyclingTasks.update((Task<Term>) task);
+        }
+    }
+
+    /**
+     * Put a concept into the concept bag, after applying forgetting to it,
+     * and remove the concept it displaced, which is the concept itself if it couldn't be inserted.
+     * Has to be called while synchronized on concepts.lockFor of the term of the concept,
+     * so that the displaced term can't be conceptualized before it is in the store.
+     *
+     * @param c The concept to put back
+     * @return The displaced concept, or null
+     */
+    public Concept putBack(final Concept c) {
+        final Concept displaced = concepts.putBack(c, cycles(narParameters.CONCEPT_FORGET_DURATIONS), this);
+        if (displaced != null) {
             conceptRemoved(displaced);
-            return concept;
         }
+        return displaced;
+    }
+
+    /**
+     * Called when a concept left the concept bag.
+     * Has to be called while synchronized on concepts.lockFor of the term of the concept,
+     * which is the lock of the inserted concept as a bag displaces within the shard of the key.
+     *
+     * @param c The displaced concept
+     */
+    public void conceptRemoved(final Concept c) {
+        subterms.remove(c.getTerm());
+        if(conceptStore != null) {
+            conceptStore.put(c);
+        }
+        emit(Events.ConceptForget.class, c);
     }
     
     /* ---------- new task entries ---------- */
     /**
-     * add new task that waits to be processed in the next cycleMemory
+     * add new task that waits to be processed in the next cycleMemory,
+     * by the premise the thread is executing if it is executing one
      */
     public void addNewTask(final Task t, final String reason) {
-        GeneralInferenceControl.addTask(this, t, reason.startsWith("Derived"));
+        final DerivationContext current = derivationPool().current();
+        if(current != null) {
+            current.addTask(t, reason);
+        } else {
+            addNewTask(t, reason, null);
+        }
+    }
+
+    /**
+     * add new task that waits to be processed in the next cycleMemory
+     *
+     * @param nal The derivation context the task was derived in, null if it wasn't derived by a premise
+     */
+    public void addNewTask(final Task t, final String reason, final DerivationContext nal) {
+        GeneralInferenceControl.addTask(this, t, reason.startsWith("Derived"), nal);
         emit(Events.TaskAdd.class, t, reason);
         output(t);
     }
@@ -313,11 +480,8 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
         return event.isActive(channel);
     }
     
-    public void conceptRemoved(final Concept c) {
-        emit(Events.ConceptForget.class, c);
-    }
-    
     public void cycle(final Nar inputs) {
+        cycleTime = inputs.time();
     
         event.emit(Events.CycleStart.class);
         
@@ -328,6 +492,13 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
         event.synch();
     }
 
+    /**
+     * @return The time of the current cycle
+     */
+    public long time() {
+        return cycleTime;
+    }
+
      public Operator getOperator(final String op) {
         return operators.get(op);
      }
@@ -342,6 +513,10 @@ public class Memory implements Serializable, Iterable<Concept>, Resettable {
      }
 
     private long currentStampSerial = 0;
+    /**
+     * @return The evidential base entry of the next input
+     * @throws IllegalArgumentException if the input ids, limited to 32 bits, ran out
+     */
     public BaseEntry newStampSerial() {
         return new BaseEntry(this.narId, currentStampSerial++);
     }   
@@ -1,4 +1,4 @@
-/* 
+/*
  * The MIT License
  *
  * Copyright 2018 The OpenNARS authors.
@@ -23,72 +23,536 @@
  */
 package org.opennars.storage;
 
-import com.google.common.collect.MinMaxPriorityQueue;
 import org.opennars.entity.Item;
 
-import java.io.Serializable;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import org.opennars.inference.BudgetFunctions;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
-public class PriorityMap<K,V extends Item<K>> implements Serializable {
-    public final MinMaxPriorityQueue<V> queue;
-    public final Map<K,V> theMap; 
+/**
+ * Priority queue with access by key.
+ * <p>
+ * The items are kept in a min-max heap, so that both the lowest priority item
+ * (displaced on overflow) and the highest priority item (selected for processing)
+ * are found in constant time.
+ * Every item remembers its slot in the heap, which makes take, putBack and
+ * re-prioritization O(log n) instead of a linear search through the queue.
+ * The items are moved through the heap exactly as by the Guava MinMaxPriorityQueue
+ * the map used before, so items of equal priority are selected in the same order.
+ * An item which is put in while it is queued is re-prioritized instead of getting a
+ * second entry, the same as in LevelBag.
+ * <p>
+ * The budgets of the items are copied into primitive arrays parallel to the heap, so
+ * ordering, forgetting and selection run over contiguous memory instead of following
+ * each item to its budget. The budget of an item is only written back when its decay
+ * changes it. A budget which is changed while the item is in the map has to be followed
+ * by update, like the budgets of the cycling tasks by Memory.taskBudgetChanged.
+ * <p>
+ * With lazy forgetting, the priorities in the heap are upper bounds of the decayed
+ * priorities, so the decay of the highest items is applied before one is handed out,
+ * and the decay of all the items before the lowest one is displaced.
+ * <p>
+ * An item can only be stored in one PriorityMap at a time.
+ *
+ * @author Patrick Hammer
+ */
+public class PriorityMap<K,V extends Item<K>> extends Bag<K,V> {
+    private static final long serialVersionUID = 1L;
+
+    public final Map<K,V> theMap;
     final int maxSize;
+    /* the min-max heap, even levels are min levels, odd levels are max levels,
+       the last index holds the entry which is being placed */
+    private V[] heap;
+    /* the budgets of the items in the heap, as of their last putIn or update */
+    private float[] keys;
+    private float[] durabilities;
+    private float[] qualities;
+    private long[] forgetTimes;
+    private int size = 0;
+    /* candidates of forEachTopK: heap index * 2, plus 1 if the index stands for its whole subtree */
+    private int[] frontier = new int[16];
+    private int frontierSize = 0;
+
     public PriorityMap(int maxSize) {
         this.maxSize = maxSize;
         theMap = new HashMap<>();
-        queue = MinMaxPriorityQueue
-                .orderedBy(Comparator.comparing(V::getPriority))
-                .create();
+        allocate(Math.max(1, Math.min(maxSize, 64)));
     }
-    
+
+    @Override
     public V putIn(V item) {
+        if(contains(item)) {
+            update(item);
+            theMap.put(item.name(), item);
+            return null;
+        }
+        if(maxSize <= 0) {
+            return item;
+        }
         V displaced = null;
-        if(queue.size() >= maxSize) {
-            V itemRemove = queue.removeFirst();
-            theMap.remove(itemRemove.name());
+        if(size >= maxSize) {
+            forgetAllLazily();
+            V itemRemove = removeAt(0);
+            //an equal item put in after it can hold the key
+            if(theMap.get(itemRemove.name()) == itemRemove) {
+                theMap.remove(itemRemove.name());
+            }
             displaced = itemRemove;
         }
-        queue.add(item);
+        add(item);
         theMap.put(item.name(), item);
         return displaced;
     }
-    
+
+    @Override
     public V get(K key) {
         return theMap.getOrDefault(key, null);
     }
-    
+
+    @Override
     public V take(K key) {
-        if(theMap.containsKey(key)) {
-            queue.remove(theMap.get(key));
-            V ret = theMap.get(key);
-            theMap.remove(key);
-            return ret;
+        V ret = theMap.remove(key);
+        if(ret != null && contains(ret)) {
+            removeAt(ret.slot);
         }
-        return null;
+        if(ret != null) {
+            forgetLazily(ret);
+        }
+        return ret;
     }
-    
+
+    /**
+     * @return The item takeHighestPriorityItem would take, left in the map, or null if it is empty
+     */
+    public V highestPriorityItem() {
+        if(size == 0) {
+            return null;
+        }
+        while(forgetLazilyAt(maxIndex())) { }
+        return heap[maxIndex()];
+    }
+
     public V takeHighestPriorityItem() {
-        if(queue.isEmpty()) {
+        if(size == 0) {
             return null;
         }
-        return queue.pollLast();
+        //the decay only lowers priorities, so the highest item is found once it is up to date
+        while(forgetLazilyAt(maxIndex())) { }
+        return removeAt(maxIndex());
     }
-    
-    public Iterator iterator() {
-        return queue.iterator();
+
+    @Override
+    public V takeNext() {
+        return takeHighestPriorityItem();
     }
-    
-    public V putBack(final V oldItem, final float forgetCycles, final Memory m) {
-        final float relativeThreshold = m.narParameters.QUALITY_RESCALED;
-        BudgetFunctions.applyForgetting(oldItem.budget, forgetCycles, relativeThreshold);
-        return putIn(oldItem);
+
+    /**
+     * The highest priority items, left in the map
+     *
+     * @param k The amount of items
+     * @param out The collection the items are added to, in descending order of priority
+     */
+    @Override
+    public void topK(final int k, final Collection<V> out) {
+        forEachTopK(k, out::add);
+    }
+
+    /**
+     * Visits the highest priority items in descending order of priority, leaving them in the map.
+     * The heap is explored best-first from the top, so this takes O(k log k) time.
+     * With lazy forgetting the decay of the visited items is applied first, as their keys are
+     * only upper bounds, and an item whose priority decayed is moved down before the next try.
+     * The action must not modify the map.
+     *
+     * @param k The amount of items
+     * @param action Applied to each of the items
+     */
+    public void forEachTopK(final int k, final Consumer<V> action) {
+        while(lazyMemory != null && !visitTopK(k, null)) { }
+        visitTopK(k, action);
     }
-    
-    public boolean isEmpty() {
-        return this.queue.isEmpty();
+
+    /**
+     * @param action Applied to the visited items, or null to apply the decay to them instead
+     * @return Whether all the items were visited, false if the priority of one decayed
+     */
+    private boolean visitTopK(final int k, final Consumer<V> action) {
+        if(size == 0 || k <= 0) {
+            return true;
+        }
+        frontierSize = 0;
+        //a node on a min level is below its subtree, a node on a max level above it
+        pushMinNode(0);
+        for(int visited = 0; visited < k && frontierSize > 0; visited++) {
+            final int entry = popFrontier();
+            final int i = entry >> 1;
+            if(action == null) {
+                if(forgetLazilyAt(i)) {
+                    return false;
+                }
+            } else {
+                action.accept(heap[i]);
+            }
+            if((entry & 1) == 1) {
+                for(int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    pushMinNode(child);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Restores the order after the priority of an item in the queue was changed,
+     * by taking its entry out and adding it again
+     *
+     * @param item The item whose priority changed
+     */
+    @Override
+    public void update(V item) {
+        if(!contains(item)) {
+            return;
+        }
+        removeAt(item.slot);
+        add(item);
+    }
+
+    /**
+     * Applies the decay to all the items, finding the items which decayed from the budget arrays,
+     * so that only their budgets are written and only they are re-ordered
+     */
+    @Override
+    protected void forgetAllLazily() {
+        if(lazyMemory == null || lazyMemory.time() == decayedTime) {
+            return;
+        }
+        decayedTime = lazyMemory.time();
+        final List<V> decayed = new ArrayList<>();
+        for(int i=0; i<size; i++) {
+            if(decaysAt(i)) {
+                decayed.add(heap[i]);
+            }
+        }
+        for(final V item : decayed) {
+            forgetLazilyAt(item.slot);
+        }
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public V next() {
+                if(i >= size) {
+                    throw new NoSuchElementException();
+                }
+                return heap[i++];
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(int i=0; i<size; i++) {
+            heap[i].slot = -1;
+            heap[i] = null;
+        }
+        size = 0;
+        theMap.clear();
+    }
+
+    private boolean contains(V item) {
+        return item.slot >= 0 && item.slot < size && heap[item.slot] == item;
+    }
+
+    /**
+     * Whether the decay of lazy forgetting changes the budget of the entry at i,
+     * computed from the budget arrays the same way as by BudgetFunctions.forgetPeriodic
+     */
+    private boolean decaysAt(final int i) {
+        final long time = lazyMemory.time();
+        if(forgetTimes[i] == -1) {
+            //the first forgetting only sets the time
+            return true;
+        }
+        final long period = time - forgetTimes[i];
+        final float quality = qualities[i] * lazyMemory.narParameters.QUALITY_RESCALED;
+        final float p = keys[i] - quality;
+        if(period <= 0 || p <= 0) {
+            return false;
+        }
+        return quality + p * (float) Math.pow(durabilities[i], period / lazyForgetCycles) != keys[i];
+    }
+
+    /**
+     * Applies the decay of lazy forgetting to the entry at i, if the budget arrays show that it decayed
+     *
+     * @return Whether the priority of the entry changed, then it was moved to its new place
+     */
+    private boolean forgetLazilyAt(final int i) {
+        if(lazyMemory == null || !decaysAt(i)) {
+            return false;
+        }
+        final V item = heap[i];
+        if(forgetLazily(item)) {
+            update(item);
+            return true;
+        }
+        forgetTimes[i] = item.budget.getLastForgetTime();
+        return false;
+    }
+
+    /** the index of the highest entry, the first of the two max level entries if they are equal */
+    private int maxIndex() {
+        if(size <= 2) {
+            return size - 1;
+        }
+        return keys[1] >= keys[2] ? 1 : 2;
+    }
+
+    private void allocate(final int capacity) {
+        //one more for the entry which is being placed
+        heap = heap == null ? Bag.<K,V>itemArray(capacity + 1) : Arrays.copyOf(heap, capacity + 1);
+        keys = keys == null ? new float[capacity + 1] : Arrays.copyOf(keys, capacity + 1);
+        durabilities = durabilities == null ? new float[capacity + 1] : Arrays.copyOf(durabilities, capacity + 1);
+        qualities = qualities == null ? new float[capacity + 1] : Arrays.copyOf(qualities, capacity + 1);
+        forgetTimes = forgetTimes == null ? new long[capacity + 1] : Arrays.copyOf(forgetTimes, capacity + 1);
+    }
+
+    /** the index of the entry which is being placed */
+    private int pending() {
+        return heap.length - 1;
+    }
+
+    private void add(V item) {
+        if(size == pending()) {
+            allocate(Math.min(maxSize, pending() * 2));
+        }
+        final int e = pending();
+        heap[e] = item;
+        keys[e] = item.getPriority();
+        durabilities[e] = item.getDurability();
+        qualities[e] = item.getQuality();
+        forgetTimes[e] = item.budget.getLastForgetTime();
+        final int i = size++;
+        final boolean min = isMinLevel(i);
+        final int crossed = crossOverUp(i, e, min);
+        move(e, bubbleUpAlternating(crossed, e, crossed == i ? min : !min));
+        heap[e] = null;
+    }
+
+    private V removeAt(int i) {
+        final V ret = heap[i];
+        size--;
+        if(i == size) {
+            heap[size] = null;
+            ret.slot = -1;
+            return ret;
+        }
+        final int lastAt = swapWithConceptuallyLast();
+        if(lastAt == i) {
+            //the removed entry was the one swapped to the end
+            heap[size] = null;
+            ret.slot = -1;
+            return ret;
+        }
+        final int e = pending();
+        move(size, e);
+        heap[size] = null;
+        ret.slot = -1;
+        //fill the hole with the lowest (or highest) grandchildren, then find the place of the last entry
+        final boolean min = isMinLevel(i);
+        int vacated = i;
+        int g;
+        while((g = findFirst(4 * vacated + 3, 4, min)) > 0) {
+            move(g, vacated);
+            vacated = g;
+        }
+        int place = bubbleUpAlternating(vacated, e, min);
+        if(place == vacated) {
+            final int crossed = crossOver(vacated, e, min);
+            if(crossed != vacated) {
+                place = bubbleUpAlternating(crossed, e, !min);
+            }
+        }
+        move(e, place);
+        heap[e] = null;
+        return ret;
+    }
+
+    /** copies the entry at index from to index to */
+    private void move(final int from, final int to) {
+        heap[to] = heap[from];
+        keys[to] = keys[from];
+        durabilities[to] = durabilities[from];
+        qualities[to] = qualities[from];
+        forgetTimes[to] = forgetTimes[from];
+        heap[to].slot = to;
+    }
+
+    /** whether key a is strictly before key b on a min (or max) level */
+    private static boolean before(float a, float b, boolean min) {
+        return min ? a < b : b < a;
+    }
+
+    private static boolean isMinLevel(int i) {
+        return (31 - Integer.numberOfLeadingZeros(i + 1)) % 2 == 0;
+    }
+
+    /** the first lowest (or highest) of the len entries from i, -1 if there are none */
+    private int findFirst(int i, int len, boolean min) {
+        if(i >= size) {
+            return -1;
+        }
+        final int limit = Math.min(i, size - len) + len;
+        int m = i;
+        for(int j = i + 1; j < limit; j++) {
+            if(before(keys[j], keys[m], min)) {
+                m = j;
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Moves the grandparents of i down while the entry at e is before them
+     *
+     * @return The index the entry at e belongs to
+     */
+    private int bubbleUpAlternating(int i, int e, boolean min) {
+        while(i > 2) {
+            final int grandparent = ((i - 1) / 2 - 1) / 2;
+            if(!before(keys[e], keys[grandparent], min)) {
+                break;
+            }
+            move(grandparent, i);
+            i = grandparent;
+        }
+        return i;
+    }
+
+    /**
+     * Moves the parent of i down if the entry at e belongs to the levels of the parent
+     *
+     * @return The index the entry at e goes to, i or the index of the parent
+     */
+    private int crossOverUp(int i, int e, boolean min) {
+        if(i == 0) {
+            return 0;
+        }
+        int parent = (i - 1) / 2;
+        if(parent != 0) {
+            //a childless aunt could become a child of the entry when it moves up, so it counts as parent
+            final int aunt = 2 * ((parent - 1) / 2) + 2;
+            if(aunt != parent && 2 * aunt + 1 >= size && before(keys[aunt], keys[parent], min)) {
+                parent = aunt;
+            }
+        }
+        if(before(keys[parent], keys[e], min)) {
+            move(parent, i);
+            return parent;
+        }
+        return i;
+    }
+
+    /**
+     * Moves a child of i up if it belongs to the levels of i, else tries crossOverUp
+     *
+     * @return The index the entry at e goes to
+     */
+    private int crossOver(int i, int e, boolean min) {
+        final int child = findFirst(2 * i + 1, 2, min);
+        if(child > 0 && before(keys[child], keys[e], min)) {
+            move(child, i);
+            return child;
+        }
+        return crossOverUp(i, e, min);
+    }
+
+    /**
+     * The entry at the end of the array isn't always the conceptually last one:
+     * a childless uncle further up can be, then the two are swapped
+     *
+     * @return The index the last entry is now at
+     */
+    private int swapWithConceptuallyLast() {
+        final int parent = (size - 1) / 2;
+        if(parent != 0) {
+            final int uncle = 2 * ((parent - 1) / 2) + 2;
+            if(uncle != parent && 2 * uncle + 1 >= size && before(keys[uncle], keys[size], isMinLevel(size))) {
+                final int e = pending();
+                move(size, e);
+                move(uncle, size);
+                move(e, uncle);
+                heap[e] = null;
+                return uncle;
+            }
+        }
+        return size;
+    }
+
+    /** adds the min level node itself and the subtrees of its children, which are on a max level */
+    private void pushMinNode(int i) {
+        pushFrontier(2 * i);
+        for(int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+            pushFrontier(2 * child + 1);
+        }
+    }
+
+    private float frontierPriority(int f) {
+        return keys[frontier[f] >> 1];
+    }
+
+    private void pushFrontier(int entry) {
+        if(frontierSize == frontier.length) {
+            frontier = Arrays.copyOf(frontier, frontier.length * 2);
+        }
+        int i = frontierSize++;
+        frontier[i] = entry;
+        while(i > 0 && frontierPriority((i - 1) / 2) < frontierPriority(i)) {
+            final int parent = (i - 1) / 2;
+            frontier[i] = frontier[parent];
+            frontier[parent] = entry;
+            i = parent;
+        }
+    }
+
+    private int popFrontier() {
+        final int ret = frontier[0];
+        frontier[0] = frontier[--frontierSize];
+        int i = 0;
+        while(2 * i + 1 < frontierSize) {
+            int m = 2 * i + 1;
+            if(m + 1 < frontierSize && frontierPriority(m) < frontierPriority(m + 1)) {
+                m = m + 1;
+            }
+            if(frontierPriority(m) <= frontierPriority(i)) {
+                break;
+            }
+            final int a = frontier[i];
+            frontier[i] = frontier[m];
+            frontier[m] = a;
+            i = m;
+        }
+        return ret;
     }
 }
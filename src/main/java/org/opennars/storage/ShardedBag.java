@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.storage;
+
+import org.opennars.entity.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bag split into shards by key, for single-threaded use.
+ * <p>
+ * The keys are striped by their hash over shards, each shard being a bag of the
+ * configured storage engine with its own lock, so that threads working on different
+ * concepts don't wait for each other.
+ * Each shard holds an equal part of the capacity and displaces its own lowest item.
+ * takeNext selects over the items of all shards as one bag would, and topK merges
+ * the top items of all shards.
+ * <p>
+ * Operations which span several calls, like take followed by putBack of the same key,
+ * can be made atomic by synchronizing on lockFor(key).
+ * <p>
+ * The memory doesn't use sharded bags: the concepts in the bags, like their beliefs, and
+ * the other state of the memory are not thread-safe, so the inference can't run with more
+ * than one thread on them, and no speedup of sharding over a global lock has been measured.
+ * The locks of the shards only make the single operations atomic.
+ *
+ * @author Patrick Hammer
+ */
+public class ShardedBag<K,V extends Item<K>> extends Bag<K,V> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Bag<K,V>> shards;
+    /* whether the shards are LevelBags, else PriorityMaps */
+    private final boolean levelShards;
+
+    /**
+     * @param type The storage engine of the shards
+     * @param levels The amount of levels, only used by LEVEL_BAG
+     * @param maxSize The capacity of the bag
+     * @param shards The amount of shards
+     */
+    public ShardedBag(final String type, final int levels, final int maxSize, final int shards) {
+        final int count = Math.max(1, shards);
+        this.shards = new ArrayList<>(count);
+        this.levelShards = LEVEL_BAG.equals(type);
+        for(int i=0; i<count; i++) {
+            final int shardSize = maxSize / count + (i < maxSize % count ? 1 : 0);
+            this.shards.add(Bag.<K,V>make(type, levels, Math.max(1, shardSize)));
+        }
+    }
+
+    private Bag<K,V> shardOf(final K key) {
+        //Fibonacci hashing, the hashes of similar names differ mostly in their lower bits
+        final long h = (key.hashCode() * 0x9E3779B9L) & 0xffffffffL;
+        return shards.get((int) ((h * shards.size()) >>> 32));
+    }
+
+    @Override
+    public Object lockFor(final K key) {
+        return shardOf(key);
+    }
+
+    @Override
+    public V putIn(final V item) {
+        final Bag<K,V> shard = shardOf(item.name());
+        synchronized(shard) {
+            return shard.putIn(item);
+        }
+    }
+
+    @Override
+    public V get(final K key) {
+        final Bag<K,V> shard = shardOf(key);
+        synchronized(shard) {
+            return shard.get(key);
+        }
+    }
+
+    @Override
+    public V take(final K key) {
+        final Bag<K,V> shard = shardOf(key);
+        synchronized(shard) {
+            return shard.take(key);
+        }
+    }
+
+    /**
+     * Takes the item a single bag of the storage engine would select over the items of all shards:
+     * of a PriorityMap the highest item of all shard heads, of a LevelBag the item of a shard chosen
+     * with probability proportional to its level weights, which selects the levels as one LevelBag does.
+     * The shard is chosen on the state of the shards when they were looked at, so it is only exact
+     * as long as no other thread changes the shards until the item is taken.
+     */
+    @Override
+    public V takeNext() {
+        while(true) {
+            final Bag<K,V> shard = levelShards ? weightedShard() : highestShard();
+            if(shard == null) {
+                return null;
+            }
+            synchronized(shard) {
+                final V item = shard.takeNext();
+                if(item != null) {
+                    return item;
+                }
+            }
+            //emptied by another thread meanwhile, choose again
+        }
+    }
+
+    /**
+     * @return The shard holding the highest item, with the decay of lazy forgetting applied, null if all are empty
+     */
+    private Bag<K,V> highestShard() {
+        Bag<K,V> best = null;
+        float bestPriority = -1.0f;
+        for(final Bag<K,V> shard : shards) {
+            synchronized(shard) {
+                final V head = ((PriorityMap<K,V>) shard).highestPriorityItem();
+                if(head != null && head.getPriority() > bestPriority) {
+                    best = shard;
+                    bestPriority = head.getPriority();
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return A shard chosen with probability proportional to its level weights, null if all are empty
+     */
+    private Bag<K,V> weightedShard() {
+        final long[] weights = new long[shards.size()];
+        long total = 0;
+        for(int i=0; i<shards.size(); i++) {
+            synchronized(shards.get(i)) {
+                weights[i] = ((LevelBag<K,V>) shards.get(i)).totalWeight();
+            }
+            total += weights[i];
+        }
+        if(total == 0) {
+            return null;
+        }
+        long r = (long) (Memory.randomNumber.nextDouble() * total);
+        for(int i=0; i<shards.size(); i++) {
+            if(r < weights[i]) {
+                return shards.get(i);
+            }
+            r -= weights[i];
+        }
+        return shards.get(shards.size() - 1);
+    }
+
+    @Override
+    public void topK(final int k, final Collection<V> out) {
+        final List<V> candidates = new ArrayList<>();
+        float[] priorities = new float[0];
+        for(final Bag<K,V> shard : shards) {
+            synchronized(shard) {
+                final int from = candidates.size();
+                shard.topK(k, candidates);
+                //the priorities can change meanwhile, so select on a snapshot of them,
+                //taken with the decay of lazy forgetting applied
+                priorities = Arrays.copyOf(priorities, candidates.size());
+                for(int i=from; i<priorities.length; i++) {
+                    final V item = candidates.get(i);
+                    if(forgetLazily(item)) {
+                        shard.update(item);
+                    }
+                    priorities[i] = item.getPriority();
+                }
+            }
+        }
+        for(int j=0; j<k && j<priorities.length; j++) {
+            int best = -1;
+            for(int i=0; i<priorities.length; i++) {
+                if(priorities[i] >= 0.0f && (best < 0 || priorities[i] > priorities[best])) {
+                    best = i;
+                }
+            }
+            out.add(candidates.get(best));
+            priorities[best] = -1.0f;
+        }
+    }
+
+    @Override
+    public void update(final V item) {
+        final Bag<K,V> shard = shardOf(item.name());
+        synchronized(shard) {
+            shard.update(item);
+        }
+    }
+
+    @Override
+    public V putBack(final V oldItem, final float forgetCycles, final Memory m) {
+        final Bag<K,V> shard = shardOf(oldItem.name());
+        synchronized(shard) {
+            return shard.putBack(oldItem, forgetCycles, m);
+        }
+    }
+
+    @Override
+    public void forget(final K key, final float forgetCycles, final Memory m) {
+        final Bag<K,V> shard = shardOf(key);
+        synchronized(shard) {
+            shard.forget(key, forgetCycles, m);
+        }
+    }
+
+    @Override
+    public void forgetAll(final Collection<V> items, final float forgetCycles, final Memory m) {
+        for(final V item : items) {
+            final Bag<K,V> shard = shardOf(item.name());
+            synchronized(shard) {
+                shard.forgetAll(Collections.singletonList(item), forgetCycles, m);
+            }
+        }
+    }
+
+    @Override
+    public void setLazyForgetting(final float forgetCycles, final Memory m) {
+        super.setLazyForgetting(forgetCycles, m);
+        for(final Bag<K,V> shard : shards) {
+            shard.setLazyForgetting(forgetCycles, m);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for(final Bag<K,V> shard : shards) {
+            synchronized(shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for(final Bag<K,V> shard : shards) {
+            synchronized(shard) {
+                shard.clear();
+            }
+        }
+    }
+
+    /**
+     * @return An iterator over a snapshot of the items
+     */
+    @Override
+    public Iterator<V> iterator() {
+        final List<V> items = new ArrayList<>();
+        for(final Bag<K,V> shard : shards) {
+            synchronized(shard) {
+                for(final V item : shard) {
+                    items.add(item);
+                }
+            }
+        }
+        return items.iterator();
+    }
+}
@@ -0,0 +1,115 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.storage;
+
+import org.opennars.language.CompoundTerm;
+import org.opennars.language.Interval;
+import org.opennars.language.Term;
+import org.opennars.language.Variable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from the atomic and compound subterms of the active concepts
+ * to the terms of the concepts, so that the concepts containing a term can be
+ * found without scanning the concept bag.
+ * <p>
+ * The terms of concepts are added when the concept is created or reactivated
+ * and removed when it leaves the concept bag.
+ * Variables and intervals are not indexed.
+ *
+ * @author Patrick Hammer
+ */
+public class SubtermIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<Term,Set<Term>> index = new HashMap<>();
+
+    /**
+     * @param conceptTerm The term of the concept which became active
+     */
+    public synchronized void add(final Term conceptTerm) {
+        add(conceptTerm, conceptTerm);
+    }
+
+    private void add(final Term subterm, final Term conceptTerm) {
+        if(subterm instanceof Variable || subterm instanceof Interval) {
+            return;
+        }
+        index.computeIfAbsent(subterm, k -> new HashSet<>()).add(conceptTerm);
+        if(subterm instanceof CompoundTerm) {
+            for(final Term t : ((CompoundTerm) subterm).term) {
+                add(t, conceptTerm);
+            }
+        }
+    }
+
+    /**
+     * @param conceptTerm The term of the concept which left the concept bag
+     */
+    public synchronized void remove(final Term conceptTerm) {
+        remove(conceptTerm, conceptTerm);
+    }
+
+    private void remove(final Term subterm, final Term conceptTerm) {
+        if(subterm instanceof Variable || subterm instanceof Interval) {
+            return;
+        }
+        final Set<Term> concepts = index.get(subterm);
+        if(concepts != null && concepts.remove(conceptTerm) && concepts.isEmpty()) {
+            index.remove(subterm);
+        }
+        if(subterm instanceof CompoundTerm) {
+            for(final Term t : ((CompoundTerm) subterm).term) {
+                remove(t, conceptTerm);
+            }
+        }
+    }
+
+    /**
+     * @param subterm The term to search
+     * @return The terms of the active concepts which are or contain the term
+     */
+    public synchronized List<Term> conceptsContaining(final Term subterm) {
+        final Set<Term> concepts = index.get(subterm);
+        return concepts == null ? new ArrayList<>() : new ArrayList<>(concepts);
+    }
+
+    /**
+     * @return The amount of indexed subterms
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized void clear() {
+        index.clear();
+    }
+}
@@ -37,6 +37,8 @@ import java.text.ParseException;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -82,4 +84,21 @@ public class ApplySubstituteTest {
         
         assertTrue(c!=null);
     }
+
+    @Test
+    public void testUnchangedTermsShared() throws Narsese.InvalidInputException {
+        final Map<Term,Term> h = new HashMap();
+        h.put(np.parseTerm("$1"), np.parseTerm("x"));
+        final CompoundTerm t = (CompoundTerm) np.parseTerm("<(&&,<$1 --> a>,<#2 --> b>) ==> <$1 --> c>>");
+        final CompoundTerm c = t.applySubstituteToCompound(h);
+        assertEquals(np.parseTerm("<(&&,<x --> a>,<#2 --> b>) ==> <x --> c>>"), c);
+        //only the compounds containing $1 are rebuilt
+        final Term unchanged = np.parseTerm("<#2 --> b>");
+        final CompoundTerm before = (CompoundTerm) t.term[0];
+        final CompoundTerm after = (CompoundTerm) c.term[0];
+        assertSame(before.term[before.term[0].equals(unchanged) ? 0 : 1], after.term[after.term[0].equals(unchanged) ? 0 : 1]);
+        //nothing to substitute in the term
+        final CompoundTerm other = (CompoundTerm) np.parseTerm("<(*,#1,b) --> c>");
+        assertSame(other, other.applySubstituteToCompound(h));
+    }
 }
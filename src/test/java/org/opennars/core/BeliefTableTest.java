@@ -0,0 +1,160 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Concept;
+import org.opennars.entity.Sentence;
+import org.opennars.entity.Stamp;
+import org.opennars.entity.Stamp.BaseEntry;
+import org.opennars.entity.Task;
+import org.opennars.entity.TruthValue;
+import org.opennars.inference.LocalRules;
+import org.opennars.io.Symbols;
+import org.opennars.language.Tense;
+import org.opennars.language.Term;
+import org.opennars.main.Nar;
+import org.opennars.main.Parameters;
+import org.opennars.storage.BeliefTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.opennars.inference.BudgetFunctions.rankBelief;
+
+public class BeliefTableTest {
+    private final Parameters narParameters = new Parameters();
+    private final Term term = new Term("bird");
+    private long serial = 0;
+
+    private Task belief(final float frequency, final float confidence) {
+        final Stamp stamp = new Stamp(0, null, new BaseEntry(0, serial++), narParameters.DURATION);
+        final Sentence sentence = new Sentence(term, Symbols.JUDGMENT_MARK, new TruthValue(frequency, confidence, narParameters), stamp);
+        return new Task(sentence, new BudgetValue(0.5f, 0.5f, 0.5f, narParameters), Task.EnumType.INPUT);
+    }
+
+    /** the list based table the BeliefTable replaced */
+    private static Task addToList(final Task newTask, final List<Task> table, final int capacity, final boolean rankTruthExpectation) {
+        final float rank1 = rankBelief(newTask.sentence, rankTruthExpectation);
+        int i;
+        for (i = 0; i < table.size(); i++) {
+            if (rank1 >= rankBelief(table.get(i).sentence, rankTruthExpectation)) {
+                table.add(i, newTask);
+                break;
+            }
+        }
+        if (table.size() > capacity) {
+            return table.remove(table.size() - 1);
+        }
+        if (table.size() < capacity && i == table.size()) {
+            table.add(newTask);
+        }
+        return null;
+    }
+
+    @Test
+    public void testSameOrderAsList() {
+        final Random rnd = new Random(1);
+        for (final boolean mixed : new boolean[] { false, true }) {
+            final BeliefTable table = new BeliefTable();
+            final List<Task> list = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                final Task t = belief(rnd.nextInt(10) / 10.0f, rnd.nextInt(10) / 10.0f);
+                final boolean byExpectation = mixed && rnd.nextBoolean();
+                assertEquals(addToList(t, list, 28, byExpectation), table.add(t, 28, byExpectation));
+                assertEquals(list, table);
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateRejected() {
+        final BeliefTable table = new BeliefTable();
+        final Task t = belief(1.0f, 0.9f);
+        table.add(t, 28, false);
+        table.add(belief(1.0f, 0.5f), 28, false);
+        final Task duplicate = new Task(new Sentence(term, Symbols.JUDGMENT_MARK, t.sentence.truth.clone(), t.sentence.stamp.clone()),
+                new BudgetValue(0.5f, 0.5f, 0.5f, narParameters), Task.EnumType.INPUT);
+        assertNull(table.add(duplicate, 28, false));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testRerank() {
+        final BeliefTable table = new BeliefTable();
+        final Task high = belief(1.0f, 0.9f);
+        final Task low = belief(1.0f, 0.8f);
+        table.add(high, 28, false);
+        table.add(low, 28, false);
+        high.sentence.discountConfidence(narParameters);
+        table.rerank();
+        //the discounted belief is first and ranks lower than the new one now
+        final Task middle = belief(1.0f, 0.6f);
+        table.add(middle, 28, false);
+        assertEquals(middle, table.get(0));
+        assertEquals(high, table.get(1));
+    }
+
+    @Test
+    public void testEventsByOccurrence() throws Exception {
+        final Nar nar = new Nar();
+        nar.cycles(1000);
+        final Concept concept = new Concept(new BudgetValue(0.5f, 0.5f, 0.5f, narParameters), term, nar.memory);
+        final Random rnd = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            final Stamp stamp = rnd.nextInt(10) == 0 ?
+                    new Stamp(0, null, new BaseEntry(0, serial++), narParameters.DURATION) :
+                    new Stamp(rnd.nextInt(2000), Tense.Present, new BaseEntry(0, serial++), narParameters.DURATION);
+            final Sentence sentence = new Sentence(term, Symbols.JUDGMENT_MARK, new TruthValue(rnd.nextFloat(), 0.9f * rnd.nextFloat(), narParameters), stamp);
+            concept.beliefs.add(new Task(sentence, new BudgetValue(0.5f, 0.5f, 0.5f, narParameters), Task.EnumType.INPUT), 200, false);
+        }
+        final BeliefTable table = concept.beliefs;
+        int events = 0;
+        for (final Task t : table) {
+            events += t.sentence.isEternal() ? 0 : 1;
+        }
+        assertEquals(events, table.eventCount());
+        for (int i = 1; i < table.eventCount(); i++) {
+            assertTrue(table.occurrenceAt(i-1) <= table.occurrenceAt(i));
+        }
+        for (int i = 0; i < 100; i++) {
+            final Stamp stamp = i == 0 ?
+                    new Stamp(0, null, new BaseEntry(0, serial++), narParameters.DURATION) :
+                    new Stamp(rnd.nextInt(2000), Tense.Present, new BaseEntry(0, serial++), narParameters.DURATION);
+            final Task query = new Task(new Sentence(term, Symbols.QUESTION_MARK, null, stamp),
+                    new BudgetValue(0.5f, 0.5f, 0.5f, narParameters), Task.EnumType.INPUT);
+            float best = 0;
+            for (final Task t : table) {
+                best = Math.max(best, LocalRules.solutionQuality(true, query, t.sentence, nar.memory, nar));
+            }
+            final Task selected = concept.selectCandidate(query, table, nar);
+            assertEquals(best, LocalRules.solutionQuality(true, query, selected.sentence, nar.memory, nar), 0.0f);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.Concept;
+import org.opennars.io.Narsese;
+import org.opennars.language.Term;
+import org.opennars.main.Nar;
+import org.opennars.storage.ConceptStore;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConceptStoreTest {
+
+    @Test
+    public void testConceptKeepsBeliefs() throws Exception {
+        final Nar nar = new Nar();
+        nar.addInput("<bird --> animal>.");
+        nar.cycles(10);
+        final Term term = new Narsese(nar).parseTerm("<bird --> animal>");
+        final Concept concept = nar.memory.concept(term);
+        assertNotNull(concept);
+        assertFalse(concept.beliefs.isEmpty());
+
+        final ConceptStore store = new ConceptStore(nar.memory, System.getProperty("java.io.tmpdir"));
+        store.put(concept);
+        assertTrue(store.contains(term));
+        final Concept restored = store.take(term);
+        assertEquals(term, restored.getTerm());
+        assertEquals(concept.beliefs.size(), restored.beliefs.size());
+        assertEquals(concept.beliefs.get(0).sentence, restored.beliefs.get(0).sentence);
+        assertSame(nar.memory, restored.memory);
+        assertNull(store.take(term));
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+    @Test
+    public void testRestoredConceptSharesTheTerm() throws Exception {
+        final Nar nar = new Nar();
+        nar.addInput("<(*,$1,bird) --> likes>.");
+        nar.addInput("<(*,$1,bird) --> likes>. %0.0;0.5%");
+        nar.cycles(10);
+        final Term term = new Narsese(nar).parseTerm("<(*,$1,bird) --> likes>");
+        final Concept concept = nar.memory.concept(term);
+        assertTrue(concept.beliefs.size() > 1);
+
+        final ConceptStore store = new ConceptStore(nar.memory, System.getProperty("java.io.tmpdir"));
+        store.put(concept);
+        final Concept restored = store.take(term);
+        //the concept gets the term it is looked up with, and isn't in a bag yet
+        assertSame(term, restored.getTerm());
+        assertEquals(-1, restored.slot);
+        assertEquals(concept.beliefs.size(), restored.beliefs.size());
+        for(int i=0; i<concept.beliefs.size(); i++) {
+            assertEquals(concept.beliefs.get(i).sentence, restored.beliefs.get(i).sentence);
+            assertEquals(concept.beliefs.get(i).sentence.truth, restored.beliefs.get(i).sentence.truth);
+            assertTrue(concept.beliefs.get(i).sentence.stamp.equals(restored.beliefs.get(i).sentence.stamp, true, true, true));
+        }
+        store.close();
+    }
+
+    @Test
+    public void testCompactionKeepsConcepts() throws Exception {
+        final Nar nar = new Nar();
+        nar.addInput("<bird --> animal>.");
+        nar.addInput("<robin --> bird>.");
+        nar.cycles(10);
+        final Term kept = new Narsese(nar).parseTerm("<bird --> animal>");
+        final Term rewritten = new Narsese(nar).parseTerm("<robin --> bird>");
+        final ConceptStore store = new ConceptStore(nar.memory, System.getProperty("java.io.tmpdir"));
+        store.put(nar.memory.concept(kept));
+        //rewriting a concept over and over fills the log with dead records, so that it gets compacted several times
+        final Concept concept = nar.memory.concept(rewritten);
+        for(int i=0; i<20000; i++) {
+            store.put(concept);
+        }
+        assertEquals(2, store.size());
+        assertEquals(kept, store.take(kept).getTerm());
+        assertEquals(rewritten, store.take(rewritten).getTerm());
+        store.close();
+    }
+
+    @Test
+    public void testTermsWithTheSameKeyKeepTheirRecords() throws Exception {
+        final Nar nar = new Nar();
+        nar.addInput("<bird --> animal>.");
+        nar.addInput("<robin --> bird>.");
+        nar.cycles(10);
+        final Term first = new Narsese(nar).parseTerm("<bird --> animal>");
+        final Term second = new Narsese(nar).parseTerm("<robin --> bird>");
+        //all the terms collide
+        final ConceptStore store = new ConceptStore(nar.memory, System.getProperty("java.io.tmpdir")) {
+            @Override
+            protected long key(final Term term) {
+                return 1;
+            }
+        };
+        store.put(nar.memory.concept(first));
+        store.put(nar.memory.concept(second));
+        store.put(nar.memory.concept(first));
+        assertEquals(2, store.size());
+        assertTrue(store.contains(second));
+        assertEquals(second, store.take(second).getTerm());
+        assertFalse(store.contains(second));
+        assertEquals(first, store.take(first).getTerm());
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+    @Test
+    public void testStoredConceptsAreSavedWithTheMemory() throws Exception {
+        final Nar nar = new Nar();
+        nar.addInput("<bird --> animal>.");
+        nar.cycles(10);
+        final Term term = new Narsese(nar).parseTerm("<bird --> animal>");
+        nar.narParameters.CONCEPT_STORE_DIRECTORY = System.getProperty("java.io.tmpdir");
+        nar.memory.conceptStore = new ConceptStore(nar.memory, nar.narParameters.CONCEPT_STORE_DIRECTORY);
+        nar.memory.conceptStore.put(nar.memory.concept(term));
+        final File file = File.createTempFile("stored", ".nars");
+        file.deleteOnExit();
+        nar.SaveToFile(file.getPath());
+        nar.memory.conceptStore.close();
+        //the loaded memory has a store of its own with the concepts
+        final Nar loaded = Nar.LoadFromFile(file.getPath());
+        final Concept restored = loaded.memory.conceptStore.take(term);
+        assertEquals(term, restored.getTerm());
+        assertSame(loaded.memory, restored.memory);
+        assertFalse(restored.beliefs.isEmpty());
+        loaded.memory.conceptStore.close();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.control.CycleScheduler;
+import org.opennars.io.events.Events;
+import org.opennars.main.Nar;
+import org.opennars.main.Parameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CycleSchedulerTest {
+
+    @Test
+    public void testFixedAmounts() {
+        final Parameters narParameters = new Parameters();
+        final CycleScheduler scheduler = new CycleScheduler();
+        final long deadline = scheduler.deadline(narParameters);
+        assertEquals(0, deadline);
+        scheduler.premisesFired(3, 1000000000L);
+        assertEquals(narParameters.TASKS_MAX_FIRED, scheduler.tasksToFire(narParameters, deadline));
+        assertEquals(narParameters.PREMISES_MAX_FIRED, scheduler.premisesToFire(narParameters, deadline));
+        assertEquals(3, scheduler.getLastPremisesFired());
+    }
+
+    @Test
+    public void testAmountsAdaptToCost() {
+        final Parameters narParameters = new Parameters();
+        narParameters.CYCLE_TIME_BUDGET = 1000.0f;
+        final CycleScheduler scheduler = new CycleScheduler();
+        //a premise costs 100ms, a task 200ms
+        scheduler.premisesFired(10, 1000000000L);
+        scheduler.tasksFired(5, 1000000000L);
+        final long deadline = scheduler.deadline(narParameters);
+        final int premises = scheduler.premisesToFire(narParameters, deadline);
+        assertTrue(premises <= 10 && premises >= 9);
+        //half of the budget for the tasks
+        final int tasks = scheduler.tasksToFire(narParameters, deadline);
+        assertTrue(tasks <= 2 && tasks >= 1);
+        //the time is spent, but at least one premise is fired
+        assertEquals(1, scheduler.premisesToFire(narParameters, System.nanoTime()));
+    }
+
+    @Test
+    public void testBudgetedCycles() throws Exception {
+        final Nar nar = new Nar();
+        nar.narParameters.CYCLE_TIME_BUDGET = 5.0f;
+        nar.addInput("<a --> b>.");
+        nar.addInput("<b --> c>.");
+        nar.cycles(20);
+        assertTrue(nar.memory.scheduler.getPremisesPerCycle() > 0.0);
+    }
+
+    @Test
+    public void testBudgetedCyclesFireAtMostMaxPremises() throws Exception {
+        final Nar nar = new Nar();
+        nar.narParameters.CYCLE_TIME_BUDGET = 1000.0f;
+        nar.narParameters.PREMISES_MAX_FIRED = 2;
+        final List<Integer> fired = new ArrayList<>();
+        nar.on(Events.PremisesFired.class, (event, args) -> fired.add((Integer) args[0]));
+        nar.addInput("<a --> b>.");
+        nar.addInput("<b --> c>.");
+        nar.addInput("<c --> d>.");
+        nar.cycles(20);
+        assertEquals(20, fired.size());
+        for(final int amount : fired) {
+            assertTrue(amount <= 2);
+        }
+        assertEquals((int) fired.get(19), nar.memory.scheduler.getLastPremisesFired());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Item;
+import org.opennars.main.Nar;
+import org.opennars.main.Parameters;
+import org.opennars.storage.Bag;
+import org.opennars.storage.LevelBag;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LevelBagTest {
+    final Parameters narParameters = new Parameters();
+
+    class TestItem extends Item<String> {
+        final String key;
+
+        TestItem(final String key, final float priority) {
+            this(key, priority, 0.5f);
+        }
+
+        TestItem(final String key, final float priority, final float durability) {
+            super(new BudgetValue(priority, durability, 0.5f, narParameters));
+            this.key = key;
+        }
+
+        @Override
+        public String name() {
+            return key;
+        }
+    }
+
+    @Test
+    public void testDisplacesLowestLevel() {
+        final Bag<String,TestItem> bag = new LevelBag<>(10, 3);
+        bag.putIn(new TestItem("a", 0.55f));
+        bag.putIn(new TestItem("b", 0.05f));
+        bag.putIn(new TestItem("c", 0.95f));
+        assertEquals("b", bag.putIn(new TestItem("d", 0.35f)).name());
+        assertNull(bag.get("b"));
+        assertEquals(3, bag.size());
+    }
+
+    @Test
+    public void testPutInQueuedItemReprioritizes() {
+        final Bag<String,TestItem> bag = new LevelBag<>(10, 10);
+        final TestItem a = new TestItem("a", 0.05f);
+        bag.putIn(a);
+        a.setPriority(0.95f);
+        assertNull(bag.putIn(a));
+        assertEquals(1, bag.size());
+        assertSame(a, bag.takeNext());
+        assertNull(bag.takeNext());
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        final Bag<String,TestItem> bag = new LevelBag<>(10, 0);
+        final TestItem a = new TestItem("a", 0.5f);
+        assertSame(a, bag.putIn(a));
+        assertEquals(0, bag.size());
+        assertNull(bag.get("a"));
+    }
+
+    @Test
+    public void testLazyForgettingBeforeDisplacement() throws Exception {
+        final Nar nar = new Nar();
+        final Bag<String,TestItem> bag = new LevelBag<>(10, 2);
+        bag.setLazyForgetting(10, nar.memory);
+        final TestItem fast = new TestItem("fast", 0.95f, 0.1f);
+        bag.putBack(fast, 10, nar.memory);
+        bag.putBack(new TestItem("slow", 0.55f, 0.9f), 10, nar.memory);
+        nar.cycles(20);
+        //fast is still in level 9, but it decayed to level 0
+        assertSame(fast, bag.putIn(new TestItem("new", 0.35f)));
+        assertEquals(2, bag.size());
+    }
+
+    @Test
+    public void testSelectionProportionalToPriority() {
+        final Bag<String,TestItem> bag = new LevelBag<>(10, 10);
+        final TestItem high = new TestItem("high", 0.95f);
+        final TestItem low = new TestItem("low", 0.05f);
+        final Map<String,Integer> selected = new HashMap<>();
+        for(int i=0; i<10000; i++) {
+            bag.putIn(high);
+            bag.putIn(low);
+            final TestItem item = bag.takeNext();
+            selected.put(item.name(), selected.getOrDefault(item.name(), 0) + 1);
+        }
+        //level 9 against level 0: 10 to 1
+        final float ratio = (float) selected.get("high") / selected.get("low");
+        assertTrue(ratio > 7.0f && ratio < 13.0f);
+    }
+
+    @Test
+    public void testRandomOperationsKeepItems() {
+        final Random rnd = new Random(1);
+        final Bag<String,TestItem> bag = new LevelBag<>(7, 20);
+        final Map<String,TestItem> reference = new HashMap<>();
+        for(int i=0; i<20000; i++) {
+            final int op = rnd.nextInt(4);
+            final String key = "i" + rnd.nextInt(40);
+            if(op <= 1 && !reference.containsKey(key)) {
+                final TestItem item = new TestItem(key, rnd.nextFloat());
+                reference.put(key, item);
+                final TestItem displaced = bag.putIn(item);
+                if(displaced != null) {
+                    assertSame(displaced, reference.remove(displaced.name()));
+                }
+            } else if(op == 2) {
+                final TestItem item = bag.takeNext();
+                if(item != null) {
+                    assertSame(item, bag.take(item.name()));
+                    assertSame(item, reference.remove(item.name()));
+                }
+            } else if(op == 3) {
+                assertSame(reference.remove(key), bag.take(key));
+            }
+            assertEquals(reference.size(), bag.size());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.TruthValue;
+import org.opennars.inference.PackedTruth;
+import org.opennars.inference.TruthFunctions;
+import org.opennars.main.Parameters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedTruthTest {
+    private final Parameters narParameters = new Parameters();
+
+    @Test
+    public void testPacking() {
+        final long t = PackedTruth.truth(0.25f, 0.75f, true, narParameters);
+        assertEquals(0.25f, PackedTruth.frequency(t), 0.0f);
+        assertEquals(0.75f, PackedTruth.confidence(t), 0.0f);
+        assertTrue(PackedTruth.analytic(t));
+        assertFalse(PackedTruth.analytic(PackedTruth.truth(0.25f, 0.75f, narParameters)));
+        assertEquals(1.0f - narParameters.TRUTH_EPSILON, PackedTruth.confidence(PackedTruth.truth(1.0f, 1.0f, narParameters)), 0.0f);
+        final TruthValue v = new TruthValue(0.25f, 0.75f, true, narParameters);
+        assertEquals(t, PackedTruth.pack(v));
+        assertEquals(v, PackedTruth.unpack(t, narParameters));
+        assertEquals(v.getExpectation(), PackedTruth.expectation(t), 0.0f);
+    }
+
+    @Test
+    public void testRevisionWithoutEvidence() {
+        final long none = PackedTruth.truth(0.5f, 0.0f, narParameters);
+        final long t = PackedTruth.revision(none, none, narParameters);
+        assertTrue(Float.isNaN(PackedTruth.frequency(t)));
+        assertFalse(PackedTruth.analytic(t));
+    }
+
+    @Test
+    public void testSameAsTruthValues() {
+        final TruthValue a = new TruthValue(0.8f, 0.7f, narParameters);
+        final TruthValue b = new TruthValue(0.6f, 0.9f, narParameters);
+        final long pa = PackedTruth.pack(a), pb = PackedTruth.pack(b);
+        assertEquals(PackedTruth.pack(TruthFunctions.deduction(a, b, narParameters)), PackedTruth.deduction(pa, pb, narParameters));
+        assertEquals(PackedTruth.pack(TruthFunctions.comparison(a, b, narParameters)), PackedTruth.comparison(pa, pb, narParameters));
+        assertEquals(PackedTruth.pack(TruthFunctions.revision(a, b, narParameters)), PackedTruth.revision(pa, pb, narParameters));
+        final TruthValue analytic = TruthFunctions.deduction(a, narParameters.reliance, narParameters);
+        assertTrue(analytic.getAnalytic());
+        assertEquals(0.0f, TruthFunctions.abduction(analytic, b, narParameters).getConfidence(), 0.0f);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.control.DerivationPool;
+import org.opennars.control.GeneralInferenceControl;
+import org.opennars.entity.Concept;
+import org.opennars.entity.Task;
+import org.opennars.interfaces.Timable;
+import org.opennars.io.Narsese;
+import org.opennars.io.events.OutputHandler.EXE;
+import org.opennars.language.Term;
+import org.opennars.main.Nar;
+import org.opennars.storage.Memory;
+import org.opennars.storage.PriorityMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PremiseQueueTest {
+
+    @Test
+    public void testEqualPremisesAreMerged() throws Exception {
+        final Nar nar = new Nar();
+        nar.narParameters.PREMISE_MERGING = true;
+        final Memory mem = nar.memory;
+        final Task task = new Narsese(nar).parseTask("<a --> b>.");
+        final Term term = task.getTerm();
+        final Concept concept = mem.conceptualize(task);
+        final Term subject = new Narsese(nar).parseTerm("a");
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        assertEquals(1, mem.premiseQueue.size());
+        assertEquals(1, mem.duplicatePremises.get());
+        //a virtual premise, and a temporal one, are different premises:
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, subject, concept, null, false);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, true);
+        assertEquals(3, mem.premiseQueue.size());
+        //once derived, the premise can be added again:
+        nar.cycles(1);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        assertEquals(1, mem.duplicatePremises.get());
+    }
+
+    @Test
+    public void testEqualPremisesAreKeptWithoutMerging() throws Exception {
+        final Nar nar = new Nar();
+        final Memory mem = nar.memory;
+        final Task task = new Narsese(nar).parseTask("<a --> b>.");
+        final Term term = task.getTerm();
+        final Concept concept = mem.conceptualize(task);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        assertEquals(2, mem.premiseQueue.size());
+        assertEquals(0, mem.duplicatePremises.get());
+        //both are derived, and their key is no longer indexed:
+        final GeneralInferenceControl.PremiseKey key = mem.premiseQueue.iterator().next().name();
+        nar.cycles(1);
+        assertEquals(0, mem.premiseQueue.size());
+        assertNull(mem.premiseQueue.get(key));
+    }
+
+    @Test
+    public void testPremisesAreReused() throws Exception {
+        final Nar nar = new Nar();
+        nar.narParameters.PREMISE_MERGING = true;
+        final Memory mem = nar.memory;
+        final DerivationPool pool = mem.derivationPool();
+        final Task task = new Narsese(nar).parseTask("<a --> b>.");
+        final Term term = task.getTerm();
+        final Concept concept = mem.conceptualize(task);
+        final Term subject = new Narsese(nar).parseTerm("a");
+        final Concept subjectConcept = mem.conceptualize(task.budget, subject);
+        final int pooled = pool.premises();
+        //the merged premise is given back to the pool, and used for the next one:
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        assertEquals(pooled + 1, pool.premises());
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, subject, subjectConcept, null, false);
+        assertEquals(pooled, pool.premises());
+        assertEquals(2, mem.premiseQueue.size());
+        //and the executed ones, with their derivation contexts:
+        nar.cycles(1);
+        assertEquals(0, mem.premiseQueue.size());
+        assertTrue(pool.premises() >= pooled + 2);
+        assertTrue(pool.contexts() >= 1);
+    }
+
+    @Test
+    public void testReusedPremiseKeepsTheKeysOfTheQueue() throws Exception {
+        final Nar nar = new Nar();
+        final Memory mem = nar.memory;
+        final DerivationPool pool = mem.derivationPool();
+        final Task task = new Narsese(nar).parseTask("<a --> b>.");
+        final Term term = task.getTerm();
+        final Concept concept = mem.conceptualize(task);
+        final Term subject = new Narsese(nar).parseTerm("a");
+        final PriorityMap<GeneralInferenceControl.PremiseKey,GeneralInferenceControl.Premises> queue =
+            (PriorityMap<GeneralInferenceControl.PremiseKey,GeneralInferenceControl.Premises>) mem.premiseQueue;
+        //two equal premises, the map holds the key of the first and the second premise
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, term, concept, task.sentence, false);
+        assertEquals(2, queue.size());
+        GeneralInferenceControl.Premises first = null;
+        for(final GeneralInferenceControl.Premises p : queue) {
+            if(queue.get(p.name()) != p) {
+                first = p;
+            }
+        }
+        //the first is taken while the second still waits, and is reused for another premise:
+        first.budget.setPriority(1.0f);
+        queue.update(first);
+        assertSame(first, queue.takeNext());
+        pool.release(first);
+        GeneralInferenceControl.fireBelief(mem, nar, task, term, subject, concept, null, false);
+        final GeneralInferenceControl.Premises second = queue.takeNext();
+        assertSame(second, queue.get(second.name()));
+        queue.take(second.name());
+        //only the virtual premise is queued, and the map holds no key which can't be reached anymore
+        assertEquals(1, queue.size());
+        assertEquals(queue.size(), queue.theMap.size());
+    }
+
+    @Test
+    public void testPremisesAfterAFailedOneAreKept() throws Exception {
+        final Nar nar = new Nar();
+        final Memory mem = nar.memory;
+        final DerivationPool pool = mem.derivationPool();
+        final Task task = new Narsese(nar).parseTask("<a --> b>.");
+        final Term term = task.getTerm();
+        final Concept concept = mem.conceptualize(task);
+        final Term subject = new Narsese(nar).parseTerm("a");
+        final Term predicate = new Narsese(nar).parseTerm("b");
+        final Timable failing = () -> {
+            throw new IllegalStateException("premise failed");
+        };
+        final List<GeneralInferenceControl.Premises> batch = new ArrayList<>();
+        batch.add(pool.premise(failing, task, term, term, concept, task.sentence, false));
+        batch.add(pool.premise(nar, task, term, subject, concept, null, false));
+        batch.add(pool.premise(nar, task, term, predicate, concept, null, false));
+        final int pooled = pool.premises();
+        try {
+            GeneralInferenceControl.executePremises(mem, nar, batch);
+            fail();
+        } catch (final IllegalStateException ex) {
+            assertEquals("premise failed", ex.getMessage());
+        }
+        //the failed premise is given back to the pool, the others wait in the queue
+        assertEquals(pooled + 1, pool.premises());
+        assertEquals(2, mem.premiseQueue.size());
+    }
+
+    @Test
+    public void testDerivedGoalWithoutContextIsExecuted() throws Exception {
+        final Nar nar = new Nar();
+        final AtomicInteger executions = new AtomicInteger();
+        nar.on(EXE.class, (event, args) -> executions.incrementAndGet());
+        //like a plugin which derives a task, outside of any premise:
+        final Task goal = new Narsese(nar).parseTask("(^break,{SELF})! :|:");
+        nar.memory.addNewTask(goal, "Derived (test)");
+        assertEquals(1, executions.get());
+        assertNull(nar.memory.derivationPool().current());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.Concept;
+import org.opennars.entity.Task;
+import org.opennars.io.Narsese;
+import org.opennars.main.Nar;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PremiseWorkersTest {
+
+    /* questions and goals, answered by premises which run in parallel, and variables introduced in random order */
+    final String[] input = new String[] {
+        "<a --> b>.", "<b --> c>.", "<c --> d>.", "<a --> d>?", "<?x --> d>?",
+        "<(&/,<#1 --> A>,+10,(^pick,{SELF},#1),+10) =/> <a --> B>>.", "<a --> A>. :|:", "<a --> B>!"
+    };
+
+    /* a Nar with the default config, except for the amount of premise workers */
+    static Nar narWithPremiseWorkers(final int workers) throws Exception {
+        final String config;
+        try (InputStream in = PremiseWorkersTest.class.getResourceAsStream("/config/defaultConfig.xml")) {
+            config = new Scanner(in, "UTF-8").useDelimiter("\\A").next();
+        }
+        final File file = File.createTempFile("premiseWorkers", ".xml");
+        file.deleteOnExit();
+        Files.write(file.toPath(), config.replace("name=\"PREMISE_WORKERS\" value=\"1\"", "name=\"PREMISE_WORKERS\" value=\"" + workers + "\"")
+                                         .getBytes(StandardCharsets.UTF_8));
+        return new Nar(1, file.getAbsolutePath());
+    }
+
+    /* the beliefs and the cycling tasks of the memory, in an order which doesn't depend on the bags */
+    static List<String> derivations(final Nar nar) {
+        final List<String> ret = new ArrayList<>();
+        for(final Concept c : nar.memory) {
+            for(final Task belief : c.beliefs) {
+                ret.add(belief.sentence.toString());
+            }
+        }
+        for(final Object t : nar.memory.cyclingTasks) {
+            final Task task = (Task) t;
+            ret.add(task.sentence + " " + task.budget + " " + task.getBestSolution());
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    @Test
+    public void testParallelPremisesDerive() throws Exception {
+        final Nar nar = narWithPremiseWorkers(2);
+        assertNotNull(nar.memory.premiseWorkers);
+        nar.addInput("<a --> b>.");
+        nar.addInput("<b --> c>.");
+        nar.cycles(50);
+        final Concept conclusion = nar.memory.concept(new Narsese(nar).parseTerm("<a --> c>"));
+        assertNotNull(conclusion);
+        assertFalse(conclusion.beliefs.isEmpty());
+        nar.memory.premiseWorkers.shutdown();
+    }
+
+    @Test
+    public void testParallelSameAsSequential() throws Exception {
+        //one worker executes the premises one after the other
+        final Nar sequential = narWithPremiseWorkers(4);
+        sequential.memory.premiseWorkers.shutdown();
+        sequential.memory.premiseWorkers = new ForkJoinPool(1);
+        for(final String s : input) {
+            sequential.addInput(s);
+        }
+        sequential.cycles(300);
+        final List<String> expected = derivations(sequential);
+        sequential.memory.premiseWorkers.shutdown();
+        assertTrue(expected.size() > input.length);
+
+        for(int run=0; run<5; run++) {
+            final Nar parallel = narWithPremiseWorkers(4);
+            for(final String s : input) {
+                parallel.addInput(s);
+            }
+            parallel.cycles(300);
+            assertEquals(expected, derivations(parallel));
+            parallel.memory.premiseWorkers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import com.google.common.collect.MinMaxPriorityQueue;
+import org.junit.Test;
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Item;
+import org.opennars.entity.Task;
+import org.opennars.io.Narsese;
+import org.opennars.main.Nar;
+import org.opennars.main.Parameters;
+import org.opennars.storage.PriorityMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PriorityMapTest {
+    final Parameters narParameters = new Parameters();
+
+    class TestItem extends Item<String> {
+        final String key;
+
+        TestItem(final String key, final float priority) {
+            this(key, priority, 0.5f);
+        }
+
+        TestItem(final String key, final float priority, final float durability) {
+            super(new BudgetValue(priority, durability, 0.5f, narParameters));
+            this.key = key;
+        }
+
+        @Override
+        public String name() {
+            return key;
+        }
+    }
+
+    static float lowest(final Map<String,TestItem> items) {
+        float ret = Float.MAX_VALUE;
+        for(final TestItem item : items.values()) {
+            ret = Math.min(ret, item.getPriority());
+        }
+        return ret;
+    }
+
+    static float highest(final Map<String,TestItem> items) {
+        float ret = -1.0f;
+        for(final TestItem item : items.values()) {
+            ret = Math.max(ret, item.getPriority());
+        }
+        return ret;
+    }
+
+    @Test
+    public void testTakeHighestPriorityItem() {
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(10);
+        map.putIn(new TestItem("a", 0.3f));
+        map.putIn(new TestItem("b", 0.9f));
+        map.putIn(new TestItem("c", 0.1f));
+        map.putIn(new TestItem("d", 0.5f));
+        assertEquals("b", map.takeHighestPriorityItem().name());
+        assertEquals("d", map.takeHighestPriorityItem().name());
+        assertEquals("c", map.take("c").name());
+        assertEquals("a", map.takeHighestPriorityItem().name());
+        assertNull(map.takeHighestPriorityItem());
+    }
+
+    @Test
+    public void testPutInQueuedItemReprioritizes() {
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(10);
+        final TestItem a = new TestItem("a", 0.3f);
+        map.putIn(a);
+        map.putIn(new TestItem("b", 0.5f));
+        a.setPriority(0.9f);
+        assertNull(map.putIn(a));
+        assertEquals(2, map.size());
+        assertSame(a, map.takeHighestPriorityItem());
+        assertEquals("b", map.takeHighestPriorityItem().name());
+        assertNull(map.takeHighestPriorityItem());
+    }
+
+    @Test
+    public void testDisplacingAnItemKeepsTheEqualItemOfItsKey() {
+        final PriorityMap<String,TestItem> bag = new PriorityMap<>(2);
+        final TestItem older = new TestItem("a", 0.1f);
+        final TestItem newer = new TestItem("a", 0.5f);
+        bag.putIn(older);
+        bag.putIn(newer);
+        assertSame(newer, bag.get("a"));
+        assertSame(older, bag.putIn(new TestItem("b", 0.9f)));
+        assertSame(newer, bag.get("a"));
+        assertSame(newer, bag.take("a"));
+        assertEquals(1, bag.size());
+    }
+
+    @Test
+    public void testZeroCapacity() {
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(0);
+        final TestItem a = new TestItem("a", 0.3f);
+        assertSame(a, map.putIn(a));
+        assertEquals(0, map.size());
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    public void testRandomOperationsKeepOrder() {
+        final Random rnd = new Random(1);
+        final int maxSize = 20;
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(maxSize);
+        final Map<String,TestItem> reference = new HashMap<>();
+        for(int i=0; i<20000; i++) {
+            final int op = rnd.nextInt(5);
+            final String key = "i" + rnd.nextInt(40);
+            if(op <= 1 && !reference.containsKey(key)) {
+                final TestItem item = new TestItem(key, rnd.nextFloat());
+                final float lowest = lowest(reference);
+                reference.put(key, item);
+                final TestItem displaced = map.putIn(item);
+                if(displaced != null) {
+                    assertEquals(lowest, displaced.getPriority(), 0.0f);
+                    reference.remove(displaced.name());
+                }
+            } else if(op == 2 && !reference.isEmpty()) {
+                final float highest = highest(reference);
+                final TestItem item = map.takeHighestPriorityItem();
+                assertEquals(highest, item.getPriority(), 0.0f);
+                map.take(item.name());
+                reference.remove(item.name());
+            } else if(op == 3) {
+                assertSame(reference.remove(key), map.take(key));
+            } else if(op == 4 && !reference.isEmpty()) {
+                final List<TestItem> items = new ArrayList<>(reference.values());
+                final TestItem item = items.get(rnd.nextInt(items.size()));
+                item.setPriority(rnd.nextFloat());
+                map.update(item);
+            }
+            assertEquals(reference.size(), map.size());
+        }
+    }
+
+    @Test
+    public void testSelectionOrderOfGuavaQueue() {
+        //the map replaced a Guava MinMaxPriorityQueue, which decides between equal priorities the same way
+        final Random rnd = new Random(3);
+        final int maxSize = 20;
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(maxSize);
+        final MinMaxPriorityQueue<TestItem> queue = MinMaxPriorityQueue
+                .orderedBy(Comparator.comparing(TestItem::getPriority))
+                .create();
+        final Map<String,TestItem> items = new HashMap<>();
+        for(int i=0; i<20000; i++) {
+            final int op = rnd.nextInt(4);
+            final String key = "i" + rnd.nextInt(40);
+            if(op <= 1 && !items.containsKey(key)) {
+                final TestItem item = new TestItem(key, rnd.nextInt(5) / 4.0f);
+                items.put(key, item);
+                TestItem displaced = null;
+                if(queue.size() >= maxSize) {
+                    displaced = queue.removeFirst();
+                    items.remove(displaced.name());
+                }
+                queue.add(item);
+                assertSame(displaced, map.putIn(item));
+            } else if(op == 2) {
+                final TestItem item = queue.pollLast();
+                assertSame(item, map.takeHighestPriorityItem());
+                if(item != null) {
+                    items.remove(item.name());
+                    map.take(item.name());
+                }
+            } else if(op == 3) {
+                final TestItem item = items.remove(key);
+                if(item != null) {
+                    queue.remove(item);
+                }
+                assertSame(item, map.take(key));
+            }
+            assertEquals(queue.size(), map.size());
+        }
+    }
+
+    @Test
+    public void testTopKLeavesMapUnchanged() {
+        final Random rnd = new Random(2);
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(100);
+        final List<Float> priorities = new ArrayList<>();
+        for(int i=0; i<100; i++) {
+            final TestItem item = new TestItem("i" + i, rnd.nextFloat());
+            priorities.add(item.getPriority());
+            map.putIn(item);
+        }
+        Collections.sort(priorities, Collections.reverseOrder());
+        for(final int k : new int[] { 0, 1, 10, 100, 200 }) {
+            final List<TestItem> top = new ArrayList<>();
+            map.topK(k, top);
+            assertEquals(Math.min(k, 100), top.size());
+            for(int i=0; i<top.size(); i++) {
+                assertEquals(priorities.get(i), top.get(i).getPriority(), 0.0f);
+            }
+            assertEquals(100, map.size());
+        }
+        assertEquals(priorities.get(0), map.takeHighestPriorityItem().getPriority(), 0.0f);
+    }
+
+    @Test
+    public void testUpdateMovesAChangedItem() {
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(3);
+        final TestItem a = new TestItem("a", 0.1f);
+        final TestItem b = new TestItem("b", 0.5f);
+        map.putIn(a);
+        map.putIn(b);
+        map.putIn(new TestItem("c", 0.3f));
+        //the lowest item becomes the highest
+        a.setPriority(0.9f);
+        map.update(a);
+        assertSame(a, map.highestPriorityItem());
+        //and the highest the lowest, so that it is displaced
+        a.setPriority(0.05f);
+        map.update(a);
+        assertSame(b, map.highestPriorityItem());
+        assertSame(a, map.putIn(new TestItem("d", 0.2f)));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void testChangedTaskBudgetReordersTheCyclingTasks() throws Exception {
+        final Nar nar = new Nar();
+        final Task a = new Narsese(nar).parseTask("<a --> b>.");
+        final Task b = new Narsese(nar).parseTask("<c --> d>.");
+        a.setPriority(0.9f);
+        b.setPriority(0.5f);
+        nar.memory.cyclingTasks.putIn(a);
+        nar.memory.cyclingTasks.putIn(b);
+        //like the revision of a fired task while it is back in the cycling tasks
+        a.setPriority(0.1f);
+        nar.memory.taskBudgetChanged(a);
+        assertSame(b, nar.memory.cyclingTasks.takeNext());
+        assertSame(a, nar.memory.cyclingTasks.takeNext());
+    }
+
+    @Test
+    public void testLazyForgetting() throws Exception {
+        final Nar nar = new Nar();
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(10);
+        map.setLazyForgetting(10, nar.memory);
+        final TestItem fast = new TestItem("fast", 0.9f, 0.1f);
+        final TestItem slow = new TestItem("slow", 0.8f, 0.9f);
+        map.putBack(fast, 10, nar.memory);
+        map.putBack(slow, 10, nar.memory);
+        //only a touch, the order is restored when the next item is taken
+        map.forget("fast", 10, nar.memory);
+        assertEquals(0.9f, fast.getPriority(), 0.0f);
+        nar.cycles(20);
+        assertEquals("slow", map.takeNext().name());
+        //decayed by its durability every 10 cycles
+        final float quality = 0.5f * nar.narParameters.QUALITY_RESCALED;
+        final long period = fast.budget.getLastForgetTime();
+        assertEquals(quality + (0.9f - quality) * Math.pow(0.1f, period / 10.0), fast.getPriority(), 0.001f);
+        assertEquals("fast", map.takeNext().name());
+    }
+
+    @Test
+    public void testLazyForgettingBeforeDisplacement() throws Exception {
+        final Nar nar = new Nar();
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(2);
+        map.setLazyForgetting(10, nar.memory);
+        final TestItem fast = new TestItem("fast", 0.9f, 0.1f);
+        map.putBack(fast, 10, nar.memory);
+        map.putBack(new TestItem("slow", 0.5f, 0.9f), 10, nar.memory);
+        nar.cycles(20);
+        //the key of fast is still 0.9, but it decayed below slow and the new item
+        assertSame(fast, map.putIn(new TestItem("new", 0.3f)));
+        assertEquals(2, map.size());
+        assertEquals("slow", map.takeNext().name());
+    }
+
+    @Test
+    public void testLazyForgettingKeepsOrder() throws Exception {
+        final Random rnd = new Random(4);
+        final Nar nar = new Nar();
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(20);
+        map.setLazyForgetting(10, nar.memory);
+        final Map<String,TestItem> reference = new HashMap<>();
+        final float relativeThreshold = nar.narParameters.QUALITY_RESCALED;
+        for(int i=0; i<2000; i++) {
+            final String key = "i" + rnd.nextInt(40);
+            if(rnd.nextBoolean() && !reference.containsKey(key)) {
+                final TestItem item = new TestItem(key, rnd.nextFloat(), rnd.nextFloat());
+                reference.put(key, item);
+                final TestItem displaced = map.putBack(item, 10, nar.memory);
+                if(displaced != null) {
+                    reference.remove(displaced.name());
+                }
+            } else if(!reference.isEmpty()) {
+                //the highest of the priorities decayed until now
+                float highest = -1.0f;
+                for(final TestItem item : reference.values()) {
+                    final float quality = item.getQuality() * relativeThreshold;
+                    final long period = nar.memory.time() - item.budget.getLastForgetTime();
+                    float priority = item.getPriority();
+                    if(period > 0 && priority > quality) {
+                        priority = quality + (priority - quality) * (float) Math.pow(item.getDurability(), period / 10.0f);
+                    }
+                    highest = Math.max(highest, priority);
+                }
+                final TestItem item = map.takeNext();
+                assertEquals(highest, item.getPriority(), 0.0f);
+                reference.remove(item.name());
+            }
+            assertEquals(reference.size(), map.size());
+            nar.cycles(rnd.nextInt(3));
+        }
+    }
+
+    @Test
+    public void testTopKWithLazyForgetting() throws Exception {
+        final Nar nar = new Nar();
+        final PriorityMap<String,TestItem> map = new PriorityMap<>(10);
+        map.setLazyForgetting(10, nar.memory);
+        map.putBack(new TestItem("fast", 0.9f, 0.1f), 10, nar.memory);
+        map.putBack(new TestItem("slow", 0.8f, 0.9f), 10, nar.memory);
+        map.putBack(new TestItem("slower", 0.7f, 0.9f), 10, nar.memory);
+        nar.cycles(20);
+        //the key of fast is still 0.9, but it decayed below the others
+        final List<TestItem> top = new ArrayList<>();
+        map.topK(2, top);
+        assertEquals(2, top.size());
+        assertEquals("slow", top.get(0).name());
+        assertEquals("slower", top.get(1).name());
+        assertEquals(3, map.size());
+        assertEquals("slow", map.takeNext().name());
+    }
+}
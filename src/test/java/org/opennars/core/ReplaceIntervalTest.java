@@ -26,7 +26,9 @@ package org.opennars.core;
 import org.junit.Test;
 import org.opennars.io.Narsese;
 import org.opennars.language.CompoundTerm;
+import org.opennars.language.Statement;
 import org.opennars.language.Term;
+import org.opennars.language.Variable;
 import org.opennars.main.Nar;
 import org.xml.sax.SAXException;
 
@@ -35,6 +37,10 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.text.ParseException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
 /**
  *
  * @author patha
@@ -49,4 +55,30 @@ public class ReplaceIntervalTest {
         CompoundTerm ct = (CompoundTerm) CompoundTerm.replaceIntervals(ret);
         assert(ct.toString().equals("<(*,{SELF},<{(*,fragmentC,fragmentD)} --> compare>,TRUE) =\\> (*,{SELF},(&/,<{fragmentC} --> mutate>,+1),TRUE)>"));
     }
+
+    @Test
+    public void replaceIvalReuseTest() throws Narsese.InvalidInputException, IOException, InstantiationException, InvocationTargetException, NoSuchMethodException, ParserConfigurationException, IllegalAccessException, SAXException, ClassNotFoundException, ParseException {
+        Nar nar = new Nar();
+        Narsese parser = new Narsese(nar);
+        Term noIval = parser.parseTerm("<(*,a,b) --> c>");
+        assertSame(noIval, CompoundTerm.replaceIntervals(noIval));
+        Term ival = parser.parseTerm("(&/,a,+5,b)");
+        Term replaced = CompoundTerm.replaceIntervals(ival);
+        assertEquals("(&/,a,+1,b)", replaced.toString());
+        assertSame(replaced, CompoundTerm.replaceIntervals(ival));
+        assertSame(replaced, CompoundTerm.replaceIntervals(replaced));
+    }
+
+    @Test
+    public void replaceIvalKeepsValidityTest() throws Exception {
+        Nar nar = new Nar();
+        Narsese parser = new Narsese(nar);
+        Statement st = (Statement) parser.parseTerm("<(&,a,$1) --> (&,a,b)>");
+        assertSame(st, CompoundTerm.replaceIntervals(st));
+        //changed in place like variables are, it becomes (&,a,b) --> (&,a,b), which is no concept term
+        CompoundTerm subject = (CompoundTerm) st.getSubject();
+        subject.term[subject.term[0] instanceof Variable ? 0 : 1] = parser.parseTerm("b");
+        st.invalidateName();
+        assertNull(CompoundTerm.replaceIntervals(st));
+    }
 }
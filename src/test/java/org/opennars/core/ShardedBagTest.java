@@ -0,0 +1,177 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Item;
+import org.opennars.main.Nar;
+import org.opennars.main.Parameters;
+import org.opennars.storage.Bag;
+import org.opennars.storage.ShardedBag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedBagTest {
+    final Parameters narParameters = new Parameters();
+
+    class TestItem extends Item<String> {
+        final String key;
+
+        TestItem(final String key, final float priority) {
+            this(key, priority, 0.5f);
+        }
+
+        TestItem(final String key, final float priority, final float durability) {
+            super(new BudgetValue(priority, durability, 0.5f, narParameters));
+            this.key = key;
+        }
+
+        @Override
+        public String name() {
+            return key;
+        }
+    }
+
+    @Test
+    public void testTopKOverAllShards() {
+        final Bag<String,TestItem> bag = new ShardedBag<>(Bag.PRIORITY_MAP, 10, 1000, 8);
+        for(int i=0; i<100; i++) {
+            bag.putIn(new TestItem("i" + i, i / 100.0f));
+        }
+        final List<TestItem> top = new ArrayList<>();
+        bag.topK(5, top);
+        assertEquals(5, top.size());
+        for(int i=0; i<5; i++) {
+            assertEquals("i" + (99 - i), top.get(i).name());
+        }
+        assertEquals(100, bag.size());
+    }
+
+    @Test
+    public void testTakeNextTakesHighestOfAllShards() {
+        final Bag<String,TestItem> bag = new ShardedBag<>(Bag.PRIORITY_MAP, 10, 1000, 8);
+        final Random rnd = new Random(1);
+        for(int i=0; i<100; i++) {
+            bag.putIn(new TestItem("i" + i, rnd.nextFloat()));
+        }
+        float last = 1.0f;
+        for(int i=0; i<100; i++) {
+            final TestItem item = bag.takeNext();
+            assertTrue(item.getPriority() <= last);
+            last = item.getPriority();
+        }
+        assertNull(bag.takeNext());
+    }
+
+    @Test
+    public void testTakeNextSelectsLevelsOverAllShards() {
+        //one item in a high level and many in the lowest level, each shard holding a part of them
+        final Bag<String,TestItem> bag = new ShardedBag<>(Bag.LEVEL_BAG, 10, 1000, 8);
+        final Bag<String,TestItem> single = Bag.make(Bag.LEVEL_BAG, 10, 1000);
+        for(int i=0; i<90; i++) {
+            bag.putIn(new TestItem("i" + i, 0.05f));
+            single.putIn(new TestItem("i" + i, 0.05f));
+        }
+        bag.putIn(new TestItem("high", 0.95f));
+        single.putIn(new TestItem("high", 0.95f));
+        //the high item has weight 10 of 100, in either bag
+        int sharded = 0, unsharded = 0;
+        for(int i=0; i<10000; i++) {
+            final TestItem a = bag.takeNext();
+            final TestItem b = single.takeNext();
+            if(a.name().equals("high")) {
+                sharded++;
+            }
+            if(b.name().equals("high")) {
+                unsharded++;
+            }
+            bag.putIn(a);
+            single.putIn(b);
+        }
+        assertEquals(1000, sharded, 150);
+        assertEquals(1000, unsharded, 150);
+    }
+
+    @Test
+    public void testTopKWithLazyForgetting() throws Exception {
+        final Nar nar = new Nar();
+        final Bag<String,TestItem> bag = new ShardedBag<>(Bag.PRIORITY_MAP, 10, 1000, 8);
+        bag.setLazyForgetting(10, nar.memory);
+        for(int i=0; i<20; i++) {
+            //the higher the priority, the faster it decays
+            bag.putBack(new TestItem("i" + i, 0.5f + i / 50.0f, 0.9f - i / 25.0f), 10, nar.memory);
+        }
+        nar.cycles(20);
+        final List<TestItem> top = new ArrayList<>();
+        bag.topK(5, top);
+        assertEquals(5, top.size());
+        //take applies the decay too
+        final List<TestItem> all = new ArrayList<>();
+        for(int i=0; i<20; i++) {
+            all.add(bag.take("i" + i));
+        }
+        all.sort((a, b) -> Float.compare(b.getPriority(), a.getPriority()));
+        assertEquals(all.subList(0, 5), top);
+    }
+
+    @Test
+    public void testConcurrentTakeAndPutBack() throws InterruptedException {
+        final int keys = 200;
+        final Bag<String,TestItem> bag = new ShardedBag<>(Bag.PRIORITY_MAP, 10, 10 * keys, 8);
+        for(int i=0; i<keys; i++) {
+            bag.putIn(new TestItem("i" + i, 0.5f));
+        }
+        final Thread[] threads = new Thread[4];
+        for(int t=0; t<threads.length; t++) {
+            final Random rnd = new Random(t);
+            threads[t] = new Thread(() -> {
+                for(int i=0; i<20000; i++) {
+                    final String key = "i" + rnd.nextInt(keys);
+                    //like Memory.conceptualize, take and put back atomically
+                    synchronized(bag.lockFor(key)) {
+                        final TestItem item = bag.take(key);
+                        item.setPriority(rnd.nextFloat());
+                        bag.putIn(item);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(keys, bag.size());
+        for(int i=0; i<keys; i++) {
+            assertNotNull(bag.get("i" + i));
+        }
+    }
+}
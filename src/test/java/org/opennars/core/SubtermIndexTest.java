@@ -0,0 +1,92 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Concept;
+import org.opennars.inference.BudgetFunctions;
+import org.opennars.io.Narsese;
+import org.opennars.language.Term;
+import org.opennars.main.Nar;
+import org.opennars.operator.mental.Remind;
+import org.opennars.storage.Bag;
+import org.opennars.storage.Memory;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SubtermIndexTest {
+
+    @Test
+    public void testIndexMatchesScan() throws Exception {
+        final Nar nar = new Nar();
+        nar.addInput("<robin --> bird>.");
+        nar.addInput("<bird --> animal>.");
+        nar.addInput("<(*,robin,worm) --> eat>.");
+        nar.cycles(100);
+        final Narsese parser = new Narsese(nar);
+        for (final String s : new String[] { "robin", "bird", "(*,robin,worm)", "<bird --> animal>" }) {
+            final Term t = parser.parseTerm(s);
+            final Set<Term> scanned = new HashSet<>();
+            for (final Concept c : nar.memory) {
+                if (c.getTerm().containsTermRecursively(t)) {
+                    scanned.add(c.getTerm());
+                }
+            }
+            final Set<Term> indexed = new HashSet<>();
+            for (final Concept c : nar.memory.conceptsContaining(t)) {
+                indexed.add(c.getTerm());
+            }
+            assertTrue(s, !scanned.isEmpty());
+            assertEquals(s, scanned, indexed);
+        }
+        nar.reset();
+        assertTrue(nar.memory.conceptsContaining(parser.parseTerm("robin")).isEmpty());
+        assertEquals(0, nar.memory.subterms.size());
+    }
+
+    @Test
+    public void testEvictedConceptLeavesIndex() throws Exception {
+        final Nar nar = new Nar();
+        final Memory memory = new Memory(nar.narParameters, Bag.<Term,Concept>make(nar.narParameters.CONCEPT_BAG_TYPE, nar.narParameters.CONCEPT_BAG_LEVELS, 2));
+        final Narsese parser = new Narsese(nar);
+        final Term low = parser.parseTerm("<robin --> bird>");
+        final Concept evicted = memory.conceptualize(new BudgetValue(0.1f, 0.5f, 0.5f, nar.narParameters), low);
+        memory.conceptualize(new BudgetValue(0.8f, 0.5f, 0.5f, nar.narParameters), parser.parseTerm("<bird --> animal>"));
+        //the bag is full, so the lowest concept is displaced
+        memory.conceptualize(new BudgetValue(0.9f, 0.5f, 0.5f, nar.narParameters), parser.parseTerm("<swan --> bird>"));
+        assertNull(memory.concept(low));
+        assertTrue(memory.conceptsContaining(parser.parseTerm("robin")).isEmpty());
+        assertEquals(1, memory.conceptsContaining(parser.parseTerm("swan")).size());
+        //reminding the displaced concept doesn't bring it back past the index
+        new Remind().activate(memory, evicted, new BudgetValue(1.0f, 0.9f, 0.5f, nar.narParameters), BudgetFunctions.Activating.TaskLink);
+        assertNull(memory.concept(low));
+        assertTrue(memory.conceptsContaining(parser.parseTerm("robin")).isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.core;
+
+import org.junit.Test;
+import org.opennars.io.Narsese;
+import org.opennars.io.TermCodec;
+import org.opennars.language.Term;
+import org.opennars.language.Variable;
+import org.opennars.main.Nar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TermCodecTest {
+
+    final String[] terms = {
+        "bird",
+        "<bird --> animal>",
+        "<{tweety} <-> [yellow]>",
+        "(&/,<a --> b>,+5,(^pick,{SELF},x))",
+        "<(&&,<$1 --> bird>,<$1 --> [flying]>) ==> <$1 --> animal>>",
+        "<(&|,a,b) =/> (--,(|,c,d))>",
+        "<(*,a,b) --> (/,r,_,b)>",
+        "<(\\,r,a,_) <|> (-,c,#1)>",
+        "<?1 =\\> (~,e,f)>"
+    };
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Nar nar = new Nar();
+        final Narsese narsese = new Narsese(nar);
+        for(final String s : terms) {
+            final Term t = narsese.parseTerm(s);
+            final Term decoded = TermCodec.decode(TermCodec.encode(t), nar.memory);
+            assertEquals(t, decoded);
+            assertEquals(t.toString(), decoded.toString());
+        }
+    }
+
+    @Test
+    public void testSharedDictionary() throws Exception {
+        final Nar nar = new Nar();
+        final Narsese narsese = new Narsese(nar);
+        final Term t = narsese.parseTerm("<(&&,<$1 --> bird>,<$1 --> [flying]>) ==> <$1 --> animal>>");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final TermCodec.Encoder encoder = new TermCodec.Encoder(new DataOutputStream(bytes));
+        encoder.write(t);
+        final int first = bytes.size();
+        encoder.write(t);
+        //the names are only written the first time
+        assertTrue(bytes.size() - first < first / 2);
+        final TermCodec.Decoder decoder = new TermCodec.Decoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), nar.memory);
+        assertEquals(t, decoder.read());
+        assertEquals(t, decoder.read());
+        //and much smaller than the serialized object graph
+        final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(t);
+        }
+        assertTrue(first * 10 < serialized.size());
+    }
+
+    @Test
+    public void testVariablesAreScopedPerTerm() throws Exception {
+        final Nar nar = new Nar();
+        final Narsese narsese = new Narsese(nar);
+        //the terms of sentences, whose variables are scoped to them, sharing the names of the variables
+        final Term a = narsese.parseTask("<(&&,<$1 --> bird>,<#2 --> nest>) ==> <$1 --> [flying]>>.").getTerm();
+        final Term b = narsese.parseTask("<<$1 --> fish> ==> (&&,<$1 --> [swimming]>,<#2 --> water>)>.").getTerm();
+        assertScopedTo(a);
+        assertScopedTo(b);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final TermCodec.Encoder encoder = new TermCodec.Encoder(new DataOutputStream(bytes));
+        encoder.write(a);
+        encoder.write(b);
+        final TermCodec.Decoder decoder = new TermCodec.Decoder(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), nar.memory);
+        final Term decodedA = decoder.read();
+        final Term decodedB = decoder.read();
+        assertEquals(a, decodedA);
+        assertEquals(b, decodedB);
+        assertScopedTo(decodedA);
+        assertScopedTo(decodedB);
+    }
+
+    private static void assertScopedTo(final Term t) {
+        t.recurseSubtermsContainingVariables((v, parent) -> {
+            if(v instanceof Variable) {
+                assertSame(t, ((Variable) v).getScope());
+            }
+        });
+    }
+}
@@ -29,12 +29,17 @@ import org.opennars.io.Narsese;
 import org.opennars.io.Symbols.NativeOperator;
 import org.opennars.io.Texts;
 import org.opennars.language.CompoundTerm;
+import org.opennars.language.Conjunction;
 import org.opennars.language.Inheritance;
+import org.opennars.language.Product;
+import org.opennars.language.SetExt;
 import org.opennars.language.Statement;
 import org.opennars.language.Term;
+import org.opennars.language.Variable;
 import org.opennars.main.Nar;
 import org.opennars.main.MiscFlags;
 import org.opennars.operator.Operation;
+import org.opennars.plugin.perception.VisualSpace;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -45,6 +50,9 @@ import java.util.NavigableSet;
 import java.util.TreeSet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -102,6 +110,24 @@ public class TermTest {
         assertEquals(1, Term.toSortedSetArray(a, a).length);
         assertEquals(1, Term.toSortedSetArray(a).length);
         assertEquals("correct natural ordering", a, Term.toSortedSetArray(a, b)[0]);
+
+        //same order as the names, also when they only differ after the first characters
+        final Term[] terms = { m.parseTerm("<cat --> animal>"), c, m.parseTerm("<cat --> pet>"), m.parseTerm("catalog"), b,
+                               m.parseTerm("<cat --> animal>"), m.parseTerm("cat"), a, m.parseTerm("(*,a,b)"), c };
+        final NavigableSet<Term> expected = new TreeSet<>();
+        for (final Term t : terms) {
+            expected.add(t);
+        }
+        final Term[] sorted = Term.toSortedSetArray(terms);
+        assertEquals(expected.size(), sorted.length);
+        int i = 0;
+        for (final Term t : expected) {
+            assertEquals(t, sorted[i]);
+            if (i > 0) {
+                assertTrue(Texts.compareTo(sorted[i - 1].name(), sorted[i].name()) < 0);
+            }
+            i++;
+        }
     }    
     
     @Test
@@ -264,4 +290,72 @@ public class TermTest {
         assertEquals(Operation.class, x.getClass());
         assertEquals("(^wonder,a,b)", x.toString());
     }
+    
+    @Test public void testEqualCompoundsShareInstance() throws Narsese.InvalidInputException {
+        final Term a = np.parseTerm("<(*,a,b) --> c>");
+        final Term b = Inheritance.make(Product.make(Term.get("a"), Term.get("b")), Term.get("c"));
+        assertSame(a, b);
+        //terms with variables are renamed in place, so they are not shared
+        final Term v1 = np.parseTerm("<$1 --> c>");
+        final Term v2 = np.parseTerm("<$1 --> c>");
+        assertEquals(v1, v2);
+        assertNotSame(v1, v2);
+    }
+    
+    @Test public void testTermsWithImaginationNotShared() throws Exception {
+        final Nar n = new Nar();
+        //as the vision channel does for two frames of the same eternal subject
+        final Term[] statements = new Term[2];
+        final VisualSpace[] spaces = new VisualSpace[2];
+        for(int i=0;i<2;i++) {
+            final SetExt frame = new SetExt(Term.get("frame"));
+            spaces[i] = new VisualSpace(n, new float[1][1], 0, 0, 1, 1);
+            frame.imagination = spaces[i];
+            statements[i] = Inheritance.make(frame, Term.get("seen"));
+        }
+        assertNotSame(statements[0], statements[1]);
+        for(int i=0;i<2;i++) {
+            assertSame(spaces[i], ((Statement) statements[i]).getSubject().imagination);
+        }
+        //neither are the compounds containing them
+        assertNotSame(Conjunction.make(statements[0], Term.get("x")), Conjunction.make(statements[1], Term.get("x")));
+        assertSame(SetExt.make(Term.get("frame")), SetExt.make(Term.get("frame")));
+    }
+    
+    @Test public void testStructuralEquality() throws Narsese.InvalidInputException {
+        final Term a = np.parseTerm("<(&&,<$1 --> b>,<$1 --> c>) ==> <$1 --> d>>");
+        final Term b = np.parseTerm("<(&&,<$1 --> c>,<$1 --> b>) ==> <$1 --> d>>");
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        //the place of the relation is part of the structure
+        assertTrue(!np.parseTerm("(/,r,_,b)").equals(np.parseTerm("(/,r,b,_)")));
+        assertTrue(!np.parseTerm("<a =/> b>").equals(np.parseTerm("<a ==> b>")));
+    }
+
+    @Test public void testHashOfName() throws Narsese.InvalidInputException {
+        for (final String s : new String[] { "<(&&,<$1 --> b>,<$1 --> c>) ==> <$1 --> d>>", "(/,hold,_,key001)", "(\\,(*,a,b),a,_)",
+                "<{a,b} <-> [c]>", "(--,<a --> b>)", "(&/,a,+5,(^pick,{SELF},b))", "<(*,a,b) --> ^op>", "<#1 =/> (|,a,(-,b,c))>" }) {
+            final CompoundTerm t = (CompoundTerm) np.parseTerm(s);
+            //the hash is made from the terms, without making the name
+            t.invalidateName();
+            final int hash = t.hashCode();
+            assertEquals(s, t.name().toString().hashCode(), hash);
+        }
+    }
+
+    @Test
+    public void testValidity() throws Exception {
+        final Nar n = new Nar();
+        final Narsese p = new Narsese(n);
+        for (final String s : new String[] { "<(&,a,b) --> c>", "<(&&,<$1 --> a>,<$1 --> b>) ==> <$1 --> c>>", "(&/,a,+1,b)", "<(*,a,b) <-> c>" }) {
+            assertTrue(s, Term.valid(p.parseTerm(s)));
+        }
+        //changed in place like variables are, it becomes (&,a,b) --> (&,a,b)
+        final Statement st = (Statement) p.parseTerm("<(&,a,$1) --> (&,a,b)>");
+        final CompoundTerm subject = (CompoundTerm) st.getSubject();
+        subject.term[subject.term[0] instanceof Variable ? 0 : 1] = p.parseTerm("b");
+        st.invalidateName();
+        assertEquals(st.cloneDeep() != null, Term.valid(st));
+        assertFalse(Term.valid(st));
+    }
 }
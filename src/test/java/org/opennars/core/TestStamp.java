@@ -27,8 +27,14 @@ import org.junit.Test;
 
 import java.util.Arrays;
 
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.fail;
+import org.opennars.entity.Stamp;
 import org.opennars.entity.Stamp.BaseEntry;
+import org.opennars.language.Tense;
+import org.opennars.main.Parameters;
+import static org.opennars.entity.Stamp.baseOverlap;
 import static org.opennars.entity.Stamp.toSetArray;
 
 /**
@@ -39,25 +45,120 @@ import static org.opennars.entity.Stamp.toSetArray;
 
 public class TestStamp {
     private long narid = 0;
-    BaseEntry entry(long inputId) {
-        return new BaseEntry(narid, inputId);
+    long entry(long inputId) {
+        return new BaseEntry(narid, inputId).pack();
     }
     @Test 
     public void testStampToSetArray() {
         
-        assertTrue(toSetArray(new BaseEntry[] { entry(1), entry(2), entry(3) }).length == 3);        
-        assertTrue(toSetArray(new BaseEntry[] { entry(1), entry(1), entry(3) }).length == 2);
-        assertTrue(toSetArray(new BaseEntry[] { entry(1) }).length == 1);
-        assertTrue(toSetArray(new BaseEntry[] {  }).length == 0);
+        assertTrue(toSetArray(new long[] { entry(1), entry(2), entry(3) }).length == 3);        
+        assertTrue(toSetArray(new long[] { entry(1), entry(1), entry(3) }).length == 2);
+        assertTrue(toSetArray(new long[] { entry(1) }).length == 1);
+        assertTrue(toSetArray(new long[] {  }).length == 0);
         assertTrue(
-                Arrays.hashCode(toSetArray(new BaseEntry[] { entry(3),entry(2),entry(1) }))
+                Arrays.hashCode(toSetArray(new long[] { entry(3),entry(2),entry(1) }))
                 ==
-                Arrays.hashCode(toSetArray(new BaseEntry[] { entry(2),entry(3),entry(1) }))
+                Arrays.hashCode(toSetArray(new long[] { entry(2),entry(3),entry(1) }))
         );
         assertTrue(
-                Arrays.hashCode(toSetArray(new BaseEntry[] { entry(1),entry(2),entry(3) }))
+                Arrays.hashCode(toSetArray(new long[] { entry(1),entry(2),entry(3) }))
                 !=
-                Arrays.hashCode(toSetArray(new BaseEntry[] { entry(1),entry(1),entry(3) }))
+                Arrays.hashCode(toSetArray(new long[] { entry(1),entry(1),entry(3) }))
         );    
     }
+    
+    @Test
+    public void testBaseOverlap() {
+        assertFalse(baseOverlap(new long[] { entry(1), entry(3) }, new long[] { entry(2), entry(4) }));
+        assertTrue(baseOverlap(new long[] { entry(1), entry(3) }, new long[] { entry(3), entry(4) }));
+        assertTrue(baseOverlap(new long[] { entry(1), entry(1) }, new long[] { entry(2) }));
+        assertTrue(baseOverlap(new long[] { entry(1) }, new long[] { entry(2), entry(2) }));
+        assertFalse(baseOverlap(new long[] { entry(1) }, new long[] { }));
+        assertFalse(baseOverlap(new long[] { new BaseEntry(1, 1).pack() }, new long[] { new BaseEntry(2, 1).pack() }));
+    }
+    
+    @Test
+    public void testStampOverlap() {
+        final Parameters narParameters = new Parameters();
+        final Stamp[] inputs = new Stamp[200];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = new Stamp(0, Tense.Eternal, new BaseEntry(narid, i), 5);
+        }
+        Stamp a = inputs[0], b = inputs[1];
+        for (int i = 2; i < inputs.length; i += 2) {
+            a = new Stamp(a, inputs[i], 0, narParameters);
+            b = new Stamp(inputs[i+1], b, 0, narParameters);
+            assertFalse(a.evidenceIsCyclic() || b.evidenceIsCyclic());
+            assertFalse(baseOverlap(a, b, null));
+            assertTrue(baseOverlap(a, inputs[i], null));
+        }
+        for (int i = 1; i < a.baseLength; i++) {
+            assertTrue(a.evidentialBase[i-1] < a.evidentialBase[i]);
+        }
+        final Stamp cyclic = new Stamp(a, inputs[0], 0, narParameters);
+        assertTrue(cyclic.evidenceIsCyclic());
+        assertTrue(cyclic.baseLength == a.baseLength);
+        assertTrue(baseOverlap(cyclic, b, null));
+    }
+    
+    @Test
+    public void testEntriesFitPacking() {
+        //ids which only differ in the bits cut off by packing would overlap
+        for (final long[] ids : new long[][] { { 1L << 32, 1 }, { 0, 1L << 32 }, { 0, -1 } }) {
+            try {
+                new BaseEntry(ids[0], ids[1]);
+                fail(Arrays.toString(ids));
+            } catch (final IllegalArgumentException ex) {
+            }
+        }
+        assertTrue(new BaseEntry(-1, 1).pack() < new BaseEntry(0, BaseEntry.MAX_INPUT_ID).pack());
+        assertTrue(BaseEntry.narId(new BaseEntry(Integer.MIN_VALUE, 7).pack()) == Integer.MIN_VALUE);
+        assertTrue(BaseEntry.inputId(new BaseEntry(Integer.MIN_VALUE, BaseEntry.MAX_INPUT_ID).pack()) == BaseEntry.MAX_INPUT_ID);
+    }
+    
+    @Test
+    public void testTruncationKeepsEvidenceOfBothParents() {
+        final Parameters narParameters = new Parameters();
+        narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH = 8;
+        Stamp a = new Stamp(0, Tense.Eternal, new BaseEntry(2, 0), 5);
+        Stamp b = new Stamp(0, Tense.Eternal, new BaseEntry(1, 0), 5);
+        for (int i = 1; i < narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH; i++) {
+            a = new Stamp(a, new Stamp(0, Tense.Eternal, new BaseEntry(2, i), 5), 0, narParameters);
+            b = new Stamp(b, new Stamp(0, Tense.Eternal, new BaseEntry(1, i), 5), 0, narParameters);
+        }
+        //the entries of the NAR with the greater id don't take the place of the others
+        final Stamp merged = new Stamp(a, b, 0, narParameters);
+        assertTrue(merged.baseLength == narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH);
+        int fromA = 0;
+        for (int i = 0; i < merged.baseLength; i++) {
+            if (BaseEntry.narId(merged.evidentialBase[i]) == 2) {
+                fromA++;
+            }
+            if (i > 0) {
+                assertTrue(merged.evidentialBase[i-1] < merged.evidentialBase[i]);
+            }
+        }
+        assertTrue(fromA == merged.baseLength / 2);
+        assertFalse(merged.evidenceIsCyclic());
+    }
+
+    @Test
+    public void testTruncationKeepsTheNewestEvidence() {
+        final Parameters narParameters = new Parameters();
+        narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH = 8;
+        Stamp a = new Stamp(0, Tense.Eternal, new BaseEntry(1, 0), 5);
+        Stamp b = new Stamp(0, Tense.Eternal, new BaseEntry(1, 100), 5);
+        for (int i = 1; i < narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH; i++) {
+            a = new Stamp(a, new Stamp(0, Tense.Eternal, new BaseEntry(1, i), 5), 0, narParameters);
+            b = new Stamp(b, new Stamp(0, Tense.Eternal, new BaseEntry(1, 100 + i), 5), 0, narParameters);
+        }
+        //the oldest entries of both parents are the ones which are dropped
+        final Stamp merged = new Stamp(a, b, 0, narParameters);
+        assertTrue(merged.baseLength == narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH);
+        final int half = narParameters.MAXIMUM_EVIDENTAL_BASE_LENGTH / 2;
+        for (int i = 0; i < half; i++) {
+            assertTrue(BaseEntry.inputId(merged.evidentialBase[i]) == half + i);
+            assertTrue(BaseEntry.inputId(merged.evidentialBase[half + i]) == 100 + half + i);
+        }
+    }
 }
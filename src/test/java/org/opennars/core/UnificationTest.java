@@ -32,9 +32,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.parsers.ParserConfigurationException;
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.opennars.io.Narsese;
 import org.opennars.io.Symbols;
 import org.opennars.language.CompoundTerm;
+import org.opennars.language.Substitution;
 import org.opennars.language.Term;
 import org.opennars.language.Variables;
 import org.opennars.main.Nar;
@@ -61,4 +65,37 @@ public class UnificationTest {
             assert(false); //test failed, no matter what happened
         }
     }
+
+    @Test
+    public void testReusedSubstitution() throws Exception {
+        Nar nar = new Nar();
+        Narsese parser = new Narsese(nar);
+        Substitution s = new Substitution();
+        Term[] u = new Term[] { parser.parseTerm("<(&&,<$1 --> bird>,<$1 --> [flying]>) ==> <$1 --> animal>>"), parser.parseTerm("<(&&,<robin --> bird>,<robin --> [flying]>) ==> <robin --> animal>>") };
+        assertTrue(Variables.unify(Symbols.VAR_INDEPENDENT, u, s));
+        assertEquals(u[1], u[0]);
+        //a mismatch is rejected and leaves nothing bound for the next unification
+        Term[] v = new Term[] { parser.parseTerm("<$1 --> bird>"), parser.parseTerm("<(*,a,b) --> animal>") };
+        assertFalse(Variables.unify(Symbols.VAR_INDEPENDENT, v, s));
+        Term[] w = new Term[] { parser.parseTerm("<$1 --> bird>"), parser.parseTerm("<swan --> bird>") };
+        assertTrue(Variables.unify(Symbols.VAR_INDEPENDENT, w, s));
+        assertEquals(parser.parseTerm("<swan --> bird>"), w[0]);
+        assertEquals(1, s.get(0).size());
+    }
+
+    @Test
+    public void testUndoToMark() throws Exception {
+        Nar nar = new Nar();
+        Narsese parser = new Narsese(nar);
+        Substitution s = new Substitution();
+        Term a = parser.parseTerm("$1");
+        Term b = parser.parseTerm("$2");
+        s.bind(0, a, parser.parseTerm("x"));
+        int mark = s.mark();
+        s.bind(0, a, parser.parseTerm("y"));
+        s.bind(1, b, parser.parseTerm("z"));
+        s.undo(mark);
+        assertEquals(parser.parseTerm("x"), s.get(0).get(a));
+        assertTrue(s.get(1).isEmpty());
+    }
 }
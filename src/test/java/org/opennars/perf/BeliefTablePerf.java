@@ -0,0 +1,118 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.perf;
+
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Sentence;
+import org.opennars.entity.Stamp;
+import org.opennars.entity.Stamp.BaseEntry;
+import org.opennars.entity.Task;
+import org.opennars.entity.TruthValue;
+import org.opennars.io.Symbols;
+import org.opennars.language.Term;
+import org.opennars.main.Parameters;
+import org.opennars.storage.BeliefTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.opennars.inference.BudgetFunctions.rankBelief;
+
+/**
+ * Insertion of beliefs into the belief table of a concept by BeliefTable against
+ * the ArrayList based table it replaced, at increasing CONCEPT_BELIEFS_MAX,
+ * ranked by confidence as the beliefs of the concept itself.
+ */
+public class BeliefTablePerf {
+
+    /** the previous implementation, kept as baseline */
+    static Task addToList(final Task newTask, final List<Task> table, final int capacity, final boolean rankTruthExpectation) {
+        final Sentence newSentence = newTask.sentence;
+        final float rank1 = rankBelief(newSentence, rankTruthExpectation);
+        int i;
+        for (i = 0; i < table.size(); i++) {
+            final Sentence judgment2 = table.get(i).sentence;
+            if (rank1 >= rankBelief(judgment2, rankTruthExpectation)) {
+                if (newSentence.truth.equals(judgment2.truth) && newSentence.stamp.equals(judgment2.stamp,false,true,true)) {
+                    return null;
+                }
+                table.add(i, newTask);
+                break;
+            }
+        }
+        if (table.size() > capacity) {
+            return table.remove(table.size() - 1);
+        }
+        if (table.size() < capacity && i == table.size()) {
+            table.add(newTask);
+        }
+        return null;
+    }
+
+    public static Performance measure(final String name, final boolean list, final int capacity, final int operations) {
+        final Parameters narParameters = new Parameters();
+        final Performance p = new Performance(name, 5, 1) {
+            Task[] tasks;
+
+            @Override
+            public void init() {
+                System.out.print(name + ": ");
+                final Random rnd = new Random(1);
+                final Term term = new Term("bird");
+                tasks = new Task[operations];
+                for(int i=0; i<operations; i++) {
+                    final Stamp stamp = new Stamp(0, null, new BaseEntry(0, i), narParameters.DURATION);
+                    final TruthValue truth = new TruthValue(rnd.nextFloat(), 0.99f * rnd.nextFloat(), narParameters);
+                    tasks[i] = new Task(new Sentence(term, Symbols.JUDGMENT_MARK, truth, stamp),
+                            new BudgetValue(0.5f, 0.5f, 0.5f, narParameters), Task.EnumType.DERIVED);
+                }
+            }
+
+            @Override
+            public void run(final boolean warmup) {
+                final List<Task> l = list ? new ArrayList<>() : null;
+                final BeliefTable t = list ? null : new BeliefTable();
+                for(final Task task : tasks) {
+                    if(list) {
+                        addToList(task, l, capacity, false);
+                    } else {
+                        t.add(task, capacity, false);
+                    }
+                }
+            }
+        };
+        p.print();
+        System.out.println();
+        return p;
+    }
+
+    public static void main(final String[] args) {
+        final int operations = 100000;
+        for(final int capacity : new int[] { 28, 280, 2800 }) {
+            measure("ArrayList, CONCEPT_BELIEFS_MAX " + capacity, true, capacity, operations);
+            measure("BeliefTable, CONCEPT_BELIEFS_MAX " + capacity, false, capacity, operations);
+        }
+    }
+}
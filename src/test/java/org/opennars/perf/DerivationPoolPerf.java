@@ -0,0 +1,171 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.perf;
+
+import org.opennars.control.DerivationContext;
+import org.opennars.control.DerivationPool;
+import org.opennars.control.GeneralInferenceControl.Premises;
+import org.opennars.entity.Concept;
+import org.opennars.entity.Task;
+import org.opennars.entity.TaskLink;
+import org.opennars.entity.TermLink;
+import org.opennars.io.Narsese;
+import org.opennars.language.Term;
+import org.opennars.main.Nar;
+import org.opennars.storage.Memory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocations of the objects carrying a premise through the derivation:
+ * the Premises with its budget and key and the DerivationContext, allocated for each
+ * premise against reused from the DerivationPool of the thread, and the links
+ * RuleTables.reason dispatches the rule table on, as before against now.
+ * Besides the time, the bytes allocated by the thread per premise are printed.
+ */
+public class DerivationPoolPerf {
+
+    static Memory mem;
+    static Nar nar;
+    static Task task;
+    static Term term;
+    static Term subject;
+    static Concept taskConcept;
+    static Concept subjectConcept;
+    static long sink = 0;
+
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** the previous links of RuleTables.reason, kept as baseline */
+    static void previousLinks(final Concept beliefConcept, final Term beliefTerm) {
+        final List<TermLink> termLinks = new ArrayList<TermLink>();
+        final TermLink structuralTermLink = taskConcept.termLinkTemplates.get(beliefTerm);
+        if(structuralTermLink != null) {
+            termLinks.add(new TermLink(structuralTermLink.target, structuralTermLink, task.budget.clone()));
+        }
+        if(!taskConcept.termLinkTemplates.containsKey(beliefTerm) &&
+                beliefConcept != null && beliefConcept.termLinkTemplates.containsKey(beliefConcept.getTerm())) {
+            termLinks.add(new TermLink(beliefTerm, beliefConcept.termLinkTemplates.get(beliefConcept.getTerm()), task.budget.clone()));
+        }
+        final TaskLink virtualTaskLink = new TaskLink(task, new TermLink(task.getTerm(), taskConcept.termLinkTemplates.get(beliefConcept.getTerm()), task.budget.clone()), task.budget, 1);
+        if(structuralTermLink != null) {
+            final TaskLink structuralTaskLink = new TaskLink(task, structuralTermLink, task.budget.clone(), 1);
+            sink += structuralTaskLink.getIndex(0);
+        }
+        for(final TermLink termLink : termLinks) {
+            sink += virtualTaskLink.type + termLink.type;
+            sink += new TaskLink(task, null, task.budget.clone(), 1).type;
+        }
+    }
+
+    /** the links as RuleTables.reason creates them now */
+    static void links(final Concept beliefConcept, final Term beliefTerm) {
+        TermLink termLink = null;
+        final TermLink structuralTermLink = taskConcept.termLinkTemplates.get(beliefTerm);
+        if(structuralTermLink != null) {
+            termLink = new TermLink(structuralTermLink.target, structuralTermLink, null);
+        } else if(beliefConcept != null) {
+            final TermLink beliefTemplate = beliefConcept.termLinkTemplates.get(beliefConcept.getTerm());
+            if(beliefTemplate != null) {
+                termLink = new TermLink(beliefTerm, beliefTemplate, null);
+            }
+        }
+        if(structuralTermLink != null) {
+            sink += structuralTermLink.index[0];
+        }
+        if(termLink != null) {
+            final TaskLink virtualTaskLink = new TaskLink(task, new TermLink(task.getTerm(), taskConcept.termLinkTemplates.get(beliefConcept.getTerm()), null), null, 1);
+            sink += virtualTaskLink.type + termLink.type;
+            sink += new TaskLink(task, null, null, 1).type;
+        }
+    }
+
+    public static Performance measure(final String name, final int mode, final int premises) {
+        final long[] bytes = new long[1];
+        final Performance p = new Performance(name, 5, 1) {
+            @Override
+            public void init() {
+                System.out.print(name + ": ");
+            }
+
+            @Override
+            public void run(final boolean warmup) {
+                final DerivationPool pool = mem.derivationPool();
+                final long start = allocatedBytes();
+                for(int i=0; i<premises; i++) {
+                    switch(mode) {
+                        case 0: {
+                            final Premises premise = new Premises(mem, nar, task, term, subject, subjectConcept, null, false);
+                            final DerivationContext nal = new DerivationContext(mem, mem.narParameters, nar);
+                            nal.setCurrentTask(task);
+                            sink += premise.name().hashCode();
+                            break;
+                        }
+                        case 1: {
+                            final Premises premise = pool.premise(nar, task, term, subject, subjectConcept, null, false);
+                            final DerivationContext nal = pool.context(nar);
+                            nal.setCurrentTask(task);
+                            sink += premise.name().hashCode();
+                            pool.release(nal);
+                            pool.release(premise);
+                            break;
+                        }
+                        case 2:
+                            previousLinks(subjectConcept, subject);
+                            break;
+                        default:
+                            links(subjectConcept, subject);
+                    }
+                }
+                if(!warmup) {
+                    bytes[0] += allocatedBytes() - start;
+                }
+            }
+        };
+        p.print();
+        System.out.println(", " + bytes[0] / p.repeats / premises + " bytes/premise");
+        return p;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        nar = new Nar();
+        mem = nar.memory;
+        task = new Narsese(nar).parseTask("<a --> b>.");
+        term = task.getTerm();
+        subject = new Narsese(nar).parseTerm("a");
+        taskConcept = mem.conceptualize(task);
+        subjectConcept = mem.conceptualize(task.budget, subject);
+
+        final int premises = 1000000;
+        measure("Premise and context allocated", 0, premises);
+        measure("Premise and context from the DerivationPool", 1, premises);
+        measure("Rule table links, previous", 2, premises);
+        measure("Rule table links, now", 3, premises);
+        System.out.println(sink);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.perf;
+
+import com.google.common.collect.MinMaxPriorityQueue;
+import org.opennars.entity.BudgetValue;
+import org.opennars.entity.Item;
+import org.opennars.main.Parameters;
+import org.opennars.storage.Bag;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the bag storage engines with the Guava MinMaxPriorityQueue based
+ * PriorityMap they replaced, using the access pattern of the concept bag:
+ * take by key, forget, put back, and selection of the next items.
+ */
+public class PriorityMapPerf {
+
+    static class BenchItem extends Item<String> {
+        final String key;
+
+        BenchItem(final String key, final BudgetValue budget) {
+            super(budget);
+            this.key = key;
+        }
+
+        @Override
+        public String name() {
+            return key;
+        }
+    }
+
+    /** the previous implementation, kept as baseline */
+    static class GuavaPriorityMap<K,V extends Item<K>> {
+        final MinMaxPriorityQueue<V> queue;
+        final Map<K,V> theMap;
+        final int maxSize;
+
+        GuavaPriorityMap(final int maxSize) {
+            this.maxSize = maxSize;
+            theMap = new HashMap<>();
+            queue = MinMaxPriorityQueue
+                    .orderedBy(Comparator.comparing(V::getPriority))
+                    .create();
+        }
+
+        V putIn(final V item) {
+            V displaced = null;
+            if(queue.size() >= maxSize) {
+                final V itemRemove = queue.removeFirst();
+                theMap.remove(itemRemove.name());
+                displaced = itemRemove;
+            }
+            queue.add(item);
+            theMap.put(item.name(), item);
+            return displaced;
+        }
+
+        V take(final K key) {
+            if(theMap.containsKey(key)) {
+                queue.remove(theMap.get(key));
+                final V ret = theMap.get(key);
+                theMap.remove(key);
+                return ret;
+            }
+            return null;
+        }
+
+        V takeHighestPriorityItem() {
+            if(queue.isEmpty()) {
+                return null;
+            }
+            return queue.pollLast();
+        }
+    }
+
+    /**
+     * @param type The bag type, or null for the Guava based baseline
+     */
+    public static Performance measure(final String name, final String type, final int bagSize, final int operations) {
+        final boolean guava = type == null;
+        final Parameters narParameters = new Parameters();
+        final Performance p = new Performance(name, 3, 1) {
+            BenchItem[] items;
+
+            @Override
+            public void init() {
+                System.out.print(name + ": ");
+                items = new BenchItem[bagSize];
+                final Random rnd = new Random(1);
+                for(int i=0; i<bagSize; i++) {
+                    items[i] = new BenchItem("c" + i, new BudgetValue(rnd.nextFloat(), 0.5f, 0.5f, narParameters));
+                }
+            }
+
+            @Override
+            public void run(final boolean warmup) {
+                final Random rnd = new Random(2);
+                final GuavaPriorityMap<String,BenchItem> g = guava ? new GuavaPriorityMap<>(bagSize) : null;
+                final Bag<String,BenchItem> m = guava ? null : Bag.make(type, 100, bagSize);
+                for(final BenchItem item : items) {
+                    item.slot = -1;
+                    if(guava) {
+                        g.putIn(item);
+                    } else {
+                        m.putIn(item);
+                    }
+                }
+                final BenchItem[] highest = new BenchItem[10];
+                for(int i=0; i<operations; i++) {
+                    //take by key, forget, put back:
+                    final String key = items[rnd.nextInt(bagSize)].key;
+                    final BenchItem taken = guava ? g.take(key) : m.take(key);
+                    taken.budget.setPriority(rnd.nextFloat());
+                    if(guava) {
+                        g.putIn(taken);
+                    } else {
+                        m.putIn(taken);
+                    }
+                    //the cycle prologue, select the highest priority items:
+                    if(i % 100 == 0) {
+                        for(int j=0; j<highest.length; j++) {
+                            highest[j] = guava ? g.takeHighestPriorityItem() : m.takeNext();
+                        }
+                        for(final BenchItem h : highest) {
+                            if(guava) {
+                                g.putIn(h);
+                            } else {
+                                m.putIn(h);
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        p.print();
+        System.out.println();
+        return p;
+    }
+
+    public static void main(final String[] args) {
+        final int operations = 100000;
+        for(final int bagSize : new int[] { 100, 1000, 10000 }) {
+            measure("Guava MinMaxPriorityQueue, size " + bagSize, null, bagSize, operations);
+            measure("Indexed PriorityMap, size " + bagSize, Bag.PRIORITY_MAP, bagSize, operations);
+            measure("LevelBag, size " + bagSize, Bag.LEVEL_BAG, bagSize, operations);
+        }
+    }
+}
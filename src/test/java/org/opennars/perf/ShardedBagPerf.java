@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.perf;
+
+import org.opennars.entity.BudgetValue;
+import org.opennars.main.Parameters;
+import org.opennars.storage.Bag;
+import org.opennars.storage.PriorityMap;
+import org.opennars.storage.ShardedBag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Overhead of the ShardedBag over one PriorityMap, used by a single thread
+ * which conceptualizes random concepts (take, activate, put back)
+ * and reads the top concepts now and then, like the cycle prologue.
+ */
+public class ShardedBagPerf {
+
+    public static Performance measure(final String name, final boolean sharded, final int shards, final int bagSize, final int operations) {
+        final Parameters narParameters = new Parameters();
+        final Performance p = new Performance(name, 3, 1) {
+            PriorityMapPerf.BenchItem[] items;
+
+            @Override
+            public void init() {
+                System.out.print(name + ": ");
+                items = new PriorityMapPerf.BenchItem[bagSize];
+                final Random rnd = new Random(1);
+                for(int i=0; i<bagSize; i++) {
+                    items[i] = new PriorityMapPerf.BenchItem("c" + i, new BudgetValue(rnd.nextFloat(), 0.5f, 0.5f, narParameters));
+                }
+            }
+
+            @Override
+            public void run(final boolean warmup) {
+                //twice the capacity so that the shards don't displace the items
+                final Bag<String,PriorityMapPerf.BenchItem> bag = sharded ?
+                        new ShardedBag<>(Bag.PRIORITY_MAP, 100, 2 * bagSize, shards) :
+                        new PriorityMap<>(2 * bagSize);
+                for(final PriorityMapPerf.BenchItem item : items) {
+                    item.slot = -1;
+                    bag.putIn(item);
+                }
+                final Random rnd = new Random(1);
+                final List<PriorityMapPerf.BenchItem> top = new ArrayList<>();
+                for(int i=0; i<operations; i++) {
+                    final String key = items[rnd.nextInt(bagSize)].key;
+                    final PriorityMapPerf.BenchItem taken = bag.take(key);
+                    taken.budget.setPriority(rnd.nextFloat());
+                    bag.putIn(taken);
+                    if(i % 100 == 0) {
+                        top.clear();
+                        bag.topK(10, top);
+                    }
+                }
+            }
+        };
+        p.print();
+        System.out.println();
+        return p;
+    }
+
+    public static void main(final String[] args) {
+        final int operations = 1000000;
+        measure("PriorityMap", false, 1, 10000, operations);
+        for(final int shards : new int[] { 4, 16 }) {
+            measure("ShardedBag, " + shards + " shards", true, shards, 10000, operations);
+        }
+    }
+}
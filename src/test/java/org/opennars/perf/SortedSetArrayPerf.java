@@ -0,0 +1,98 @@
+/* 
+ * The MIT License
+ *
+ * Copyright 2018 The OpenNARS authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.opennars.perf;
+
+import org.opennars.language.Inheritance;
+import org.opennars.language.Term;
+
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Sorted set construction of the terms of commutative compounds by
+ * Term.toSortedSetArray against the TreeSet it used for more than two terms,
+ * for arities as they occur in sets, intersections and conjunctions.
+ */
+public class SortedSetArrayPerf {
+
+    /** the previous implementation, kept as baseline */
+    static Term[] treeSetArray(final Term... arg) {
+        final NavigableSet<Term> s = new TreeSet<>();
+        Collections.addAll(s, arg);
+        return s.toArray(new Term[0]);
+    }
+
+    public static Performance measure(final String name, final boolean treeSet, final int arity, final int operations) {
+        final Performance p = new Performance(name, 5, 1) {
+            Term[][] args;
+
+            @Override
+            public void init() {
+                System.out.print(name + ": ");
+                final Random rnd = new Random(1);
+                args = new Term[1000][arity];
+                final Term[] atoms = new Term[4 * arity];
+                for(int i=0; i<atoms.length; i++) {
+                    final StringBuilder name = new StringBuilder();
+                    for(int j=0; j<3 + rnd.nextInt(6); j++) {
+                        name.append((char) ('a' + rnd.nextInt(26)));
+                    }
+                    atoms[i] = Term.get(name);
+                }
+                for(final Term[] arg : args) {
+                    for(int i=0; i<arity; i++) {
+                        //some duplicates, and statements sharing their first characters
+                        final int k = rnd.nextInt(atoms.length);
+                        arg[i] = rnd.nextBoolean() ? atoms[k] : Inheritance.make(atoms[k], atoms[(k + 1 + rnd.nextInt(atoms.length - 1)) % atoms.length]);
+                    }
+                }
+            }
+
+            @Override
+            public void run(final boolean warmup) {
+                int length = 0;
+                for(int i=0; i<operations; i++) {
+                    final Term[] arg = args[i % args.length];
+                    length += (treeSet ? treeSetArray(arg) : Term.toSortedSetArray(arg)).length;
+                }
+                if(length == 0) {
+                    throw new IllegalStateException();
+                }
+            }
+        };
+        p.print();
+        System.out.println();
+        return p;
+    }
+
+    public static void main(final String[] args) {
+        final int operations = 1000000;
+        for(final int arity : new int[] { 3, 4, 6, 10 }) {
+            measure("TreeSet, arity " + arity, true, arity, operations);
+            measure("toSortedSetArray, arity " + arity, false, arity, operations);
+        }
+    }
+}